@@ -0,0 +1,150 @@
+package SW9;
+
+import SW9.abstractions.Component;
+import SW9.abstractions.Edge;
+import SW9.abstractions.Location;
+import SW9.abstractions.SubComponent;
+import SW9.utility.serialize.ProjectWriter;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the time it takes to load a project with many components, from json files and from a binary project.
+ * The sizes (number of components) can be given as arguments, by default a project of 500 components is generated.
+ */
+public class ProjectLoadBenchmark {
+
+    private static final int COMPONENTS_PER_LAYER = 50;
+    private static final int SUB_COMPONENTS_PER_COMPONENT = 3;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(final String[] args) throws IOException {
+        final int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[]{500};
+
+        for (final int size : sizes) {
+            final File directory = Files.createTempDirectory("huppaal-load-benchmark").toFile();
+            final File binaryDirectory = Files.createTempDirectory("huppaal-load-benchmark").toFile();
+
+            try {
+                generateProject(size, directory);
+
+                // The same project as a single binary file
+                FileUtils.copyDirectory(directory, binaryDirectory);
+                ProjectConverter.toBinary(binaryDirectory);
+
+                HUPPAAL.parallelProjectLoading = false;
+                final double sequentialTime = measure(() -> HUPPAAL.loadProject(directory));
+
+                HUPPAAL.parallelProjectLoading = true;
+                final double parallelTime = measure(() -> HUPPAAL.loadProject(directory));
+
+                if (HUPPAAL.getProject().getComponents().size() != size) {
+                    throw new IllegalStateException("Loaded " + HUPPAAL.getProject().getComponents().size() + " of " + size + " components");
+                }
+
+                // Components of a binary project are decoded when they are first needed, e.g. by the model generator
+                final double binaryOpenTime = measure(() -> HUPPAAL.loadProject(binaryDirectory));
+                final double binaryTime = measure(() -> {
+                    HUPPAAL.loadProject(binaryDirectory);
+                    HUPPAAL.getProject().getComponents().forEach(Component::load);
+                });
+
+                System.out.println(String.format("%6d components: sequential load %8.1f ms, parallel load %8.1f ms, binary open %8.1f ms, binary load %8.1f ms (%d kB json, %d kB binary)",
+                        size, sequentialTime, parallelTime, binaryOpenTime, binaryTime,
+                        FileUtils.sizeOfDirectory(directory) / 1024, FileUtils.sizeOfDirectory(binaryDirectory) / 1024));
+            } finally {
+                FileUtils.deleteDirectory(directory);
+                FileUtils.deleteDirectory(binaryDirectory);
+            }
+        }
+    }
+
+    /**
+     * Generates a project where the main component instantiates the components of the first layer,
+     * and every component instantiates a number of components of the next layer
+     * @param size the number of components of the project
+     * @param directory the directory to save the project in
+     */
+    private static void generateProject(final int size, final File directory) throws IOException {
+        final List<Component> components = new ArrayList<>();
+
+        final Component mainComponent = new Component("Main", false);
+        mainComponent.setIsMain(true);
+        components.add(mainComponent);
+
+        for (int i = 1; i < size; i++) {
+            final Component component = new Component("Component" + i, false);
+            component.setDeclarations("clock x;");
+            final Location working = new Location();
+            working.setInvariant("x <= 5");
+            component.addLocation(working);
+            component.addEdge(connect(new Edge(component.getInitialLocation()), working));
+            component.addEdge(connect(new Edge(working), component.getFinalLocation()));
+            components.add(component);
+        }
+
+        // Add the sub components from the bottom, such that every instantiated component is complete
+        for (int i = size - 1; i >= 0; i--) {
+            final int layer = i == 0 ? 0 : (i - 1) / COMPONENTS_PER_LAYER + 1;
+            final int firstOfNextLayer = layer * COMPONENTS_PER_LAYER + 1;
+
+            for (int j = 0; j < SUB_COMPONENTS_PER_COMPONENT; j++) {
+                final int index = firstOfNextLayer + (i + j) % COMPONENTS_PER_LAYER;
+                if (index < size) {
+                    addSubComponent(components.get(i), components.get(index));
+                }
+            }
+        }
+
+        final Map<String, ProjectWriter.Content> files = new LinkedHashMap<>();
+        components.forEach(component -> files.put(component.getName() + ".json", component::serialize));
+        files.put("Queries.json", writer -> writer.beginArray().endArray());
+        new ProjectWriter(directory).write(files);
+    }
+
+    private static void addSubComponent(final Component parent, final Component component) {
+        final SubComponent subComponent = new SubComponent(component);
+        parent.addSubComponent(subComponent);
+
+        // Start the sub component from the initial location, and go to the final location when it is done
+        final Edge start = new Edge(parent.getInitialLocation());
+        start.setTargetSubComponent(subComponent);
+        parent.addEdge(start);
+        parent.addEdge(connect(new Edge(subComponent), parent.getFinalLocation()));
+    }
+
+    private static Edge connect(final Edge edge, final Location target) {
+        edge.setTargetLocation(target);
+        return edge;
+    }
+
+    /**
+     * Measures the average time of loading a project
+     * @return the average time in ms
+     */
+    private static double measure(final Load load) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            load.run();
+        }
+
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            load.run();
+        }
+
+        return (System.nanoTime() - startTime) / 1000000d / MEASURED_ROUNDS;
+    }
+
+    private interface Load {
+        void run() throws IOException;
+    }
+}
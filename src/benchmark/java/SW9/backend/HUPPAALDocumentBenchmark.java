@@ -0,0 +1,107 @@
+package SW9.backend;
+
+import SW9.abstractions.Component;
+import SW9.abstractions.Edge;
+import SW9.abstractions.Location;
+import SW9.abstractions.SubComponent;
+
+import java.util.Arrays;
+
+/**
+ * Measures the time it takes to generate the UPPAAL document of models with many (flattened) sub component instances.
+ * The sizes (number of instances) can be given as arguments, by default models of 1k and 10k instances are generated.
+ */
+public class HUPPAALDocumentBenchmark {
+
+    private static final int INSTANCES_PER_GROUP = 100;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(final String[] args) throws BackendException {
+        final int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : new int[]{1000, 10000};
+
+        for (final int size : sizes) {
+            final Component mainComponent = generateModel(size);
+
+            // Generate everything every time
+            final double fullTime = measure(() -> new HUPPAALDocument(mainComponent.toModel()));
+
+            // Only generate the main component again (after changing it)
+            final TemplateCache templateCache = new TemplateCache();
+            new HUPPAALDocument(mainComponent.toModel(), templateCache);
+            final double incrementalTime = measure(() -> {
+                mainComponent.setDeclarations("int changes = " + System.nanoTime() + ";");
+                new HUPPAALDocument(mainComponent.toModel(), templateCache);
+            });
+
+            System.out.println(String.format("%6d instances: full generation %8.1f ms, incremental generation %8.1f ms",
+                    size, fullTime, incrementalTime));
+        }
+    }
+
+    /**
+     * Generates a model where the main component starts a number of groups in parallel,
+     * each of which starts a number of instances of the same leaf component
+     * @param size the number of flattened instances (groups and leaves) of the model
+     * @return the main component of the model
+     */
+    private static Component generateModel(final int size) {
+        final Component leaf = new Component("Leaf", false);
+        leaf.setDeclarations("clock x;");
+        final Location working = new Location();
+        working.setInvariant("x <= 5");
+        leaf.addLocation(working);
+        leaf.addEdge(connect(new Edge(leaf.getInitialLocation()), working));
+        leaf.addEdge(connect(new Edge(working), leaf.getFinalLocation()));
+
+        final Component group = new Component("Group", false);
+        for (int i = 0; i < INSTANCES_PER_GROUP; i++) {
+            addSubComponent(group, leaf);
+        }
+
+        final Component mainComponent = new Component("Main", false);
+        mainComponent.setIsMain(true);
+        for (int i = 0; i < Math.max(1, size / (INSTANCES_PER_GROUP + 1)); i++) {
+            addSubComponent(mainComponent, group);
+        }
+
+        return mainComponent;
+    }
+
+    private static void addSubComponent(final Component parent, final Component component) {
+        final SubComponent subComponent = new SubComponent(component);
+        parent.addSubComponent(subComponent);
+
+        // Start the sub component from the initial location, and go to the final location when it is done
+        final Edge start = new Edge(parent.getInitialLocation());
+        start.setTargetSubComponent(subComponent);
+        parent.addEdge(start);
+        parent.addEdge(connect(new Edge(subComponent), parent.getFinalLocation()));
+    }
+
+    private static Edge connect(final Edge edge, final Location target) {
+        edge.setTargetLocation(target);
+        return edge;
+    }
+
+    /**
+     * Measures the average time of running a generation
+     * @return the average time in ms
+     */
+    private static double measure(final Generation generation) throws BackendException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            generation.run();
+        }
+
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            generation.run();
+        }
+
+        return (System.nanoTime() - startTime) / 1000000d / MEASURED_ROUNDS;
+    }
+
+    private interface Generation {
+        void run() throws BackendException;
+    }
+}
@@ -0,0 +1,400 @@
+package SW9;
+
+import SW9.abstractions.Component;
+import SW9.abstractions.Location;
+import SW9.abstractions.Query;
+import SW9.backend.BackendException;
+import SW9.backend.HUPPAALDocument;
+import SW9.backend.InstanceIndex;
+import SW9.backend.UPPAALDriver;
+import SW9.backend.VerificationProgress;
+import SW9.backend.VerificationProgressRegistry;
+import SW9.backend.VerificationResult;
+import SW9.backend.VerificationScheduler;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Verifies a project without the user interface (and without the JavaFX toolkit), e.g. in a CI pipeline.
+ * All queries of the project and the reachability of all locations (of components included in the periodic check)
+ * are verified in parallel on the engine pool, and the results are written as a JSON or JUnit XML report.
+ *
+ * Usage: BatchVerifier PROJECT_DIRECTORY [--server DIRECTORY] [--report FILE] [--format json|junit] [--timeout MS] [--no-cache]
+ *
+ * The exit code is 0 if all checks passed, 1 if any check failed, and 2 if the project could not be verified.
+ */
+public class BatchVerifier {
+
+    private static final int EXIT_PASSED = 0;
+    private static final int EXIT_FAILED = 1;
+    private static final int EXIT_ERROR = 2;
+
+    private enum Status {
+        PASSED, FAILED, ERROR
+    }
+
+    /**
+     * The outcome of a single check
+     */
+    private static class Result {
+        private final String suite;
+        private final String name;
+        private final String query;
+        private Status status = Status.ERROR;
+        private String message = "Not run";
+        private double durationMillis = 0;
+        private VerificationProgress progress;
+
+        private Result(final String suite, final String name, final String query) {
+            this.suite = suite;
+            this.name = name;
+            this.query = query;
+        }
+
+        private synchronized void complete(final Status status, final String message, final long startTime) {
+            complete(status, message, (System.nanoTime() - startTime) / 1000000d);
+        }
+
+        private synchronized void complete(final Status status, final String message, final double durationMillis) {
+            this.status = status;
+            this.message = message;
+            this.durationMillis = durationMillis;
+        }
+    }
+
+    private String projectDirectory;
+    private String serverDirectory;
+    private String reportFile;
+    private String format = "json";
+    private long timeout = UPPAALDriver.NO_DEADLINE;
+    private boolean useCache = true;
+
+    private final List<Result> results = new ArrayList<>();
+
+    public static void main(final String[] args) {
+        final BatchVerifier verifier = new BatchVerifier();
+
+        try {
+            verifier.parseArguments(args);
+        } catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: BatchVerifier PROJECT_DIRECTORY [--server DIRECTORY] [--report FILE] [--format json|junit] [--timeout MS] [--no-cache]");
+            System.exit(EXIT_ERROR);
+        }
+
+        // Diagnostics go to stderr, such that stdout only contains the report (unless it is written to a file)
+        int exitCode;
+        try {
+            exitCode = verifier.run();
+        } catch (final Exception e) {
+            e.printStackTrace();
+            exitCode = EXIT_ERROR;
+        }
+
+        UPPAALDriver.stopEngines();
+        System.exit(exitCode);
+    }
+
+    private void parseArguments(final String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--server":
+                    serverDirectory = getValue(args, ++i);
+                    break;
+                case "--report":
+                    reportFile = getValue(args, ++i);
+                    break;
+                case "--format":
+                    format = getValue(args, ++i);
+                    if (!format.equals("json") && !format.equals("junit")) {
+                        throw new IllegalArgumentException("Unknown report format: " + format);
+                    }
+                    break;
+                case "--timeout":
+                    try {
+                        timeout = Long.parseLong(getValue(args, ++i));
+                    } catch (final NumberFormatException e) {
+                        throw new IllegalArgumentException("The timeout must be a number of milliseconds");
+                    }
+                    break;
+                case "--no-cache":
+                    useCache = false;
+                    break;
+                default:
+                    if (args[i].startsWith("--") || projectDirectory != null) {
+                        throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                    }
+                    projectDirectory = args[i];
+            }
+        }
+
+        if (projectDirectory == null) {
+            throw new IllegalArgumentException("No project directory given");
+        }
+        if (!new File(projectDirectory).isDirectory()) {
+            throw new IllegalArgumentException("Not a directory: " + projectDirectory);
+        }
+    }
+
+    private static String getValue(final String[] args, final int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    private int run() throws Exception {
+        final File directory = new File(projectDirectory);
+
+        // Use the same servers as the application, unless told otherwise
+        HUPPAAL.serverDirectory = serverDirectory != null ? serverDirectory : getDefaultServerDirectory();
+        UPPAALDriver.setHeadless(true);
+        if (!UPPAALDriver.isServerAvailable()) {
+            System.err.println("Could not find the UPPAAL server in " + HUPPAAL.serverDirectory);
+            return EXIT_ERROR;
+        }
+
+        // Queue for engines instead of giving up (the executor below never uses more threads than there are engines)
+        UPPAALDriver.setEngineBorrowTimeout(Long.MAX_VALUE);
+
+        HUPPAAL.loadProject(directory);
+        if (HUPPAAL.getProject().getMainComponent() == null) {
+            System.err.println("The project has no main component");
+            return EXIT_ERROR;
+        }
+
+        if (useCache) {
+            UPPAALDriver.getResultCache().load(directory);
+        } else {
+            UPPAALDriver.setResultCacheEnabled(false);
+        }
+
+        final HUPPAALDocument document;
+        try {
+            document = UPPAALDriver.buildHUPPAALDocument();
+        } catch (final BackendException e) {
+            System.err.println("Could not generate the UPPAAL model: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+
+        // The checks are queued on the verification executor of the driver, which runs as many at a time as there are engines
+        final List<CompletableFuture<?>> checks = new ArrayList<>();
+        checks.add(submitQueries());
+        checks.addAll(submitReachabilityChecks(document.getInstanceIndex()));
+        CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0])).handle((ignored, e) -> null).join();
+
+        if (useCache) {
+            UPPAALDriver.getResultCache().save(directory);
+        }
+
+        writeReport();
+
+        // If no check could be run (e.g. the server crashes), the project is not verified rather than failing
+        if (!results.isEmpty() && count(Status.ERROR) == results.size()) {
+            return EXIT_ERROR;
+        }
+
+        return results.stream().allMatch(result -> result.status == Status.PASSED) ? EXIT_PASSED : EXIT_FAILED;
+    }
+
+    private CompletableFuture<?> submitQueries() {
+        final List<String> queries = new ArrayList<>();
+        final List<Result> queryResults = new ArrayList<>();
+
+        for (final Query query : HUPPAAL.getProject().getQueries()) {
+            final String name = query.getComment() == null || query.getComment().isEmpty() ? query.getQuery() : query.getComment();
+            queries.add(query.getQuery());
+            queryResults.add(new Result("Queries", name, query.getQuery()));
+        }
+        results.addAll(queryResults);
+
+        // The queries are verified in parallel, as many at a time as there are engines
+        return VerificationResult.allOf(UPPAALDriver.verifyAll(queries, timeout, VerificationScheduler.Priority.INTERACTIVE)).thenAccept(verificationResults -> {
+            for (int i = 0; i < verificationResults.size(); i++) {
+                final VerificationResult verificationResult = verificationResults.get(i);
+                queryResults.get(i).progress = verificationResult.getProgress().orElse(null);
+
+                if (verificationResult.isConclusive()) {
+                    final boolean satisfied = verificationResult.isSatisfied();
+                    queryResults.get(i).complete(satisfied ? Status.PASSED : Status.FAILED, satisfied ? "Satisfied" : "Not satisfied", verificationResult.getDurationMillis());
+                } else {
+                    queryResults.get(i).complete(Status.ERROR, getMessage(verificationResult.getException()), verificationResult.getDurationMillis());
+                }
+            }
+        });
+    }
+
+    private List<CompletableFuture<?>> submitReachabilityChecks(final InstanceIndex instances) {
+        final List<CompletableFuture<?>> checks = new ArrayList<>();
+
+        for (final Component component : HUPPAAL.getProject().getComponents()) {
+            if (!component.isIncludeInPeriodicCheck()) continue;
+
+            // Locations of a component which is not instantiated (by main) cannot be reached, and cannot be queried
+            if (instances.getTemplateNames(component.getModelId()).isEmpty()) {
+                System.err.println("Skipping the reachability checks of " + component.getName() + ", it is not instantiated by the main component");
+                continue;
+            }
+
+            final List<Location> locations = component.getLocationsWithInitialAndFinal();
+            final List<String> queries = new ArrayList<>();
+            final List<Result> componentResults = new ArrayList<>();
+
+            for (final Location location : locations) {
+                final String query = UPPAALDriver.getLocationReachableQuery(location, component, instances);
+                final Result result = new Result("Reachability." + component.getName(), location.getMostDescriptiveIdentifier() + " is reachable", query);
+                queries.add(query);
+                componentResults.add(result);
+            }
+            results.addAll(componentResults);
+
+            // The queries of a batch run one after another, hence a query starts when the previous one is done
+            final long[] startTime = {System.nanoTime()};
+
+            checks.add(UPPAALDriver.runQueries(
+                    queries,
+                    (index, reachable) -> {
+                        componentResults.get(index).complete(reachable ? Status.PASSED : Status.FAILED, reachable ? "Reachable" : "Unreachable", startTime[0]);
+                        startTime[0] = System.nanoTime();
+                    },
+                    (index, e) -> {
+                        componentResults.get(index).complete(Status.ERROR, getMessage(e), startTime[0]);
+                        startTime[0] = System.nanoTime();
+                    },
+                    timeout
+            ));
+        }
+
+        return checks;
+    }
+
+    private static String getMessage(final BackendException e) {
+        final Throwable cause = e.getCause();
+        return cause != null ? e.getMessage() + ": " + cause : e.getMessage();
+    }
+
+    private void writeReport() throws IOException {
+        final String report = format.equals("junit") ? generateJUnitReport() : generateJsonReport();
+
+        if (reportFile == null) {
+            System.out.println(report);
+        } else {
+            FileUtils.writeStringToFile(new File(reportFile), report, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reports the resources the engines needed, as far as they reported their progress, e.g. for capacity planning
+     */
+    private static JsonObject generateEngineReport() {
+        final VerificationProgressRegistry.Metrics metrics = UPPAALDriver.getProgressRegistry().getMetrics();
+
+        final JsonObject engines = new JsonObject();
+        engines.addProperty("pool_size", UPPAALDriver.getEnginePoolSize());
+        engines.addProperty("queries", metrics.getFinishedCount());
+        engines.addProperty("queries_reporting_progress", metrics.getReportingCount());
+        engines.addProperty("max_states", metrics.getMaxStates());
+        engines.addProperty("max_memory_kb", metrics.getMaxResidentMemoryKb());
+        engines.addProperty("cpu_ms", metrics.getTotalCpuMillis());
+        return engines;
+    }
+
+    private String generateJsonReport() {
+        final JsonArray checks = new JsonArray();
+
+        for (final Result result : results) {
+            final JsonObject check = new JsonObject();
+            check.addProperty("suite", result.suite);
+            check.addProperty("name", result.name);
+            check.addProperty("query", result.query);
+            check.addProperty("status", result.status.name().toLowerCase());
+            check.addProperty("message", result.message);
+            check.addProperty("time_ms", result.durationMillis);
+            if (result.progress != null) {
+                check.addProperty("max_states", result.progress.getMaxStates());
+                check.addProperty("max_memory_kb", result.progress.getMaxResidentMemoryKb());
+                check.addProperty("cpu_ms", result.progress.getCpuMillis());
+            }
+            checks.add(check);
+        }
+
+        final JsonObject report = new JsonObject();
+        report.addProperty("project", projectDirectory);
+        report.addProperty("passed", count(Status.PASSED));
+        report.addProperty("failed", count(Status.FAILED));
+        report.addProperty("errors", count(Status.ERROR));
+        report.add("engines", generateEngineReport());
+        report.add("checks", checks);
+
+        return new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(report);
+    }
+
+    private String generateJUnitReport() {
+        final StringBuilder report = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        report.append(String.format("<testsuites tests=\"%d\" failures=\"%d\" errors=\"%d\">%n", results.size(), count(Status.FAILED), count(Status.ERROR)));
+
+        // Group the results by suite (results of the same suite are added consecutively)
+        int i = 0;
+        while (i < results.size()) {
+            final String suite = results.get(i).suite;
+            int end = i;
+            double suiteTime = 0;
+            int failures = 0;
+            int errors = 0;
+            while (end < results.size() && results.get(end).suite.equals(suite)) {
+                suiteTime += results.get(end).durationMillis;
+                if (results.get(end).status == Status.FAILED) failures++;
+                if (results.get(end).status == Status.ERROR) errors++;
+                end++;
+            }
+
+            report.append(String.format("  <testsuite name=\"%s\" tests=\"%d\" failures=\"%d\" errors=\"%d\" time=\"%.3f\">%n",
+                    escape(suite), end - i, failures, errors, suiteTime / 1000));
+
+            for (final Result result : results.subList(i, end)) {
+                report.append(String.format("    <testcase classname=\"%s\" name=\"%s\" time=\"%.3f\">%n",
+                        escape(suite), escape(result.name), result.durationMillis / 1000));
+
+                if (result.status == Status.FAILED) {
+                    report.append(String.format("      <failure message=\"%s\">%s</failure>%n", escape(result.message), escape(result.query)));
+                } else if (result.status == Status.ERROR) {
+                    report.append(String.format("      <error message=\"%s\">%s</error>%n", escape(result.message), escape(result.query)));
+                }
+
+                report.append("    </testcase>\n");
+            }
+
+            report.append("  </testsuite>\n");
+            i = end;
+        }
+
+        report.append("</testsuites>\n");
+        return report.toString();
+    }
+
+    private long count(final Status status) {
+        return results.stream().filter(result -> result.status == status).count();
+    }
+
+    private static String escape(final String text) {
+        return text.replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;");
+    }
+
+    private static String getDefaultServerDirectory() throws URISyntaxException {
+        final File jarFile = new File(BatchVerifier.class.getProtectionDomain().getCodeSource().getLocation().toURI().getPath());
+        return jarFile.getParentFile().getPath() + File.separator + "servers";
+    }
+}
@@ -30,4 +30,8 @@ public class Debug {
     public static synchronized void removeThread(final Thread t) {
         backgroundThreads.remove(t);
     }
+
+    public static synchronized boolean hasThread(final Thread t) {
+        return backgroundThreads.contains(t);
+    }
 }
@@ -6,14 +6,18 @@ import SW9.abstractions.Query;
 import SW9.backend.UPPAALDriver;
 import SW9.code_analysis.CodeAnalysis;
 import SW9.controllers.CanvasController;
+import SW9.controllers.ComponentController;
 import SW9.controllers.HUPPAALController;
 import SW9.presentations.BackgroundThreadPresentation;
 import SW9.presentations.HUPPAALPresentation;
 import SW9.presentations.UndoRedoHistoryPresentation;
 import SW9.utility.keyboard.Keybind;
 import SW9.utility.keyboard.KeyboardTracker;
+import SW9.utility.serialize.BinaryProject;
+import SW9.utility.serialize.ProjectWriter;
 import com.google.common.io.Files;
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
@@ -29,24 +33,29 @@ import javafx.scene.text.Font;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
+import javafx.util.Pair;
 import jiconfont.icons.GoogleMaterialDesignIcons;
 import jiconfont.javafx.IconFontFX;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.security.CodeSource;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class HUPPAAL extends Application {
 
     public static String serverDirectory;
     public static String debugDirectory;
     public static boolean serializationDone = false;
+    public static boolean persistVerificationResults = true;
+    public static boolean parallelProjectLoading = true;
     private static Project project;
     private static HUPPAALPresentation presentation;
     public static SimpleStringProperty projectDirectory = new SimpleStringProperty();
@@ -76,53 +85,84 @@ public class HUPPAAL extends Application {
         launch(HUPPAAL.class, args);
     }
 
+    /**
+     * Loads a project without showing it, e.g. to verify it from the command line
+     * @param projectFolder the folder of the project
+     * @throws IOException if the project could not be read
+     */
+    public static void loadProject(final File projectFolder) throws IOException {
+        project = new Project();
+        deserializeProject(projectFolder);
+
+        // Without the user interface, no one else picks the main component
+        project.getComponents().forEach(component -> {
+            if (component.isIsMain()) {
+                project.setMainComponent(component);
+            }
+        });
+    }
+
     public static Project getProject() {
         return project;
     }
 
     public static void save() {
-        // Clear the project folder
         try {
             final File directory = new File(projectDirectory.getValue());
+            saveProject(directory);
+
+            if (persistVerificationResults) {
+                UPPAALDriver.getResultCache().save(directory);
+            }
 
-            FileUtils.forceMkdir(directory);
-            FileUtils.cleanDirectory(directory);
+            showToast("Project saved!");
         } catch (final IOException e) {
+            showToast("Could not save project: " + e.getMessage());
             e.printStackTrace();
         }
+    }
 
-        HUPPAAL.getProject().getComponents().forEach(component -> {
-            try {
-                final Writer writer = new FileWriter(String.format(projectDirectory.getValue() + File.separator + "%s.json", component.getName()));
-                final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    /**
+     * Saves the project to a directory, as json files, or as a binary project if the directory has one (see {@link BinaryProject})
+     * @param directory the directory of the project
+     * @throws IOException if the project could not be saved
+     */
+    public static void saveProject(final File directory) throws IOException {
+        final ProjectWriter.Content queries = writer -> {
+            writer.beginArray();
+            for (final Query query : HUPPAAL.getProject().getQueries()) {
+                query.serialize(writer);
+            }
+            writer.endArray();
+        };
 
-                gson.toJson(component.serialize(), writer);
+        final File binaryFile = new File(directory, BinaryProject.FILE_NAME);
+        if (binaryFile.isFile()) {
+            final BinaryProject.Builder builder = new BinaryProject.Builder();
 
-                writer.close();
-            } catch (final IOException e) {
-                showToast("Could not save project: " + e.getMessage());
-                e.printStackTrace();
+            for (final Component component : HUPPAAL.getProject().getComponents()) {
+                // The sub components of a component are only known when it is decoded
+                component.load();
+
+                final List<String> subComponentNames = new ArrayList<>();
+                component.getSubComponents().forEach(subComponent -> subComponentNames.add(subComponent.getComponent().getName()));
+                builder.addComponent(component.getName(), component.isIsMain(), subComponentNames, component::serialize);
             }
-        });
 
-        final JsonArray queries = new JsonArray();
-        HUPPAAL.getProject().getQueries().forEach(query -> {
-            queries.add(query.serialize());
-        });
+            builder.setQueries(queries).write(binaryFile);
+            return;
+        }
 
-        final Writer writer;
-        try {
-            writer = new FileWriter(projectDirectory.getValue() + File.separator + "Queries.json");
-            final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        final Map<String, ProjectWriter.Content> files = new LinkedHashMap<>();
 
-            gson.toJson(queries, writer);
-            writer.close();
+        HUPPAAL.getProject().getComponents().forEach(component -> {
+            files.put(component.getName() + ".json", component::serialize);
+        });
 
-            showToast("Project saved!");
-        } catch (final IOException e) {
-            showToast("Could not save project: " + e.getMessage());
-            e.printStackTrace();
-        }
+        files.put("Queries.json", queries);
+
+        // Only the files which changed are written, hence saves are fast and a crash during a save does not lose the project
+        new ProjectWriter(directory).write(files);
     }
 
     public static void showToast(final String message) {
@@ -275,7 +315,16 @@ public class HUPPAAL extends Application {
         deserializeProject(directory);
         CodeAnalysis.enable();
 
-        // Generate all component presentations by making them the active component in the view one by one
+        // Load the results of previous verifications of the project
+        if (persistVerificationResults) {
+            try {
+                UPPAALDriver.getResultCache().load(directory);
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // Check every component for errors and warnings, presentations are only created for the components which are shown
         Component initialShownComponent = null;
         for (final Component component : HUPPAAL.getProject().getComponents()) {
             // The first component should be shown if there is no main
@@ -288,7 +337,10 @@ public class HUPPAAL extends Application {
                 initialShownComponent = component;
             }
 
-            CanvasController.setActiveComponent(component);
+            // Loaded components have been shown before, do not guide the user to their initial and final location
+            component.setFirsTimeShown(true);
+
+            ComponentController.initializeCodeAnalysis(component);
         }
 
         // If we found a component (preferably main) set that as active
@@ -297,6 +349,26 @@ public class HUPPAAL extends Application {
         }
 
         serializationDone = true;
+
+        // Components of a binary project which are not needed yet are decoded (and checked) after the project is shown
+        final Queue<Component> componentsToLoad = new ArrayDeque<>();
+        HUPPAAL.getProject().getComponents().forEach(component -> {
+            if (!component.isLoaded()) componentsToLoad.add(component);
+        });
+        loadComponentsLater(componentsToLoad);
+    }
+
+    /**
+     * Decodes components one at a time on the JavaFX application thread, such that the user interface stays responsive
+     * @param components the components to decode (components decoded in the meantime are skipped)
+     */
+    private static void loadComponentsLater(final Queue<Component> components) {
+        if (components.isEmpty()) return;
+
+        Platform.runLater(() -> {
+            components.poll().load();
+            loadComponentsLater(components);
+        });
     }
 
     private static void deserializeProject(final File projectFolder) throws IOException {
@@ -305,85 +377,186 @@ public class HUPPAAL extends Application {
         final File[] projectFiles = projectFolder.listFiles();
         if (projectFiles == null || projectFiles.length == 0) return;
 
-        // Create maps for deserialization
-        final Map<String, JsonObject> componentJsonMap = new HashMap<>();
-        final Map<JsonObject, Integer> componentMaxDepthMap = new HashMap<>();
-        JsonObject mainJsonComponent = null;
+        // A project saved in the binary format is a single file
+        final File binaryFile = new File(projectFolder, BinaryProject.FILE_NAME);
+        if (binaryFile.isFile()) {
+            deserializeBinaryProject(binaryFile);
+            return;
+        }
 
+        // Only json files are part of the project (hidden files, e.g. the verification cache, are not)
+        final List<File> jsonFiles = new ArrayList<>();
         for (final File file : projectFiles) {
+            if (file.isHidden() || file.getName().startsWith(".") || !file.getName().endsWith(".json")) continue;
+            jsonFiles.add(file);
+        }
+
+        // Sort the files, such that components which do not depend on each other are always added in the same order
+        jsonFiles.sort(Comparator.comparing(File::getName));
+
+        // Read the files (in parallel, since they do not depend on each other), and find the components they instantiate
+        final List<ProjectFile> files = readFiles(jsonFiles);
 
-            final String fileContent = Files.toString(file, Charset.defaultCharset());
+        // Create a map for deserialization
+        final Map<String, ProjectFile> componentFileMap = new LinkedHashMap<>();
 
+        for (final ProjectFile file : files) {
             // If the file represents the queries
-            if (file.getName().equals("Queries.json")) {
-                new JsonParser().parse(fileContent).getAsJsonArray().forEach(jsonElement -> {
-                    final Query newQuery = new Query((JsonObject) jsonElement);
-                    getProject().getQueries().add(newQuery);
-                });
+            if (file.componentName == null) {
+                try (final JsonReader reader = file.getReader()) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        getProject().getQueries().add(new Query(reader));
+                    }
+                    reader.endArray();
+                }
                 // Do not parse Queries.json as a component
                 continue;
             }
 
-            // Parse the file to an json object
-            final JsonObject jsonObject = new JsonParser().parse(fileContent).getAsJsonObject();
+            // Add the name of the component and the file to the map
+            componentFileMap.put(file.componentName, file);
+        }
 
-            // Fetch the name of the component
-            final String componentName = jsonObject.get("name").getAsString();
+        final Map<String, List<String>> subComponentNames = new HashMap<>();
+        componentFileMap.forEach((name, file) -> subComponentNames.put(name, file.subComponentNames));
 
-            // Add the name and the json object to the map
-            componentJsonMap.put(componentName, jsonObject);
+        // Add the components to the list, such that the components a component instantiates are added before it
+        for (final String name : getDependencyOrder(componentFileMap.keySet(), subComponentNames)) {
 
-            // Initialize the max depth map
-            componentMaxDepthMap.put(jsonObject, 0);
+            // It is important that the components are added the list prior to deserialiation
+            final Component newComponent = new Component();
+            getProject().getComponents().add(newComponent);
 
-            // Find the main name of the main component
-            if (jsonObject.get("main").getAsBoolean()) {
-                mainJsonComponent = jsonObject;
+            try (final JsonReader reader = componentFileMap.get(name).getReader()) {
+                newComponent.deserialize(reader);
             }
-
         }
+    }
 
-        if (mainJsonComponent != null) {
-            updateDepthMap(mainJsonComponent, 0, componentJsonMap, componentMaxDepthMap);
+    private static void deserializeBinaryProject(final File file) throws IOException {
+        // Only the index is read, components are decoded from the file (read into memory) when they are first needed
+        final BinaryProject binaryProject = BinaryProject.open(file);
+
+        try (final JsonReader reader = binaryProject.getQueriesReader()) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                getProject().getQueries().add(new Query(reader));
+            }
+            reader.endArray();
         }
 
-        final List<Map.Entry<JsonObject, Integer>> list = new LinkedList<>(componentMaxDepthMap.entrySet());
-        // Defined Custom Comparator here
-        Collections.sort(list, (o1, o2) -> o1.getValue().compareTo(o2.getValue()));
+        final Map<String, List<String>> subComponentNames = new HashMap<>();
+        binaryProject.getComponentNames().forEach(name -> subComponentNames.put(name, binaryProject.getSubComponentNames(name)));
 
-        final List<JsonObject> orderedJsonComponents = new ArrayList<>();
+        // Add the components to the list, such that the components a component instantiates are added before it
+        for (final String name : getDependencyOrder(binaryProject.getComponentNames(), subComponentNames)) {
+            getProject().getComponents().add(new Component(name, binaryProject.isMainComponent(name), () -> binaryProject.getComponentReader(name)));
+        }
+    }
 
+    /**
+     * Reads project files
+     * @param files the files
+     * @return the content of each file, in the order of the files
+     * @throws IOException if a file could not be read
+     */
+    private static List<ProjectFile> readFiles(final List<File> files) throws IOException {
+        final Stream<File> fileStream = parallelProjectLoading ? files.parallelStream() : files.stream();
 
-        for (final Map.Entry<JsonObject, Integer> mapEntry : list) {
-            orderedJsonComponents.add(mapEntry.getKey());
+        try {
+            return fileStream.map(file -> {
+                try {
+                    return ProjectFile.read(file);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
+
+    /**
+     * Orders components such that every component comes after the components it instantiates.
+     * Components are ordered by their height (the length of the longest chain of instantiations below them),
+     * which is computed once per component.
+     * @param names the names of the components
+     * @param subComponentNames the names of the components each component instantiates
+     * @return the names of the components in dependency order
+     */
+    private static List<String> getDependencyOrder(final Collection<String> names, final Map<String, List<String>> subComponentNames) {
+        final Map<String, Integer> heights = new HashMap<>();
+        names.forEach(name -> getHeight(name, subComponentNames, heights));
+
+        // The sort is stable, hence components of the same height keep the given order
+        final List<String> orderedNames = new ArrayList<>(names);
+        orderedNames.sort(Comparator.comparing(heights::get));
+        return orderedNames;
+    }
 
-        // Reverse the list such that the greatest depth is first in the list
-        Collections.reverse(orderedJsonComponents);
+    private static int getHeight(final String name, final Map<String, List<String>> subComponentNames, final Map<String, Integer> heights) {
+        final Integer knownHeight = heights.get(name);
+        if (knownHeight != null) return knownHeight;
 
-        // Add the components to the list
-        orderedJsonComponents.forEach(jsonObject -> {
+        // Mark the component as visited, such that an (invalid) cyclic instantiation does not recurse forever
+        heights.put(name, 0);
 
-            // It is important that the components are added the list prior to deserialiation
-            final Component newComponent = new Component();
-            getProject().getComponents().add(newComponent);
-            newComponent.deserialize(jsonObject);
-        });
+        int height = 0;
+        for (final String subComponentName : subComponentNames.get(name)) {
+            if (subComponentNames.containsKey(subComponentName)) {
+                height = Math.max(height, getHeight(subComponentName, subComponentNames, heights) + 1);
+            }
+        }
+
+        heights.put(name, height);
+        return height;
     }
 
-    private static void updateDepthMap(final JsonObject jsonObject, final int depth, final Map<String, JsonObject> nameToJson, final Map<JsonObject, Integer> jsonToDpeth) {
-        if (jsonToDpeth.get(jsonObject) < depth) {
-            jsonToDpeth.put(jsonObject, depth);
+    /**
+     * The content of a project file, which is kept as text (and not as a tree of json elements) until it is deserialized
+     */
+    private static class ProjectFile {
+        private final String content;
+
+        // The name of the component of the file, or null if the file represents the queries
+        private final String componentName;
+        private final List<String> subComponentNames;
+
+        private ProjectFile(final String content, final String componentName, final List<String> subComponentNames) {
+            this.content = content;
+            this.componentName = componentName;
+            this.subComponentNames = subComponentNames;
         }
 
-        final List<String> subComponentNames = new ArrayList<>();
+        private static ProjectFile read(final File file) throws IOException {
+            final String content = Files.toString(file, Charset.defaultCharset());
 
-        jsonObject.get("sub_components").getAsJsonArray().forEach(jsonElement -> {
-            subComponentNames.add(jsonElement.getAsJsonObject().get("component").getAsString());
-        });
+            if (file.getName().equals("Queries.json")) {
+                return new ProjectFile(content, null, Collections.emptyList());
+            }
+
+            // Find the name of the component and the names of the components it instantiates, skipping everything else
+            final Pair<String, List<String>> dependencies;
+            try (final JsonReader reader = createReader(content)) {
+                dependencies = Component.readDependencies(reader);
+            } catch (final IOException e) {
+                throw new IOException("Could not read " + file.getName() + ": " + e.getMessage(), e);
+            }
+
+            return new ProjectFile(content, dependencies.getKey(), dependencies.getValue());
+        }
+
+        private JsonReader getReader() {
+            return createReader(content);
+        }
+
+        private static JsonReader createReader(final String content) {
+            final JsonReader reader = new JsonReader(new StringReader(content));
 
-        for (final String subComponentName : subComponentNames) {
-            updateDepthMap(nameToJson.get(subComponentName), depth + 1, nameToJson, jsonToDpeth);
+            // Accept the same files as the json parser
+            reader.setLenient(true);
+            return reader;
         }
     }
 
@@ -0,0 +1,128 @@
+package SW9;
+
+import SW9.abstractions.Component;
+import SW9.utility.serialize.BinaryProject;
+import SW9.utility.serialize.ProjectWriter;
+import com.google.common.io.Files;
+import com.google.gson.stream.JsonReader;
+import javafx.util.Pair;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a project between json files (a file per component) and a single binary file (see {@link BinaryProject}).
+ * The json is copied token by token, hence nothing is lost (not even content this version does not know).
+ * The files of the old format are removed when the new format is in place.
+ */
+public class ProjectConverter {
+
+    private static final String QUERIES_FILE_NAME = "Queries.json";
+
+    public static void main(final String[] args) {
+        try {
+            if (args.length != 2) throw new IllegalArgumentException("Wrong number of arguments");
+
+            final File directory = new File(args[0]);
+            switch (args[1]) {
+                case "binary":
+                    toBinary(directory);
+                    break;
+                case "json":
+                    toJson(directory);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown format " + args[1]);
+            }
+        } catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: ProjectConverter PROJECT_DIRECTORY binary|json");
+            System.exit(1);
+        } catch (final IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converts a project of json files to a binary project
+     * @param directory the directory of the project
+     * @throws IOException if the project could not be converted. The json files are only removed if it was
+     */
+    public static void toBinary(final File directory) throws IOException {
+        final BinaryProject.Builder builder = new BinaryProject.Builder();
+        final List<File> jsonFiles = getJsonFiles(directory);
+
+        for (final File file : jsonFiles) {
+            final String content = Files.toString(file, Charset.defaultCharset());
+
+            if (file.getName().equals(QUERIES_FILE_NAME)) {
+                builder.setQueries(writer -> BinaryProject.copy(createReader(content), writer));
+                continue;
+            }
+
+            final Pair<String, List<String>> dependencies = Component.readDependencies(createReader(content));
+            final boolean isMain = Component.readIsMain(createReader(content));
+            builder.addComponent(dependencies.getKey(), isMain, dependencies.getValue(), writer -> BinaryProject.copy(createReader(content), writer));
+        }
+
+        builder.write(new File(directory, BinaryProject.FILE_NAME));
+
+        for (final File file : jsonFiles) {
+            FileUtils.forceDelete(file);
+        }
+        FileUtils.deleteQuietly(new File(directory, ProjectWriter.MANIFEST_FILE_NAME));
+    }
+
+    /**
+     * Converts a binary project to a project of json files
+     * @param directory the directory of the project
+     * @throws IOException if the project could not be converted. The binary project is only removed if it was
+     */
+    public static void toJson(final File directory) throws IOException {
+        final File binaryFile = new File(directory, BinaryProject.FILE_NAME);
+        final BinaryProject binaryProject = BinaryProject.open(binaryFile);
+
+        final Map<String, ProjectWriter.Content> files = new LinkedHashMap<>();
+        for (final String name : binaryProject.getComponentNames()) {
+            files.put(name + ".json", writer -> BinaryProject.copy(binaryProject.getComponentReader(name), writer));
+        }
+        files.put(QUERIES_FILE_NAME, writer -> BinaryProject.copy(binaryProject.getQueriesReader(), writer));
+
+        new ProjectWriter(directory).write(files);
+
+        FileUtils.forceDelete(binaryFile);
+    }
+
+    /**
+     * @return the json files of a project (hidden files, e.g. the verification cache, are not part of the project)
+     */
+    private static List<File> getJsonFiles(final File directory) {
+        final List<File> jsonFiles = new ArrayList<>();
+
+        final File[] files = directory.listFiles();
+        if (files == null) return jsonFiles;
+
+        for (final File file : files) {
+            if (file.isHidden() || file.getName().startsWith(".") || !file.getName().endsWith(".json")) continue;
+            jsonFiles.add(file);
+        }
+
+        return jsonFiles;
+    }
+
+    private static JsonReader createReader(final String content) {
+        final JsonReader reader = new JsonReader(new StringReader(content));
+
+        // Accept the same files as the project loader
+        reader.setLenient(true);
+        return reader;
+    }
+}
@@ -2,25 +2,39 @@ package SW9.abstractions;
 
 import SW9.HUPPAAL;
 import SW9.controllers.HUPPAALController;
+import SW9.core.*;
 import SW9.presentations.DropDownMenu;
 import SW9.utility.UndoRedoStack;
 import SW9.utility.colors.Color;
 import SW9.utility.colors.EnabledColor;
 import SW9.utility.serialize.Serializable;
+import SW9.utility.serialize.StreamDeserializable;
+import SW9.utility.serialize.StreamSerializable;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.*;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.util.Pair;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
-public class Component implements Serializable, DropDownMenu.HasColor {
+public class Component implements Serializable, StreamSerializable, StreamDeserializable, DropDownMenu.HasColor {
 
     private static final AtomicInteger hiddenID = new AtomicInteger(0); // Used to generate unique IDs
+    private static final AtomicLong modelIdGenerator = new AtomicLong(0); // Used to identify the models of components
 
     private static final String NAME = "name";
     private static final String DECLARATIONS = "declarations";
@@ -66,6 +80,21 @@ public class Component implements Serializable, DropDownMenu.HasColor {
 
     private final BooleanProperty firsTimeShown = new SimpleBooleanProperty(false);
 
+    // The json of a component which is decoded when it is first needed (see load()), null once it is decoded
+    private Supplier<JsonReader> lazyContent = null;
+    private final BooleanProperty loaded = new SimpleBooleanProperty(true);
+
+    // Identifies the models of this component (see toModel)
+    private final long modelId = modelIdGenerator.incrementAndGet();
+
+    // The last snapshot of the component (only accessed by the thread editing the model)
+    private ComponentModel lastSnapshot;
+
+    // Incremented whenever the component changes in a way which affects the generated UPPAAL model
+    private final AtomicLong modelVersion = new AtomicLong(0);
+    private final ChangeListener<Object> modelChangedListener = (observable, oldValue, newValue) -> modelVersion.incrementAndGet();
+    private final InvalidationListener modelListChangedListener = observable -> modelVersion.incrementAndGet();
+
     public Component() {
         this(false);
     }
@@ -108,6 +137,23 @@ public class Component implements Serializable, DropDownMenu.HasColor {
         this.finalLocation.set(finalLocation);
 
         bindReachabilityAnalysis();
+        bindModelVersion();
+    }
+
+    /**
+     * Creates a component whose content is decoded when it is first needed (see {@link #load()}), e.g. a component of a
+     * binary project. Until then only the name of the component, and whether it is the main component, are known
+     * @param name the name of the component
+     * @param isMain true if the component is the main component
+     * @param content the json of the component (see {@link #deserialize(JsonReader)})
+     */
+    public Component(final String name, final boolean isMain, final Supplier<JsonReader> content) {
+        this(name, false);
+        hiddenID.incrementAndGet();
+        setIsMain(isMain);
+
+        lazyContent = content;
+        loaded.set(false);
     }
 
     public Component(final JsonObject object) {
@@ -115,6 +161,36 @@ public class Component implements Serializable, DropDownMenu.HasColor {
         setFirsTimeShown(true);
         deserialize(object);
         bindReachabilityAnalysis();
+        bindModelVersion();
+    }
+
+    /**
+     * Decodes the content of the component, if it is not decoded yet (see {@link #Component(String, boolean, Supplier)}).
+     * Setters of properties which are part of the content call this first, such that a change is not overwritten once
+     * the component is decoded. Must be called on the thread editing the model (i.e. the JavaFX application thread)
+     */
+    public void load() {
+        if (lazyContent == null) return;
+
+        // Cleared first, such that a component is decoded once (even if it is used while it is decoded)
+        final Supplier<JsonReader> content = lazyContent;
+        lazyContent = null;
+
+        try (final JsonReader reader = content.get()) {
+            deserialize(reader);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not decode the component " + getName(), e);
+        }
+
+        loaded.set(true);
+    }
+
+    public boolean isLoaded() {
+        return loaded.get();
+    }
+
+    public ReadOnlyBooleanProperty loadedProperty() {
+        return loaded;
     }
 
     public String getName() {
@@ -122,6 +198,7 @@ public class Component implements Serializable, DropDownMenu.HasColor {
     }
 
     public void setName(final String name) {
+        load();
         this.name.unbind();
         this.name.set(name);
     }
@@ -135,6 +212,7 @@ public class Component implements Serializable, DropDownMenu.HasColor {
     }
 
     public void setDeclarations(final String declarations) {
+        load();
         this.declarations.set(declarations);
     }
 
@@ -323,6 +401,7 @@ public class Component implements Serializable, DropDownMenu.HasColor {
     }
 
     public void setColor(final Color color) {
+        load();
         this.color.set(color);
     }
 
@@ -335,6 +414,7 @@ public class Component implements Serializable, DropDownMenu.HasColor {
     }
 
     public void setColorIntensity(final Color.Intensity colorIntensity) {
+        load();
         this.colorIntensity.set(colorIntensity);
     }
 
@@ -400,6 +480,7 @@ public class Component implements Serializable, DropDownMenu.HasColor {
     }
 
     public void setIsMain(boolean isMain) {
+        load();
         this.isMain.set(isMain);
     }
 
@@ -412,6 +493,7 @@ public class Component implements Serializable, DropDownMenu.HasColor {
     }
 
     public void setDescription(final String description) {
+        load();
         this.description.set(description);
     }
 
@@ -440,11 +522,14 @@ public class Component implements Serializable, DropDownMenu.HasColor {
     }
 
     public void setIncludeInPeriodicCheck(final boolean includeInPeriodicCheck) {
+        load();
         this.includeInPeriodicCheck.set(includeInPeriodicCheck);
     }
 
     @Override
     public JsonObject serialize() {
+        load();
+
         final JsonObject result = new JsonObject();
 
         result.addProperty(NAME, getName());
@@ -533,6 +618,195 @@ public class Component implements Serializable, DropDownMenu.HasColor {
         setIncludeInPeriodicCheck(json.getAsJsonPrimitive(INCLUDE_IN_PERIODIC_CHECK).getAsBoolean());
     }
 
+    @Override
+    public void serialize(final JsonWriter writer) throws IOException {
+        load();
+
+        writer.beginObject();
+
+        writer.name(NAME).value(getName());
+        writer.name(DECLARATIONS).value(getDeclarations());
+
+        writer.name(LOCATIONS).beginArray();
+        for (final Location location : getLocations()) {
+            location.serialize(writer);
+        }
+        writer.endArray();
+
+        writer.name(INITIAL_LOCATION);
+        getInitialLocation().serialize(writer);
+        writer.name(FINAL_LOCATION);
+        getFinalLocation().serialize(writer);
+
+        writer.name(JORKS).beginArray();
+        for (final Jork jork : getJorks()) {
+            jork.serialize(writer);
+        }
+        writer.endArray();
+
+        writer.name(SUBCOMPONENTS).beginArray();
+        for (final SubComponent subComponent : getSubComponents()) {
+            subComponent.serialize(writer);
+        }
+        writer.endArray();
+
+        writer.name(EDGES).beginArray();
+        for (final Edge edge : getEdges()) {
+            edge.serialize(writer);
+        }
+        writer.endArray();
+
+        writer.name(IS_MAIN).value(isIsMain());
+
+        writer.name(DESCRIPTION).value(getDescription());
+
+        writer.name(X).value(getX());
+        writer.name(Y).value(getY());
+        writer.name(WIDTH).value(getWidth());
+        writer.name(HEIGHT).value(getHeight());
+        writer.name(COLOR).value(EnabledColor.getIdentifier(getColor()));
+
+        writer.name(INCLUDE_IN_PERIODIC_CHECK).value(isIncludeInPeriodicCheck());
+
+        writer.endObject();
+    }
+
+    /**
+     * Reads the name of a serialized component and the names of the components it instantiates, skipping everything else
+     * @param reader the json of the component
+     * @return the name of the component, and the names of the components it instantiates
+     * @throws IOException if the json could not be read, or the component has no name
+     */
+    public static Pair<String, List<String>> readDependencies(final JsonReader reader) throws IOException {
+        String name = null;
+        final List<String> subComponentNames = new ArrayList<>();
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case NAME: name = reader.nextString(); break;
+                case SUBCOMPONENTS:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        final String subComponentName = SubComponent.readComponentName(reader);
+                        if (subComponentName != null) {
+                            subComponentNames.add(subComponentName);
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default: reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        if (name == null) throw new IOException("The component has no name");
+
+        return new Pair<>(name, subComponentNames);
+    }
+
+    /**
+     * Reads whether a serialized component is the main component, skipping everything else
+     * @param reader the json of the component
+     * @return true if the component is the main component
+     * @throws IOException if the json could not be read
+     */
+    public static boolean readIsMain(final JsonReader reader) throws IOException {
+        boolean isMain = false;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(IS_MAIN)) {
+                isMain = reader.nextBoolean();
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        return isMain;
+    }
+
+    @Override
+    public void deserialize(final JsonReader reader) throws IOException {
+        // Edges refer to the locations, jorks and sub components, which we write before the edges
+        final Set<String> edgeEnds = new HashSet<>(Arrays.asList(LOCATIONS, INITIAL_LOCATION, FINAL_LOCATION, JORKS, SUBCOMPONENTS));
+        JsonArray earlyEdges = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            edgeEnds.remove(name);
+
+            switch (name) {
+                case NAME: setName(reader.nextString()); break;
+                case DECLARATIONS: setDeclarations(reader.nextString()); break;
+                case LOCATIONS:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        locations.add(new Location(reader));
+                    }
+                    reader.endArray();
+                    break;
+                case INITIAL_LOCATION: setInitialLocation(new Location(reader)); break;
+                case FINAL_LOCATION: setFinalLocation(new Location(reader)); break;
+                case JORKS:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        jorks.add(new Jork(reader));
+                    }
+                    reader.endArray();
+                    break;
+                case SUBCOMPONENTS:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        subComponents.add(new SubComponent(reader));
+                    }
+                    reader.endArray();
+                    break;
+                case EDGES:
+                    if (!edgeEnds.isEmpty()) {
+                        // The file was not written by us, keep the edges until their ends are known
+                        earlyEdges = new JsonParser().parse(reader).getAsJsonArray();
+                        break;
+                    }
+
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        edges.add(new Edge(reader, this));
+                    }
+                    reader.endArray();
+                    break;
+                case IS_MAIN: setIsMain(reader.nextBoolean()); break;
+                case DESCRIPTION: setDescription(reader.nextString()); break;
+                case X: setX(reader.nextDouble()); break;
+                case Y: setY(reader.nextDouble()); break;
+                case WIDTH: setWidth(reader.nextDouble()); break;
+                case HEIGHT: setHeight(reader.nextDouble()); break;
+                case COLOR:
+                    final EnabledColor enabledColor = EnabledColor.fromIdentifier(reader.nextString());
+                    if (enabledColor != null) {
+                        setColorIntensity(enabledColor.intensity);
+                        setColor(enabledColor.color);
+                    }
+                    break;
+                case INCLUDE_IN_PERIODIC_CHECK: setIncludeInPeriodicCheck(reader.nextBoolean()); break;
+                default: reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        if (earlyEdges != null) {
+            earlyEdges.forEach(jsonElement -> edges.add(new Edge((JsonObject) jsonElement, this)));
+        }
+    }
+
     public void color(final Color color, final Color.Intensity intensity) {
         final Color previousColor = colorProperty().get();
         final Color.Intensity previousColorIntensity = colorIntensityProperty().get();
@@ -568,9 +842,229 @@ public class Component implements Serializable, DropDownMenu.HasColor {
     }
 
     private void bindReachabilityAnalysis() {
+        // Only listen for changes which affect the verification (and not e.g. the color or the description)
+        nameProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
         locations.addListener((ListChangeListener<? super Location>) c -> HUPPAALController.runReachabilityAnalysis());
         edges.addListener((ListChangeListener<? super Edge>) c -> HUPPAALController.runReachabilityAnalysis());
+        jorks.addListener((ListChangeListener<? super Jork>) c -> HUPPAALController.runReachabilityAnalysis());
+        subComponents.addListener((ListChangeListener<? super SubComponent>) c -> HUPPAALController.runReachabilityAnalysis());
         declarationsProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
         includeInPeriodicCheckProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
     }
+
+    /**
+     * Gets the version of the component as seen by the UPPAAL model generator.
+     * The version changes whenever the component (or one of its locations, edges, jorks or sub components) changes
+     * in a way which affects the generated model, but not when e.g. locations are moved or recolored.
+     * @return the current version
+     */
+    public long getModelVersion() {
+        return modelVersion.get();
+    }
+
+    public long getModelId() {
+        return modelId;
+    }
+
+    /**
+     * Converts the component, and the components it instantiates, to the plain model used by the verification backend
+     * @return the current state of the component
+     */
+    public ComponentModel toModel() {
+        return toModel(new HashMap<>(), false);
+    }
+
+    /**
+     * Takes an immutable snapshot of the component, and the components it instantiates.
+     * The last snapshot is reused if neither the component nor the components it instantiates changed since it was taken
+     * (hence the layout in a snapshot is the layout at the last change of the model, see {@link #getModelVersion()}).
+     * Must be called on the thread editing the model (i.e. the JavaFX application thread).
+     * @return the snapshot
+     */
+    public ComponentModel snapshot() {
+        return snapshot(new HashMap<>());
+    }
+
+    ComponentModel snapshot(final Map<Component, ComponentModel> models) {
+        return toModel(models, true);
+    }
+
+    /**
+     * Converts the component to the plain model used by the verification backend
+     * @param models the models converted so far (such that components instantiated many times are only converted once)
+     * @param reuseSnapshot if true the last snapshot is reused (if still up to date), and the result is the new last snapshot
+     * @return the current state of the component
+     */
+    private ComponentModel toModel(final Map<Component, ComponentModel> models, final boolean reuseSnapshot) {
+        load();
+
+        final ComponentModel existingModel = models.get(this);
+        if (existingModel != null) return existingModel;
+
+        if (reuseSnapshot && isLastSnapshotUpToDate(models)) {
+            models.put(this, lastSnapshot);
+            return lastSnapshot;
+        }
+
+        final Map<Location, LocationModel> locationModels = new HashMap<>();
+        final List<LocationModel> locationList = new ArrayList<>();
+        for (final Location location : getLocations()) {
+            final LocationModel locationModel = location.toModel();
+            locationModels.put(location, locationModel);
+            locationList.add(locationModel);
+        }
+
+        final LocationModel initialLocationModel = getInitialLocation().toModel();
+        locationModels.put(getInitialLocation(), initialLocationModel);
+        final LocationModel finalLocationModel = getFinalLocation().toModel();
+        locationModels.put(getFinalLocation(), finalLocationModel);
+
+        final Map<Jork, JorkModel> jorkModels = new HashMap<>();
+        final List<JorkModel> jorkList = new ArrayList<>();
+        for (final Jork jork : getJorks()) {
+            final JorkModel jorkModel = jork.toModel();
+            jorkModels.put(jork, jorkModel);
+            jorkList.add(jorkModel);
+        }
+
+        final Map<SubComponent, SubComponentModel> subComponentModels = new HashMap<>();
+        final List<SubComponentModel> subComponentList = new ArrayList<>();
+        for (final SubComponent subComponent : getSubComponents()) {
+            final ComponentModel componentModel = subComponent.getComponent() == null ? null : subComponent.getComponent().toModel(models, reuseSnapshot);
+            final SubComponentModel subComponentModel = subComponent.toModel(componentModel);
+            subComponentModels.put(subComponent, subComponentModel);
+            subComponentList.add(subComponentModel);
+        }
+
+        final List<EdgeModel> edgeList = new ArrayList<>();
+        for (final Edge edge : getEdges()) {
+            edgeList.add(edge.toModel(locationModels, subComponentModels, jorkModels));
+        }
+
+        final ComponentModel model = new ComponentModel(modelId, getModelVersion(), getName(), getDeclarations(),
+                isIsMain(), isIncludeInPeriodicCheck(),
+                locationList, initialLocationModel, finalLocationModel, jorkList, subComponentList, edgeList);
+        models.put(this, model);
+
+        if (reuseSnapshot) {
+            lastSnapshot = model;
+        }
+
+        return model;
+    }
+
+    private boolean isLastSnapshotUpToDate(final Map<Component, ComponentModel> models) {
+        if (lastSnapshot == null
+                || lastSnapshot.getVersion() != getModelVersion()
+                || lastSnapshot.isMain() != isIsMain()
+                || lastSnapshot.isIncludeInPeriodicCheck() != isIncludeInPeriodicCheck()) {
+            return false;
+        }
+
+        // The snapshot refers to the snapshots of the instantiated components, which must be up to date as well
+        final List<SubComponentModel> subComponentModels = lastSnapshot.getSubComponents();
+        if (subComponentModels.size() != subComponents.size()) return false;
+
+        for (int i = 0; i < subComponents.size(); i++) {
+            final Component component = subComponents.get(i).getComponent();
+            final ComponentModel componentModel = component == null ? null : component.toModel(models, true);
+            if (componentModel != subComponentModels.get(i).getComponent()) return false;
+        }
+
+        return true;
+    }
+
+    private void bindModelVersion() {
+        nameProperty().addListener(modelChangedListener);
+        declarationsProperty().addListener(modelChangedListener);
+
+        // The initial and final locations are not necessarily in the list of locations
+        bindModelVersion(initialLocationProperty());
+        bindModelVersion(finalLocationProperty());
+
+        locations.forEach(this::bindModelVersion);
+        locations.addListener((ListChangeListener<Location>) c -> {
+            while (c.next()) {
+                c.getRemoved().forEach(this::unbindModelVersion);
+                c.getAddedSubList().forEach(this::bindModelVersion);
+            }
+            modelVersion.incrementAndGet();
+        });
+
+        edges.forEach(this::bindModelVersion);
+        edges.addListener((ListChangeListener<Edge>) c -> {
+            while (c.next()) {
+                c.getRemoved().forEach(this::unbindModelVersion);
+                c.getAddedSubList().forEach(this::bindModelVersion);
+            }
+            modelVersion.incrementAndGet();
+        });
+
+        subComponents.forEach(this::bindModelVersion);
+        subComponents.addListener((ListChangeListener<SubComponent>) c -> {
+            while (c.next()) {
+                c.getRemoved().forEach(this::unbindModelVersion);
+                c.getAddedSubList().forEach(this::bindModelVersion);
+            }
+            modelVersion.incrementAndGet();
+        });
+
+        jorks.addListener(modelListChangedListener);
+    }
+
+    private void bindModelVersion(final ObjectProperty<Location> locationProperty) {
+        bindModelVersion(locationProperty.get());
+        locationProperty.addListener((observable, oldLocation, newLocation) -> {
+            unbindModelVersion(oldLocation);
+            bindModelVersion(newLocation);
+            modelVersion.incrementAndGet();
+        });
+    }
+
+    private void bindModelVersion(final Location location) {
+        if (location == null) return;
+        location.idProperty().addListener(modelChangedListener);
+        location.typeProperty().addListener(modelChangedListener);
+        location.invariantProperty().addListener(modelChangedListener);
+        location.urgencyProperty().addListener(modelChangedListener);
+    }
+
+    private void unbindModelVersion(final Location location) {
+        if (location == null) return;
+        location.idProperty().removeListener(modelChangedListener);
+        location.typeProperty().removeListener(modelChangedListener);
+        location.invariantProperty().removeListener(modelChangedListener);
+        location.urgencyProperty().removeListener(modelChangedListener);
+    }
+
+    private void bindModelVersion(final Edge edge) {
+        getModelProperties(edge).forEach(observable -> observable.addListener(modelChangedListener));
+
+        // The properties of an edge are only part of the model if they have a nail
+        edge.getNails().addListener(modelListChangedListener);
+    }
+
+    private void unbindModelVersion(final Edge edge) {
+        getModelProperties(edge).forEach(observable -> observable.removeListener(modelChangedListener));
+        edge.getNails().removeListener(modelListChangedListener);
+    }
+
+    private static List<ObservableValue<?>> getModelProperties(final Edge edge) {
+        return Arrays.asList(
+                edge.sourceLocationProperty(), edge.targetLocationProperty(),
+                edge.sourceSubComponentProperty(), edge.targetSubComponentProperty(),
+                edge.sourceJorkProperty(), edge.targetJorkProperty(),
+                edge.selectProperty(), edge.guardProperty(), edge.syncProperty(), edge.updateProperty()
+        );
+    }
+
+    private void bindModelVersion(final SubComponent subComponent) {
+        subComponent.componentProperty().addListener(modelChangedListener);
+        subComponent.identifierProperty().addListener(modelChangedListener);
+    }
+
+    private void unbindModelVersion(final SubComponent subComponent) {
+        subComponent.componentProperty().removeListener(modelChangedListener);
+        subComponent.identifierProperty().removeListener(modelChangedListener);
+    }
 }
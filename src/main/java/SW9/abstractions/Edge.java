@@ -1,22 +1,31 @@
 package SW9.abstractions;
 
 import SW9.code_analysis.Nearable;
+import SW9.core.EdgeModel;
+import SW9.core.JorkModel;
+import SW9.core.LocationModel;
+import SW9.core.SubComponentModel;
 import SW9.controllers.HUPPAALController;
 import SW9.presentations.JorkPresentation;
 import SW9.utility.colors.Color;
 import SW9.utility.helpers.Circular;
 import SW9.utility.serialize.Serializable;
+import SW9.utility.serialize.StreamSerializable;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import static SW9.presentations.CanvasPresentation.GRID_SIZE;
 
-public class Edge implements Serializable, Nearable {
+public class Edge implements Serializable, StreamSerializable, Nearable {
 
     private static final String SOURCE_LOCATION = "source_location";
     private static final String TARGET_LOCATION = "target_location";
@@ -72,6 +81,11 @@ public class Edge implements Serializable, Nearable {
         bindReachabilityAnalysis();
     }
 
+    public Edge(final JsonReader reader, final Component component) throws IOException {
+        deserialize(reader, component);
+        bindReachabilityAnalysis();
+    }
+
     public Location getSourceLocation() {
         return sourceLocation.get();
     }
@@ -501,16 +515,126 @@ public class Edge implements Serializable, Nearable {
     }
 
     public void deserialize(final JsonObject json, final Component component) {
+        setEnds(component,
+                json.get(SOURCE_LOCATION) != null ? json.getAsJsonPrimitive(SOURCE_LOCATION).getAsString() : null,
+                json.get(TARGET_LOCATION) != null ? json.getAsJsonPrimitive(TARGET_LOCATION).getAsString() : null,
+                json.get(SOURCE_SUB_COMPONENT) != null ? json.getAsJsonPrimitive(SOURCE_SUB_COMPONENT).getAsString() : null,
+                json.get(TARGET_SUB_COMPONENT) != null ? json.getAsJsonPrimitive(TARGET_SUB_COMPONENT).getAsString() : null,
+                json.get(SOURCE_JORK) != null ? json.getAsJsonPrimitive(SOURCE_JORK).getAsString() : null,
+                json.get(TARGET_JORK) != null ? json.getAsJsonPrimitive(TARGET_JORK).getAsString() : null);
+
+        setSelect(json.getAsJsonPrimitive(SELECT).getAsString());
+        setGuard(json.getAsJsonPrimitive(GUARD).getAsString());
+        setUpdate(json.getAsJsonPrimitive(UPDATE).getAsString());
+        setSync(json.getAsJsonPrimitive(SYNC).getAsString());
+
+        json.getAsJsonArray(NAILS).forEach(jsonElement -> {
+            final Nail newNail = new Nail((JsonObject) jsonElement);
+            nails.add(newNail);
+        });
+    }
+
+    @Override
+    public void serialize(final JsonWriter writer) throws IOException {
+        writer.beginObject();
+
+        if (getSourceLocation() != null) {
+            writer.name(SOURCE_LOCATION).value(getSourceLocation().getId());
+        }
+        if (getTargetLocation() != null) {
+            writer.name(TARGET_LOCATION).value(getTargetLocation().getId());
+        }
+        if (getSourceSubComponent() != null) {
+            writer.name(SOURCE_SUB_COMPONENT).value(getSourceSubComponent().getIdentifier());
+        }
+        if (getTargetSubComponent() != null) {
+            writer.name(TARGET_SUB_COMPONENT).value(getTargetSubComponent().getIdentifier());
+        }
+        if (getSourceJork() != null) {
+            writer.name(SOURCE_JORK).value(getSourceJork().getId());
+        }
+        if (getTargetJork() != null) {
+            writer.name(TARGET_JORK).value(getTargetJork().getId());
+        }
+        writer.name(SELECT).value(getSelect());
+        writer.name(GUARD).value(getGuard());
+        writer.name(UPDATE).value(getUpdate());
+        writer.name(SYNC).value(getSync());
+
+        writer.name(NAILS).beginArray();
+        for (final Nail nail : getNails()) {
+            nail.serialize(writer);
+        }
+        writer.endArray();
+
+        writer.endObject();
+    }
+
+    /**
+     * Deserializes an edge of a component.
+     * The locations, sub components and jorks of the component must be deserialized before its edges
+     * @param reader the reader
+     * @param component the component of the edge
+     * @throws IOException if the json could not be read
+     */
+    public void deserialize(final JsonReader reader, final Component component) throws IOException {
+        String sourceLocationId = null;
+        String targetLocationId = null;
+        String sourceSubComponentId = null;
+        String targetSubComponentId = null;
+        String sourceJorkId = null;
+        String targetJorkId = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case SOURCE_LOCATION: sourceLocationId = reader.nextString(); break;
+                case TARGET_LOCATION: targetLocationId = reader.nextString(); break;
+                case SOURCE_SUB_COMPONENT: sourceSubComponentId = reader.nextString(); break;
+                case TARGET_SUB_COMPONENT: targetSubComponentId = reader.nextString(); break;
+                case SOURCE_JORK: sourceJorkId = reader.nextString(); break;
+                case TARGET_JORK: targetJorkId = reader.nextString(); break;
+                case SELECT: setSelect(reader.nextString()); break;
+                case GUARD: setGuard(reader.nextString()); break;
+                case UPDATE: setUpdate(reader.nextString()); break;
+                case SYNC: setSync(reader.nextString()); break;
+                case NAILS:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        nails.add(new Nail(reader));
+                    }
+                    reader.endArray();
+                    break;
+                default: reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        setEnds(component, sourceLocationId, targetLocationId, sourceSubComponentId, targetSubComponentId, sourceJorkId, targetJorkId);
+    }
+
+    /**
+     * Sets the source and target of the edge to the locations, sub components and jorks of a component with the given ids
+     */
+    private void setEnds(final Component component,
+                         final String sourceLocationId,
+                         final String targetLocationId,
+                         final String sourceSubComponentId,
+                         final String targetSubComponentId,
+                         final String sourceJorkId,
+                         final String targetJorkId) {
         // Find the initial and final location of the component of the edge
         final Location initialLocation = component.getInitialLocation();
         final Location finalLocation = component.getFinalLocation();
 
-        // Sets a location to be either source or target location if the location matches the json content
+        // Sets a location to be either source or target location if the location matches the ids
         final Consumer<Location> setFromAndToLocationIfMatches = (location) -> {
-            if (json.get(SOURCE_LOCATION) != null && location.getId().equals(json.getAsJsonPrimitive(SOURCE_LOCATION).getAsString())) {
+            if (location.getId().equals(sourceLocationId)) {
                 setSourceLocation(location);
             }
-            if (json.get(TARGET_LOCATION) != null && location.getId().equals(json.getAsJsonPrimitive(TARGET_LOCATION).getAsString())) {
+            if (location.getId().equals(targetLocationId)) {
                 setTargetLocation(location);
             }
         };
@@ -519,39 +643,29 @@ public class Edge implements Serializable, Nearable {
         setFromAndToLocationIfMatches.accept(initialLocation);
         setFromAndToLocationIfMatches.accept(finalLocation);
 
-        // Sets a sub component to be either source or target sub component if the sub component matches the json content
+        // Sets a sub component to be either source or target sub component if the sub component matches the ids
         final Consumer<SubComponent> setFromAndToSubComponentIfMatches = (subComponent) -> {
-            if (json.get(SOURCE_SUB_COMPONENT) != null && subComponent.getIdentifier().equals(json.getAsJsonPrimitive(SOURCE_SUB_COMPONENT).getAsString())) {
+            if (subComponent.getIdentifier().equals(sourceSubComponentId)) {
                 setSourceSubComponent(subComponent);
             }
-            if (json.get(TARGET_SUB_COMPONENT) != null && subComponent.getIdentifier().equals(json.getAsJsonPrimitive(TARGET_SUB_COMPONENT).getAsString())) {
+            if (subComponent.getIdentifier().equals(targetSubComponentId)) {
                 setTargetSubComponent(subComponent);
             }
         };
 
         component.getSubComponents().forEach(setFromAndToSubComponentIfMatches);
 
-        // Sets a jork to be either source or target jork if the jork matches the json content
+        // Sets a jork to be either source or target jork if the jork matches the ids
         final Consumer<Jork> setFromAndToJorkIfMatches = (jork) -> {
-            if (json.get(SOURCE_JORK) != null && jork.getId().equals(json.getAsJsonPrimitive(SOURCE_JORK).getAsString())) {
+            if (jork.getId().equals(sourceJorkId)) {
                 setSourceJork(jork);
             }
-            if (json.get(TARGET_JORK) != null && jork.getId().equals(json.getAsJsonPrimitive(TARGET_JORK).getAsString())) {
+            if (jork.getId().equals(targetJorkId)) {
                 setTargetJork(jork);
             }
         };
 
         component.getJorks().forEach(setFromAndToJorkIfMatches);
-
-        setSelect(json.getAsJsonPrimitive(SELECT).getAsString());
-        setGuard(json.getAsJsonPrimitive(GUARD).getAsString());
-        setUpdate(json.getAsJsonPrimitive(UPDATE).getAsString());
-        setSync(json.getAsJsonPrimitive(SYNC).getAsString());
-
-        json.getAsJsonArray(NAILS).forEach(jsonElement -> {
-            final Nail newNail = new Nail((JsonObject) jsonElement);
-            nails.add(newNail);
-        });
     }
 
     @Override
@@ -577,6 +691,29 @@ public class Edge implements Serializable, Nearable {
         return result;
     }
 
+    /**
+     * Converts the edge to the plain model used by the verification backend
+     * @param locations the models of the locations of the component of the edge
+     * @param subComponents the models of the sub components of the component of the edge
+     * @param jorks the models of the jorks of the component of the edge
+     * @return the current state of the edge
+     */
+    public EdgeModel toModel(final Map<Location, LocationModel> locations,
+                             final Map<SubComponent, SubComponentModel> subComponents,
+                             final Map<Jork, JorkModel> jorks) {
+        final EdgeModel.Builder builder = new EdgeModel.Builder(nails.size())
+                .source(locations.get(getSourceLocation()), subComponents.get(getSourceSubComponent()), jorks.get(getSourceJork()))
+                .target(locations.get(getTargetLocation()), subComponents.get(getTargetSubComponent()), jorks.get(getTargetJork()))
+                .properties(getSelect(), getGuard(), getSync(), getUpdate());
+
+        for (int i = 0; i < nails.size(); i++) {
+            final Nail nail = nails.get(i);
+            builder.nail(i, nail.getX(), nail.getY(), EdgeModel.PropertyType.valueOf(nail.getPropertyType().name()), nail.getPropertyX(), nail.getPropertyY());
+        }
+
+        return builder.build();
+    }
+
     public enum PropertyType {
         NONE(-1),
         SELECTION(0),
@@ -604,7 +741,13 @@ public class Edge implements Serializable, Nearable {
     }
 
     private void bindReachabilityAnalysis() {
-
+        // Only listen for changes which affect the verification (and not e.g. the nails or the color)
+        sourceLocationProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
+        targetLocationProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
+        sourceSubComponentProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
+        targetSubComponentProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
+        sourceJorkProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
+        targetJorkProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
         selectProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
         guardProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
         syncProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
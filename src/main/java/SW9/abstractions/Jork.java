@@ -1,15 +1,21 @@
 package SW9.abstractions;
 
 import SW9.code_analysis.Nearable;
+import SW9.core.JorkModel;
 import SW9.utility.helpers.LocationAware;
 import SW9.utility.serialize.Serializable;
+import SW9.utility.serialize.StreamDeserializable;
+import SW9.utility.serialize.StreamSerializable;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import javafx.beans.property.*;
 
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class Jork implements Serializable, Nearable, LocationAware {
+public class Jork implements Serializable, StreamSerializable, StreamDeserializable, Nearable, LocationAware {
 
     private static final String X = "x";
     private static final String Y = "y";
@@ -39,6 +45,10 @@ public class Jork implements Serializable, Nearable, LocationAware {
         deserialize(jsonObject);
     }
 
+    public Jork(final JsonReader reader) throws IOException {
+        deserialize(reader);
+    }
+
     public String getId() {
         return id.get();
     }
@@ -107,6 +117,43 @@ public class Jork implements Serializable, Nearable, LocationAware {
         setType(new Gson().fromJson(json.getAsJsonPrimitive(TYPE), Type.class));
     }
 
+    @Override
+    public void serialize(final JsonWriter writer) throws IOException {
+        writer.beginObject();
+
+        writer.name(X).value(getX());
+        writer.name(Y).value(getY());
+        writer.name(ID).value(getId());
+        writer.name(TYPE).value(getType() != null ? getType().name() : null);
+
+        writer.endObject();
+    }
+
+    @Override
+    public void deserialize(final JsonReader reader) throws IOException {
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case X: setX(reader.nextDouble()); break;
+                case Y: setY(reader.nextDouble()); break;
+                case ID: setId(reader.nextString()); break;
+                case TYPE: setType(Type.valueOf(reader.nextString())); break;
+                default: reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+    }
+
+    /**
+     * Converts the jork to the plain model used by the verification backend
+     * @return the current state of the jork
+     */
+    public JorkModel toModel() {
+        return new JorkModel(getId(), getType().equals(Type.FORK) ? JorkModel.Type.FORK : JorkModel.Type.JOIN, getX(), getY());
+    }
+
     @Override
     public String generateNearString() {
         String result = "";
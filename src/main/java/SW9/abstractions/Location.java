@@ -1,20 +1,26 @@
 package SW9.abstractions;
 
 import SW9.code_analysis.Nearable;
+import SW9.core.LocationModel;
 import SW9.controllers.HUPPAALController;
 import SW9.presentations.DropDownMenu;
 import SW9.utility.colors.Color;
 import SW9.utility.colors.EnabledColor;
 import SW9.utility.helpers.Circular;
 import SW9.utility.serialize.Serializable;
+import SW9.utility.serialize.StreamDeserializable;
+import SW9.utility.serialize.StreamSerializable;
 import com.google.common.base.Strings;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import javafx.beans.property.*;
 
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class Location implements Circular, Serializable, Nearable, DropDownMenu.HasColor {
+public class Location implements Circular, Serializable, StreamSerializable, StreamDeserializable, Nearable, DropDownMenu.HasColor {
 
     private static final AtomicInteger hiddenID = new AtomicInteger(0); // Used to generate unique IDs
     private static final String NICKNAME = "nickname";
@@ -68,6 +74,12 @@ public class Location implements Circular, Serializable, Nearable, DropDownMenu.
         bindReachabilityAnalysis();
     }
 
+    public Location(final JsonReader reader) throws IOException {
+        hiddenID.incrementAndGet();
+        deserialize(reader);
+        bindReachabilityAnalysis();
+    }
+
     public static void resetHiddenID() {
         hiddenID.set(0);
     }
@@ -129,7 +141,6 @@ public class Location implements Circular, Serializable, Nearable, DropDownMenu.
     }
 
     public void setUrgency(final Urgency urgency) {
-        HUPPAALController.runReachabilityAnalysis();
         this.urgency.set(urgency);
     }
 
@@ -252,7 +263,6 @@ public class Location implements Circular, Serializable, Nearable, DropDownMenu.
     }
 
     public void setInvariantY(final double invariantY) {
-        HUPPAALController.runReachabilityAnalysis();
         this.invariantY.set(invariantY);
     }
 
@@ -324,7 +334,94 @@ public class Location implements Circular, Serializable, Nearable, DropDownMenu.
         setInvariantY(json.getAsJsonPrimitive(INVARIANT_Y).getAsDouble());
     }
 
+    @Override
+    public void serialize(final JsonWriter writer) throws IOException {
+        writer.beginObject();
+
+        writer.name(ID).value(getId());
+        writer.name(NICKNAME).value(getNickname());
+        writer.name(INVARIANT).value(getInvariant());
+        writer.name(TYPE).value(getType() != null ? getType().name() : null);
+        writer.name(URGENCY).value(getUrgency() != null ? getUrgency().name() : null);
+
+        writer.name(X).value(getX());
+        writer.name(Y).value(getY());
+        writer.name(COLOR).value(EnabledColor.getIdentifier(getColor()));
+
+        writer.name(NICKNAME_X).value(getNicknameX());
+        writer.name(NICKNAME_Y).value(getNicknameY());
+        writer.name(INVARIANT_X).value(getInvariantX());
+        writer.name(INVARIANT_Y).value(getInvariantY());
+
+        writer.endObject();
+    }
+
+    @Override
+    public void deserialize(final JsonReader reader) throws IOException {
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case ID: setId(reader.nextString()); break;
+                case NICKNAME: setNickname(reader.nextString()); break;
+                case INVARIANT: setInvariant(reader.nextString()); break;
+                case TYPE: setType(Type.valueOf(reader.nextString())); break;
+                case URGENCY: setUrgency(Urgency.valueOf(reader.nextString())); break;
+                case X: setX(reader.nextDouble()); break;
+                case Y: setY(reader.nextDouble()); break;
+                case COLOR:
+                    final EnabledColor enabledColor = EnabledColor.fromIdentifier(reader.nextString());
+                    if (enabledColor != null) {
+                        setColorIntensity(enabledColor.intensity);
+                        setColor(enabledColor.color);
+                    }
+                    break;
+                case NICKNAME_X: setNicknameX(reader.nextDouble()); break;
+                case NICKNAME_Y: setNicknameY(reader.nextDouble()); break;
+                case INVARIANT_X: setInvariantX(reader.nextDouble()); break;
+                case INVARIANT_Y: setInvariantY(reader.nextDouble()); break;
+                default: reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+    }
+
+
+
+    /**
+     * Converts the location to the plain model used by the verification backend
+     * @return the current state of the location
+     */
+    public LocationModel toModel() {
+        final LocationModel.Type type;
+        switch (getType()) {
+            case INITIAL:
+                type = LocationModel.Type.INITIAL;
+                break;
+            case FINAl:
+                type = LocationModel.Type.FINAL;
+                break;
+            default:
+                type = LocationModel.Type.NORMAL;
+        }
+
+        final LocationModel.Urgency urgency;
+        switch (getUrgency()) {
+            case URGENT:
+                urgency = LocationModel.Urgency.URGENT;
+                break;
+            case COMMITTED:
+                urgency = LocationModel.Urgency.COMMITTED;
+                break;
+            default:
+                urgency = LocationModel.Urgency.NORMAL;
+        }
 
+        final int color = getColor().toAwtColor(getColorIntensity()).getRGB() & 0xFFFFFF;
+
+        return new LocationModel(getId(), getInvariant(), type, urgency, getX(), getY(), color);
+    }
 
     @Override
     public String generateNearString() {
@@ -343,7 +440,7 @@ public class Location implements Circular, Serializable, Nearable, DropDownMenu.
     }
 
     private void bindReachabilityAnalysis() {
-
+        // Only listen for changes which affect the verification (and not e.g. the position or the color)
         invariantProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
         urgencyProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
     }
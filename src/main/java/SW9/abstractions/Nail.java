@@ -2,15 +2,21 @@ package SW9.abstractions;
 
 import SW9.utility.helpers.Circular;
 import SW9.utility.serialize.Serializable;
+import SW9.utility.serialize.StreamDeserializable;
+import SW9.utility.serialize.StreamSerializable;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableDoubleValue;
 
-public class Nail implements Circular, Serializable {
+import java.io.IOException;
+
+public class Nail implements Circular, Serializable, StreamSerializable, StreamDeserializable {
 
     private static final String X = "x";
     private static final String Y = "y";
@@ -39,6 +45,10 @@ public class Nail implements Circular, Serializable {
         deserialize(jsonObject);
     }
 
+    public Nail(final JsonReader reader) throws IOException {
+        deserialize(reader);
+    }
+
     public double getX() {
         return x.get();
     }
@@ -138,4 +148,35 @@ public class Nail implements Circular, Serializable {
         setPropertyY(json.getAsJsonPrimitive(PROPERTY_Y).getAsDouble());
     }
 
+    @Override
+    public void serialize(final JsonWriter writer) throws IOException {
+        writer.beginObject();
+
+        writer.name(X).value(getX());
+        writer.name(Y).value(getY());
+        writer.name(PROPERTY_TYPE).value(getPropertyType() != null ? getPropertyType().name() : null);
+        writer.name(PROPERTY_X).value(getPropertyX());
+        writer.name(PROPERTY_Y).value(getPropertyY());
+
+        writer.endObject();
+    }
+
+    @Override
+    public void deserialize(final JsonReader reader) throws IOException {
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case X: setX(reader.nextDouble()); break;
+                case Y: setY(reader.nextDouble()); break;
+                case PROPERTY_TYPE: setPropertyType(Edge.PropertyType.valueOf(reader.nextString())); break;
+                case PROPERTY_X: setPropertyX(reader.nextDouble()); break;
+                case PROPERTY_Y: setPropertyY(reader.nextDouble()); break;
+                default: reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+    }
+
 }
@@ -1,10 +1,17 @@
 package SW9.abstractions;
 
+import SW9.core.ComponentModel;
+import SW9.core.ProjectModel;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 
 public class Project {
 
@@ -36,4 +43,23 @@ public class Project {
         this.mainComponent.set(mainComponent);
     }
 
+    /**
+     * Takes an immutable snapshot of the components of the project, which can be read by background threads.
+     * Must be called on the thread editing the project (i.e. the JavaFX application thread).
+     * Components which did not change since the last snapshot are shared with the last snapshot,
+     * hence taking a snapshot only costs time proportional to what changed.
+     * @return the snapshot
+     */
+    public ProjectModel snapshot() {
+        final Map<Component, ComponentModel> models = new HashMap<>();
+
+        final List<ComponentModel> componentModels = new ArrayList<>();
+        for (final Component component : components) {
+            componentModels.add(component.snapshot(models));
+        }
+
+        final Component mainComponent = getMainComponent();
+        return new ProjectModel(componentModels, mainComponent == null ? null : mainComponent.snapshot(models));
+    }
+
 }
@@ -3,16 +3,22 @@ package SW9.abstractions;
 import SW9.HUPPAAL;
 import SW9.backend.QueryListener;
 import SW9.backend.UPPAALDriver;
+import SW9.backend.VerificationScheduler;
 import SW9.controllers.HUPPAALController;
 import SW9.utility.serialize.Serializable;
+import SW9.utility.serialize.StreamDeserializable;
+import SW9.utility.serialize.StreamSerializable;
 import com.google.gson.JsonObject;
-import com.uppaal.engine.Engine;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import javafx.application.Platform;
 import javafx.beans.property.*;
 
-import java.util.function.Consumer;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
-public class Query implements Serializable {
+public class Query implements Serializable, StreamSerializable, StreamDeserializable {
     private static final String QUERY = "query";
     private static final String COMMENT = "comment";
     private static final String IS_PERIODIC = "is_periodic";
@@ -22,7 +28,7 @@ public class Query implements Serializable {
     private final StringProperty comment = new SimpleStringProperty("");
     private final SimpleBooleanProperty isPeriodic = new SimpleBooleanProperty(false);
 
-    private Consumer<Boolean> runQuery;
+    private BiConsumer<Boolean, VerificationScheduler.Priority> runQuery;
 
     public Query(final String query, final String comment, final QueryState queryState) {
         this.query.set(query);
@@ -38,6 +44,12 @@ public class Query implements Serializable {
         initializeRunQuery();
     }
 
+    public Query(final JsonReader reader) throws IOException {
+        deserialize(reader);
+
+        initializeRunQuery();
+    }
+
     public QueryState getQueryState() {
         return queryState.get();
     }
@@ -86,12 +98,13 @@ public class Query implements Serializable {
         this.isPeriodic.set(isPeriodic);
     }
 
-    private Engine engine = null;
+    private CompletableFuture<Boolean> runningQuery = null;
     private Boolean forcedCancel = false;
 
     private void initializeRunQuery() {
-        runQuery = (buildHUPPAALDocument) -> {
+        runQuery = (buildHUPPAALDocument, priority) -> {
             setQueryState(QueryState.RUNNING);
+            forcedCancel = false;
 
             final Component mainComponent = HUPPAAL.getProject().getMainComponent();
 
@@ -103,7 +116,7 @@ public class Query implements Serializable {
                 if (buildHUPPAALDocument) {
                     UPPAALDriver.buildHUPPAALDocument();
                 }
-                UPPAALDriver.runQuery(getQuery(),
+                runningQuery = UPPAALDriver.runQuery(getQuery(),
                         aBoolean -> {
                             if (aBoolean) {
                                 setQueryState(QueryState.SUCCESSFUL);
@@ -127,11 +140,11 @@ public class Query implements Serializable {
                                 }
                             }
                         },
-                        eng -> {
-                            engine = eng;
-                        },
-                        new QueryListener(this)
-                ).start();
+                        engine -> {},
+                        new QueryListener(this),
+                        UPPAALDriver.getDefaultQueryDeadline(),
+                        priority
+                );
             } catch (final Exception e) {
                 e.printStackTrace();
             }
@@ -159,21 +172,57 @@ public class Query implements Serializable {
         }
     }
 
+    @Override
+    public void serialize(final JsonWriter writer) throws IOException {
+        writer.beginObject();
+
+        writer.name(QUERY).value(getQuery());
+        writer.name(COMMENT).value(getComment());
+        writer.name(IS_PERIODIC).value(isPeriodic());
+
+        writer.endObject();
+    }
+
+    @Override
+    public void deserialize(final JsonReader reader) throws IOException {
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case QUERY: setQuery(reader.nextString()); break;
+                case COMMENT: setComment(reader.nextString()); break;
+                case IS_PERIODIC: setIsPeriodic(reader.nextBoolean()); break;
+                default: reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+    }
+
     public void run() {
         run(true);
     }
 
     public void run(final boolean buildHUPPAALDocument) {
-        runQuery.accept(buildHUPPAALDocument);
+        run(buildHUPPAALDocument, VerificationScheduler.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Runs the query
+     * @param buildHUPPAALDocument if true the document is generated before the query is run
+     * @param priority the priority of the query, e.g. background for periodic checks
+     */
+    public void run(final boolean buildHUPPAALDocument, final VerificationScheduler.Priority priority) {
+        runQuery.accept(buildHUPPAALDocument, priority);
     }
 
     public void cancel() {
         if (getQueryState().equals(QueryState.RUNNING)) {
-            synchronized (UPPAALDriver.engineLock) {
-                if (engine != null) {
-                    forcedCancel = true;
-                    engine.cancel();
-                }
+            // Cancelling the future cancels the engine only if it is still running this query
+            if (runningQuery != null) {
+                forcedCancel = true;
+                runningQuery.cancel(true);
+                runningQuery = null;
             }
             setQueryState(QueryState.UNKNOWN);
         }
@@ -1,13 +1,22 @@
 package SW9.abstractions;
 
 import SW9.HUPPAAL;
+import SW9.controllers.HUPPAALController;
 import SW9.code_analysis.Nearable;
+import SW9.core.ComponentModel;
+import SW9.core.SubComponentModel;
 import SW9.utility.helpers.Circular;
 import SW9.utility.serialize.Serializable;
+import SW9.utility.serialize.StreamDeserializable;
+import SW9.utility.serialize.StreamSerializable;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import javafx.beans.property.*;
 
-public class SubComponent implements Serializable, Circular, Nearable {
+import java.io.IOException;
+
+public class SubComponent implements Serializable, StreamSerializable, StreamDeserializable, Circular, Nearable {
 
     private static final String COMPONENT = "component";
     private static final String IDENTIFIER = "identifier";
@@ -32,10 +41,20 @@ public class SubComponent implements Serializable, Circular, Nearable {
     public SubComponent(final Component component) {
         setComponent(component);
         setIdentifier("S" + String.valueOf(hashCode()));
+
+        bindReachabilityAnalysis();
     }
 
     public SubComponent(final JsonObject object) {
         deserialize(object);
+
+        bindReachabilityAnalysis();
+    }
+
+    public SubComponent(final JsonReader reader) throws IOException {
+        deserialize(reader);
+
+        bindReachabilityAnalysis();
     }
 
     public Component getComponent() {
@@ -141,6 +160,68 @@ public class SubComponent implements Serializable, Circular, Nearable {
         setHeight(json.getAsJsonPrimitive(HEIGHT).getAsDouble());
     }
 
+    @Override
+    public void serialize(final JsonWriter writer) throws IOException {
+        writer.beginObject();
+
+        writer.name(COMPONENT).value(getComponent().getName());
+        writer.name(IDENTIFIER).value(getIdentifier());
+
+        writer.name(X).value(getX());
+        writer.name(Y).value(getY());
+        writer.name(WIDTH).value(getWidth());
+        writer.name(HEIGHT).value(getHeight());
+
+        writer.endObject();
+    }
+
+    @Override
+    public void deserialize(final JsonReader reader) throws IOException {
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case COMPONENT:
+                    final String componentName = reader.nextString();
+                    HUPPAAL.getProject().getComponents().forEach(c -> {
+                        if (componentName.equals(c.getName())) {
+                            this.component.set(c);
+                        }
+                    });
+                    break;
+                case IDENTIFIER: setIdentifier(reader.nextString()); break;
+                case X: setX(reader.nextDouble()); break;
+                case Y: setY(reader.nextDouble()); break;
+                case WIDTH: setWidth(reader.nextDouble()); break;
+                case HEIGHT: setHeight(reader.nextDouble()); break;
+                default: reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+    }
+
+    /**
+     * Reads the name of the component a serialized sub component instantiates, skipping everything else
+     */
+    static String readComponentName(final JsonReader reader) throws IOException {
+        String componentName = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(COMPONENT)) {
+                componentName = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        return componentName;
+    }
+
     @Override
     public DoubleProperty radiusProperty() {
         return new SimpleDoubleProperty(10);
@@ -151,8 +232,23 @@ public class SubComponent implements Serializable, Circular, Nearable {
         return new SimpleDoubleProperty(10);
     }
 
+    /**
+     * Converts the sub component to the plain model used by the verification backend
+     * @param component the model of the instantiated component
+     * @return the current state of the sub component
+     */
+    public SubComponentModel toModel(final ComponentModel component) {
+        return new SubComponentModel(getIdentifier(), component, getX(), getY());
+    }
+
     @Override
     public String generateNearString() {
         return "Subcomponent " + getIdentifier();
     }
+
+    private void bindReachabilityAnalysis() {
+        // Only listen for changes which affect the verification (and not e.g. the position or the size)
+        componentProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
+        identifierProperty().addListener((observable, oldValue, newValue) -> HUPPAALController.runReachabilityAnalysis());
+    }
 }
@@ -30,6 +30,12 @@ public class BackendException extends Exception {
         }
     }
 
+    public static class EngineUnavailableException extends BackendException {
+        public EngineUnavailableException(final String message) {
+            super(message);
+        }
+    }
+
     public class QueryUncertainException extends BackendException {
         public QueryUncertainException(final String s) {
             super(s);
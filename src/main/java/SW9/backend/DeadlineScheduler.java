@@ -0,0 +1,190 @@
+package SW9.backend;
+
+import com.uppaal.engine.Engine;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cancels engine work which exceeds its deadline. All deadlines share a single (daemon) thread,
+ * and a deadline is removed from the scheduler as soon as the work it guards completes.
+ */
+public class DeadlineScheduler {
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Metrics
+    private final AtomicLong scheduledCount = new AtomicLong(0);
+    private final AtomicLong metCount = new AtomicLong(0);
+    private final AtomicLong expiredCount = new AtomicLong(0);
+    private final AtomicLong totalElapsedNanos = new AtomicLong(0);
+    private final AtomicLong minSlackNanos = new AtomicLong(Long.MAX_VALUE);
+
+    public DeadlineScheduler() {
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "Deadline scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Do not keep deadlines of completed work around until they would have expired
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Schedules a deadline for the work currently done by an engine.
+     * {@link Deadline#complete()} must be called when the work is done (also if it failed),
+     * since the engine might otherwise be cancelled while doing something else.
+     * @param engine the engine to cancel if the deadline expires
+     * @param timeout the time (in ms) the engine is allowed to work, or a negative number for no deadline
+     * @return the deadline
+     */
+    public Deadline schedule(final Engine engine, final long timeout) {
+        final Deadline deadline = new Deadline(engine, timeout);
+
+        if (timeout >= 0) {
+            scheduledCount.incrementAndGet();
+            deadline.future = executor.schedule(deadline::expire, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        return deadline;
+    }
+
+    public Metrics getMetrics() {
+        return new Metrics(
+                executor.getQueue().size(),
+                scheduledCount.get(),
+                metCount.get(),
+                expiredCount.get(),
+                totalElapsedNanos.get(),
+                minSlackNanos.get()
+        );
+    }
+
+    /**
+     * The deadline of some work done by an engine
+     */
+    public class Deadline {
+        private final Engine engine;
+        private final long timeout;
+        private final long startTime = System.nanoTime();
+
+        private ScheduledFuture<?> future;
+        private boolean completed = false;
+        private boolean expired = false;
+
+        private Deadline(final Engine engine, final long timeout) {
+            this.engine = engine;
+            this.timeout = timeout;
+        }
+
+        private synchronized void expire() {
+            // The work might have completed while we were waiting for the lock
+            if (completed) return;
+
+            expired = true;
+            expiredCount.incrementAndGet();
+            engine.cancel();
+        }
+
+        /**
+         * Marks the work as done, such that the engine is not cancelled when the deadline expires
+         * @return true if the work was done before the deadline, false if the engine was cancelled
+         */
+        public synchronized boolean complete() {
+            if (completed) return !expired;
+            completed = true;
+
+            if (future == null) return true;
+            future.cancel(false);
+
+            if (!expired) {
+                final long elapsed = System.nanoTime() - startTime;
+                metCount.incrementAndGet();
+                totalElapsedNanos.addAndGet(elapsed);
+                minSlackNanos.accumulateAndGet(TimeUnit.MILLISECONDS.toNanos(timeout) - elapsed, Math::min);
+            }
+
+            return !expired;
+        }
+
+        public synchronized boolean isExpired() {
+            return expired;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the metrics of a deadline scheduler
+     */
+    public static class Metrics {
+        private final int pendingDeadlines;
+        private final long scheduledCount;
+        private final long metCount;
+        private final long expiredCount;
+        private final long totalElapsedNanos;
+        private final long minSlackNanos;
+
+        private Metrics(final int pendingDeadlines,
+                        final long scheduledCount,
+                        final long metCount,
+                        final long expiredCount,
+                        final long totalElapsedNanos,
+                        final long minSlackNanos) {
+            this.pendingDeadlines = pendingDeadlines;
+            this.scheduledCount = scheduledCount;
+            this.metCount = metCount;
+            this.expiredCount = expiredCount;
+            this.totalElapsedNanos = totalElapsedNanos;
+            this.minSlackNanos = minSlackNanos;
+        }
+
+        /**
+         * @return the number of deadlines which are currently guarding work
+         */
+        public int getPendingDeadlines() {
+            return pendingDeadlines;
+        }
+
+        public long getScheduledCount() {
+            return scheduledCount;
+        }
+
+        /**
+         * @return the number of times the work was done before the deadline
+         */
+        public long getMetCount() {
+            return metCount;
+        }
+
+        /**
+         * @return the number of times the engine was cancelled because the deadline expired
+         */
+        public long getExpiredCount() {
+            return expiredCount;
+        }
+
+        /**
+         * @return the average time of work which was done before its deadline
+         */
+        public double getAverageElapsedMillis() {
+            if (metCount == 0) return 0;
+            return TimeUnit.NANOSECONDS.toMicros(totalElapsedNanos) / 1000d / metCount;
+        }
+
+        /**
+         * @return the smallest time left before the deadline when work was done, i.e. how close we came to a cancellation
+         */
+        public double getMinSlackMillis() {
+            if (metCount == 0) return 0;
+            return TimeUnit.NANOSECONDS.toMicros(minSlackNanos) / 1000d;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d pending deadlines, %d scheduled, %d met (avg. %.1f ms, min. slack %.1f ms), %d expired",
+                    pendingDeadlines, scheduledCount, metCount, getAverageElapsedMillis(), getMinSlackMillis(), expiredCount);
+        }
+    }
+}
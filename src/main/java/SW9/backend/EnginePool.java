@@ -0,0 +1,281 @@
+package SW9.backend;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of UPPAAL engines.
+ * Threads asking for an engine while all engines are in use are blocked until an engine is released,
+ * or until the given timeout expires. The order in which waiting threads are served is decided by a
+ * {@link VerificationScheduler}, i.e. interactive work goes before background work, and may preempt it.
+ * Engines are created lazily, i.e. the pool never holds more engines than have been needed concurrently.
+ * Idle engines stay connected to their server, such that they are warm when borrowed again.
+ */
+public class EnginePool {
+
+    private final int size;
+    private final Supplier<WarmEngine> engineFactory;
+
+    private final VerificationScheduler scheduler;
+
+    private final Deque<WarmEngine> idleEngines = new ArrayDeque<>();
+    private final List<WarmEngine> createdEngines = new ArrayList<>();
+    private final Map<WarmEngine, VerificationScheduler.Slot> borrowedSlots = new IdentityHashMap<>();
+
+    // Metrics
+    private final AtomicInteger inUse = new AtomicInteger(0);
+    private final AtomicLong borrowCount = new AtomicLong(0);
+    private final AtomicLong totalBorrowWaitNanos = new AtomicLong(0);
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong(0);
+    private final AtomicLong exhaustedCount = new AtomicLong(0);
+    private final AtomicLong timeoutCount = new AtomicLong(0);
+
+    public EnginePool(final int size, final Supplier<WarmEngine> engineFactory) {
+        if (size < 1) {
+            throw new IllegalArgumentException("An engine pool must contain at least one engine");
+        }
+
+        this.size = size;
+        this.engineFactory = engineFactory;
+        this.scheduler = new VerificationScheduler(size);
+    }
+
+    /**
+     * Borrows an engine from the pool for interactive work, blocking until one is available.
+     * @see EnginePool#borrow(VerificationScheduler.Priority, long, TimeUnit)
+     */
+    public WarmEngine borrow(final long timeout, final TimeUnit unit) throws InterruptedException, BackendException.EngineUnavailableException {
+        return borrow(VerificationScheduler.Priority.INTERACTIVE, timeout, unit);
+    }
+
+    /**
+     * Borrows an engine from the pool, blocking until one is available.
+     * The engine must be given back to the pool using {@link EnginePool#release(WarmEngine)}.
+     * If background work is preempted the engine is cancelled, and should be released as soon as possible
+     * (see {@link EnginePool#isPreempted(WarmEngine)}).
+     * @param priority the priority of the work the engine is used for
+     * @param timeout the maximum time to wait for an engine
+     * @param unit the time unit of the timeout
+     * @return an engine which is not used by anyone else
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws BackendException.EngineUnavailableException if no engine became available before the timeout
+     */
+    public WarmEngine borrow(final VerificationScheduler.Priority priority, final long timeout, final TimeUnit unit) throws InterruptedException, BackendException.EngineUnavailableException {
+        final long startTime = System.nanoTime();
+
+        final VerificationScheduler.Slot slot;
+        try {
+            slot = scheduler.acquire(priority, timeout, unit);
+        } catch (final BackendException.EngineUnavailableException e) {
+            exhaustedCount.incrementAndGet();
+            timeoutCount.incrementAndGet();
+            throw e;
+        }
+
+        if (slot.hasWaited()) {
+            exhaustedCount.incrementAndGet();
+        }
+
+        final WarmEngine engine;
+        try {
+            engine = takeIdleOrCreateEngine();
+        } catch (final RuntimeException e) {
+            scheduler.release(slot);
+            throw e;
+        }
+
+        synchronized (createdEngines) {
+            borrowedSlots.put(engine, slot);
+        }
+        slot.setPreemptionAction(engine::cancel);
+
+        final long waitTime = System.nanoTime() - startTime;
+        borrowCount.incrementAndGet();
+        totalBorrowWaitNanos.addAndGet(waitTime);
+        maxBorrowWaitNanos.accumulateAndGet(waitTime, Math::max);
+        inUse.incrementAndGet();
+
+        return engine;
+    }
+
+    /**
+     * Gives an engine back to the pool, and wakes up the waiting thread of the highest priority (if any)
+     * @param engine the engine previously borrowed from this pool
+     */
+    public void release(final WarmEngine engine) {
+        if (engine == null) return;
+
+        final VerificationScheduler.Slot slot;
+        synchronized (createdEngines) {
+            slot = borrowedSlots.remove(engine);
+
+            // The pool might have been shut down while the engine was borrowed, if so forget about the engine
+            if (createdEngines.contains(engine)) {
+                idleEngines.push(engine);
+            }
+        }
+
+        if (slot == null) return;
+
+        inUse.decrementAndGet();
+        scheduler.release(slot);
+    }
+
+    /**
+     * Checks if the work an engine is borrowed for was preempted by interactive work.
+     * If so, the engine has been cancelled, and the work should give it back and borrow an engine again.
+     * @param engine the engine borrowed from this pool
+     * @return true if the work was preempted
+     */
+    public boolean isPreempted(final WarmEngine engine) {
+        final VerificationScheduler.Slot slot;
+        synchronized (createdEngines) {
+            slot = borrowedSlots.get(engine);
+        }
+
+        return slot != null && slot.isPreempted();
+    }
+
+    /**
+     * Cancels any running task on the engines of this pool and forgets about them
+     */
+    public void shutdown() {
+        synchronized (createdEngines) {
+            createdEngines.forEach(WarmEngine::cancel);
+            createdEngines.clear();
+            idleEngines.clear();
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Metrics getMetrics() {
+        final int created;
+        synchronized (createdEngines) {
+            created = createdEngines.size();
+        }
+
+        return new Metrics(
+                size,
+                created,
+                inUse.get(),
+                scheduler.getQueueDepth(),
+                borrowCount.get(),
+                totalBorrowWaitNanos.get(),
+                maxBorrowWaitNanos.get(),
+                exhaustedCount.get(),
+                timeoutCount.get()
+        );
+    }
+
+    public VerificationScheduler.Metrics getSchedulerMetrics() {
+        return scheduler.getMetrics();
+    }
+
+    private WarmEngine takeIdleOrCreateEngine() {
+        synchronized (createdEngines) {
+            // Reuse the most recently used engine, if any
+            if (!idleEngines.isEmpty()) {
+                return idleEngines.pop();
+            }
+
+            final WarmEngine engine = engineFactory.get();
+            createdEngines.add(engine);
+            return engine;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the metrics of an engine pool
+     */
+    public static class Metrics {
+        private final int size;
+        private final int createdEngines;
+        private final int inUse;
+        private final int waitingThreads;
+        private final long borrowCount;
+        private final long totalBorrowWaitNanos;
+        private final long maxBorrowWaitNanos;
+        private final long exhaustedCount;
+        private final long timeoutCount;
+
+        private Metrics(final int size,
+                        final int createdEngines,
+                        final int inUse,
+                        final int waitingThreads,
+                        final long borrowCount,
+                        final long totalBorrowWaitNanos,
+                        final long maxBorrowWaitNanos,
+                        final long exhaustedCount,
+                        final long timeoutCount) {
+            this.size = size;
+            this.createdEngines = createdEngines;
+            this.inUse = inUse;
+            this.waitingThreads = waitingThreads;
+            this.borrowCount = borrowCount;
+            this.totalBorrowWaitNanos = totalBorrowWaitNanos;
+            this.maxBorrowWaitNanos = maxBorrowWaitNanos;
+            this.exhaustedCount = exhaustedCount;
+            this.timeoutCount = timeoutCount;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getCreatedEngines() {
+            return createdEngines;
+        }
+
+        public int getInUse() {
+            return inUse;
+        }
+
+        public int getWaitingThreads() {
+            return waitingThreads;
+        }
+
+        public long getBorrowCount() {
+            return borrowCount;
+        }
+
+        public double getAverageBorrowWaitMillis() {
+            if (borrowCount == 0) return 0;
+            return TimeUnit.NANOSECONDS.toMicros(totalBorrowWaitNanos) / 1000d / borrowCount;
+        }
+
+        public double getMaxBorrowWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMicros(maxBorrowWaitNanos) / 1000d;
+        }
+
+        /**
+         * @return the number of times an engine was requested while all engines of the pool were in use
+         */
+        public long getExhaustedCount() {
+            return exhaustedCount;
+        }
+
+        /**
+         * @return the number of times a thread gave up waiting for an engine
+         */
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d engines in use (%d created), %d waiting, %d borrows (avg. wait %.1f ms, max wait %.1f ms), exhausted %d times, %d timeouts",
+                    inUse, size, createdEngines, waitingThreads, borrowCount, getAverageBorrowWaitMillis(), getMaxBorrowWaitMillis(), exhaustedCount, timeoutCount);
+        }
+    }
+}
@@ -1,18 +1,22 @@
 package SW9.backend;
 
-import SW9.abstractions.Component;
-import SW9.abstractions.*;
+import SW9.core.*;
 import com.google.common.base.Strings;
+import com.uppaal.model.core2.AbstractTemplate;
 import com.uppaal.model.core2.Document;
+import com.uppaal.model.core2.Element;
+import com.uppaal.model.core2.Node;
 import com.uppaal.model.core2.Property;
 import com.uppaal.model.core2.PrototypeDocument;
 import com.uppaal.model.core2.Template;
 import javafx.util.Pair;
 
 import java.awt.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class HUPPAALDocument {
 
@@ -25,148 +29,271 @@ public class HUPPAALDocument {
     private static final String SYNC_PROPERTY_TAG = "synchronisation";
     private static final String UPDATE_PROPERTY_TAG = "assignment";
 
+    // The flags set by a reachability observer (see withReachabilityObserver)
+    static final String OBSERVER_VARIABLE = "huppaal_visited";
+
+    // Properties which only affect how the document is drawn (and not how it behaves)
+    private static final Set<String> LAYOUT_PROPERTY_TAGS = new HashSet<>(Arrays.asList("x", "y", "color"));
+
     private final Document uppaalDocument = new Document(new PrototypeDocument());
 
     // Map to convert H-UPPAAL locations to UPPAAL locations
-    private final Map<Location, com.uppaal.model.core2.Location> hToULocations = new HashMap<>();
+    private final Map<LocationModel, com.uppaal.model.core2.Location> hToULocations = new HashMap<>();
 
     // Map to convert back from UPPAAL to H-UPPAAL items
-    private final Map<com.uppaal.model.core2.Location, Location> uToHLocations = new HashMap<>();
+    private final Map<com.uppaal.model.core2.Location, LocationModel> uToHLocations = new HashMap<>();
 
     // Map to convert back from UPPAAL edges to H-UPPAAL edges
-    private final Map<com.uppaal.model.core2.Edge, Edge> uToHEdges = new HashMap<>();
+    private final Map<com.uppaal.model.core2.Edge, EdgeModel> uToHEdges = new HashMap<>();
 
     // Map from location to all of its uppaal names
-    private final Map<Location, List<String>> hLocationToFlattenedNames = new HashMap<>();
+    private final Map<LocationModel, List<String>> hLocationToFlattenedNames = new HashMap<>();
 
     // Map from subComponent to the Enter and Exit pseudo locations
     private final Map<String, Pair<com.uppaal.model.core2.Location, com.uppaal.model.core2.Location>> subComponentPseudoLocationMap = new HashMap<>();
 
-    private final Component mainComponent;
+    private final ComponentModel mainComponent;
+
+    // The templates each component is instantiated as (filled while generating the templates)
+    private final InstanceIndex instanceIndex = new InstanceIndex();
 
     /**
      * Map used to store startX! and endX! channels
      */
-    private final Map<String, Integer> subComponentIdentifiers = new HashMap<>();
+    private final Map<String, String> subComponentIdentifiers = new HashMap<>();
 
     /**
-     * Used to generate unique channel identifiers for starting and ending sub-procedures (synchronizations: startX! and endX!)
+     * Used to figure out the layering of sub components. For each layer we keep the prefix of the names of the
+     * locations in the layer, and the path of sub component identifiers leading to the layer (separated with underscore)
      */
-    private AtomicInteger uniqueChannelIdentifier = new AtomicInteger(0);
+    private final Stack<String> locationNamePrefixes = new Stack<>();
+    private final Stack<String> subComponentPaths = new Stack<>();
+
+    private ArrayList<String> subComponentTemplates = new ArrayList<>();
 
     /**
-     * Used to figure out the layering of sub components
+     * The global declarations (only set on the document when all templates are generated)
      */
-    private Stack<SubComponent> subComponentList = new Stack<>();
+    private final StringBuilder globalDeclarations = new StringBuilder();
 
-    private ArrayList<String> subComponentTemplates = new ArrayList<>();
+    /**
+     * Templates from previous generations (null if everything should be generated)
+     */
+    private final TemplateCache templateCache;
+
+    /**
+     * The side effects of generating the templates currently being generated
+     */
+    private final Stack<TemplateCache.Entry> templateRecordings = new Stack<>();
+
+    /**
+     * Hash of the generated UPPAAL document (computed when first needed)
+     */
+    private String fingerprint;
+
+    public HUPPAALDocument(final ComponentModel mainComponent) throws BackendException {
+        this(mainComponent, null);
+    }
+
+    /**
+     * Generates a document in which the flag {@link #OBSERVER_VARIABLE}[i] is set when the i'th of the given locations
+     * is entered (in any instance of its component). One exploration of the state space of this document then tells
+     * which of the locations are reachable. Notice that the flags are part of the state, hence the state space of this
+     * document might be larger than the state space of the plain document.
+     * @param mainComponent the main component
+     * @param locations the locations to observe
+     * @param templateCache templates of previous generations (the observer is added to this document only)
+     * @return the document
+     * @throws BackendException if the document could not be generated
+     */
+    static HUPPAALDocument withReachabilityObserver(final ComponentModel mainComponent, final List<LocationModel> locations, final TemplateCache templateCache) throws BackendException {
+        final HUPPAALDocument document = new HUPPAALDocument(mainComponent, templateCache);
+        document.addReachabilityObserver(locations);
+        return document;
+    }
 
-    public HUPPAALDocument(final Component mainComponent) throws BackendException {
+    /**
+     * Generates a document, reusing the templates of components which did not change since they were cached
+     * @param mainComponent the main component
+     * @param templateCache templates of previous generations (updated with the templates of this generation)
+     * @throws BackendException if the document could not be generated
+     */
+    HUPPAALDocument(final ComponentModel mainComponent, final TemplateCache templateCache) throws BackendException {
         this.mainComponent = mainComponent;
+        this.templateCache = templateCache;
+
+        // The main component is the outermost layer
+        locationNamePrefixes.push("L");
+        subComponentPaths.push("");
+
         generateUPPAALDocument();
+
+        if (templateCache != null) {
+            templateCache.evictUnused();
+        }
     }
 
     private Document generateUPPAALDocument() throws BackendException {
+        // Start with the default declarations of the document (if any)
+        final String defaultDeclarations = (String) uppaalDocument.getProperty(DECLARATION_PROPERTY_TAG).getValue();
+        if (!Strings.isNullOrEmpty(defaultDeclarations)) {
+            globalDeclarations.append(defaultDeclarations);
+        }
+
         // Set create a template for each model container
+        instanceIndex.add(mainComponent, mainComponent.getName());
         generateTemplate(mainComponent);
 
         // Generate the system declaration
-        String systemDclString = "system ";
+        final StringBuilder systemDcl = new StringBuilder("system ");
 
         // Add the main component process to the system declaration
-        systemDclString += mainComponent.getName();
+        systemDcl.append(mainComponent.getName());
 
         // Append all of the sub component template strings (found in generateTemplate())
         for (final String subComponentTemplate : subComponentTemplates) {
-            systemDclString += ", ";
-            systemDclString += subComponentTemplate;
+            systemDcl.append(", ").append(subComponentTemplate);
         }
 
         // Finish the system declaration
-        systemDclString += ";";
+        systemDcl.append(';');
 
         // Set the system declaration
-        uppaalDocument.setProperty("system", systemDclString);
+        uppaalDocument.setProperty("system", systemDcl.toString());
 
         // Add global broadcast channel used to join currently parallel running sub components
         addToGlobalDeclarations("broadcast chan " + SUBS_DONE_BROADCAST + ";");
 
+        // Set the global declarations
+        uppaalDocument.setProperty(DECLARATION_PROPERTY_TAG, globalDeclarations.toString());
+
         return uppaalDocument;
     }
 
-    private void addToGlobalDeclarations(final String declaration) {
-        String currentDeclarations = (String) uppaalDocument.getProperty(DECLARATION_PROPERTY_TAG).getValue();
-        if (!Strings.isNullOrEmpty(currentDeclarations)) {
-            currentDeclarations += "\n";
-        } else {
-            currentDeclarations = "";
+    private void addReachabilityObserver(final List<LocationModel> locations) {
+        if (locations.isEmpty()) return;
+
+        final Map<LocationModel, Integer> flags = new HashMap<>();
+        for (int i = 0; i < locations.size(); i++) {
+            flags.put(locations.get(i), i);
         }
-        uppaalDocument.setProperty(DECLARATION_PROPERTY_TAG, currentDeclarations + declaration);
-    }
 
-    private String generateName(final Location location) {
-        String result = "L";
+        final int[] initialValues = new int[locations.size()];
+
+        for (AbstractTemplate template = uppaalDocument.getTemplates(); template != null; template = (AbstractTemplate) template.getNext()) {
+            // A started sub component begins in its SubStart location, its initial location is entered when it is started
+            final boolean startsInPseudoLocation = hasInitialPseudoLocation(template);
 
-        // Add the identifier for each sub component (separated with underscore)
-        for (final SubComponent subComponent : subComponentList) {
-            result += subComponent.getIdentifier() + "_";
+            for (Node node = template.getFirst(); node != null; node = node.getNext()) {
+                if (node instanceof com.uppaal.model.core2.Location) {
+                    // The initial location of a template is entered without taking an edge
+                    final Integer flag = flags.get(uToHLocations.get(node));
+                    if (flag != null && !startsInPseudoLocation && Boolean.TRUE.equals(node.getPropertyValue("init"))) {
+                        initialValues[flag] = 1;
+                    }
+                } else if (node instanceof com.uppaal.model.core2.Edge) {
+                    // Any other location is entered by taking one of its incoming edges
+                    final com.uppaal.model.core2.Edge edge = (com.uppaal.model.core2.Edge) node;
+                    final Integer flag = flags.get(uToHLocations.get(edge.getTarget()));
+                    if (flag == null) continue;
+
+                    final Object update = edge.getPropertyValue(UPDATE_PROPERTY_TAG);
+                    final String flagUpdate = OBSERVER_VARIABLE + "[" + flag + "] = 1";
+                    edge.setProperty(UPDATE_PROPERTY_TAG, Strings.isNullOrEmpty((String) update) ? flagUpdate : update + ", " + flagUpdate);
+                }
+            }
         }
 
-        // Add the identifier for the location
-        result += location.getId();
+        final StringBuilder declaration = new StringBuilder("int[0,1] ")
+                .append(OBSERVER_VARIABLE).append('[').append(locations.size()).append("] = {");
+        for (int i = 0; i < initialValues.length; i++) {
+            if (i > 0) declaration.append(", ");
+            declaration.append(initialValues[i]);
+        }
+        declaration.append("};");
 
-        // Return the result
-        return result;
+        addToGlobalDeclarations(declaration.toString());
+        uppaalDocument.setProperty(DECLARATION_PROPERTY_TAG, globalDeclarations.toString());
     }
 
-    private String generateName(final SubComponent component) {
-        return generateName(component, false);
+    /**
+     * Checks if the initial location of a template is a pseudo location (i.e. the SubStart location of a started sub component)
+     */
+    private boolean hasInitialPseudoLocation(final AbstractTemplate template) {
+        for (Node node = template.getFirst(); node != null; node = node.getNext()) {
+            if (node instanceof com.uppaal.model.core2.Location && !uToHLocations.containsKey(node)
+                    && Boolean.TRUE.equals(node.getPropertyValue("init"))) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private String generateName(final SubComponent component, final boolean ignoreMe) {
-        String result = "";
-
-        // Add the identifier for each sub component (separated with underscore)
-        for (final SubComponent subComponent : subComponentList) {
-            if (!result.isEmpty()) {
-                result += "_";
-            }
-            result += subComponent.getIdentifier();
+    private void addToGlobalDeclarations(final String declaration) {
+        if (!templateRecordings.isEmpty()) {
+            templateRecordings.peek().globalDeclarations.add(declaration);
         }
 
-        if (!ignoreMe) {
-            // Add the identifier for the component
-            if (!result.isEmpty()) {
-                result += "_";
-            }
-            result += component.getIdentifier();
+        if (globalDeclarations.length() > 0) {
+            globalDeclarations.append('\n');
         }
+        globalDeclarations.append(declaration);
+    }
 
-        // Return the result
-        return result;
+    private String generateName(final LocationModel location) {
+        // The prefix contains the identifier for each sub component (each followed by an underscore)
+        return (locationNamePrefixes.peek() + location.getId()).intern();
     }
 
-    private void generateTemplate(final Component mainComponent) throws BackendException {
-        final Template template = generateTemplate(mainComponent, null, false);
-        template.setProperty(NAME_PROPERTY_TAG, mainComponent.getName());
+    private String generateName(final SubComponentModel component) {
+        return generateName(component, false);
     }
 
-    private void generateTemplate(final SubComponent subComponent, final boolean isStarted) throws BackendException {
-        subComponentList.add(subComponent);
-        final Template template = generateTemplate(subComponent.getComponent(), subComponent, isStarted);
-        subComponentList.remove(subComponent);
+    private String generateName(final SubComponentModel component, final boolean ignoreMe) {
+        // The path contains the identifier for each sub component (separated with underscore)
+        final String path = subComponentPaths.peek();
 
-        final String subComponentTemplateName = generateName(subComponent);
-        template.setProperty(NAME_PROPERTY_TAG, subComponentTemplateName);
-        subComponentTemplates.add(subComponentTemplateName);
+        if (ignoreMe) return path;
+
+        // Add the identifier for the component
+        return path.isEmpty() ? component.getIdentifier() : path + "_" + component.getIdentifier();
     }
 
-    private Template generateTemplate(final Component component, final SubComponent subComponent, final boolean isStarted) throws BackendException {
+    private void generateTemplate(final ComponentModel mainComponent) throws BackendException {
+        generateTemplate(mainComponent, null, false);
+    }
+
+    private void generateTemplate(final SubComponentModel subComponent, final boolean isStarted) throws BackendException {
+        // The flattened names are used many times (and by many maps), hence we only keep one copy of each of them
+        final String subComponentPath = generateName(subComponent).intern();
+        locationNamePrefixes.push((locationNamePrefixes.peek() + subComponent.getIdentifier() + "_").intern());
+        subComponentPaths.push(subComponentPath);
+
+        generateTemplate(subComponent.getComponent(), subComponent, isStarted);
+
+        locationNamePrefixes.pop();
+        subComponentPaths.pop();
+
+        subComponentTemplates.add(subComponentPath);
+        instanceIndex.add(subComponent.getComponent(), subComponentPath);
+    }
+
+    private Template generateTemplate(final ComponentModel component, final SubComponentModel subComponent, final boolean isStarted) throws BackendException {
+        final String templateKey = getTemplateKey(component, subComponent, isStarted);
+
+        // If the component did not change since we generated this template the last time, reuse that template
+        final TemplateCache.Entry cachedTemplate = templateCache != null ? templateCache.get(templateKey, component) : null;
+        if (cachedTemplate != null) {
+            return reuseTemplate(cachedTemplate, component);
+        }
 
         // Create empty template and insert it into the uppaal document
         final Template template = uppaalDocument.createTemplate();
         uppaalDocument.insert(template, null);
 
+        // Record the side effects of generating the template, such that they can be repeated if the template is reused
+        templateRecordings.push(new TemplateCache.Entry(component, template));
+
         if(subComponent != null) {
             template.setProperty(DECLARATION_PROPERTY_TAG, component.getDeclarations());
         } else {
@@ -174,35 +301,35 @@ public class HUPPAALDocument {
         }
 
         // Add all locations from the model to our conversion map and to the template
-        for (final Location hLocation : component.getLocations()) {
+        for (final LocationModel hLocation : component.getLocations()) {
 
             // Add the location to the template
             final com.uppaal.model.core2.Location uLocation = addLocation(template, hLocation, 0);
 
             // Populate the map
-            addLocationsToMaps(hLocation, uLocation);
+            recordLocation(hLocation, uLocation);
         }
 
         // Add the initial location to the template
-        final Location hInitialLocation = component.getInitialLocation();
+        final LocationModel hInitialLocation = component.getInitialLocation();
         final com.uppaal.model.core2.Location uInitialLocation = addLocation(template, hInitialLocation, 0);
-        addLocationsToMaps(hInitialLocation, uInitialLocation);
+        recordLocation(hInitialLocation, uInitialLocation);
 
         // Add the final location to the template
-        final Location hFinalLocation = component.getFinalLocation();
+        final LocationModel hFinalLocation = component.getFinalLocation();
         final com.uppaal.model.core2.Location uFinalLocation = addLocation(template, hFinalLocation, 0);
-        addLocationsToMaps(hFinalLocation, uFinalLocation);
+        recordLocation(hFinalLocation, uFinalLocation);
 
         // Find all edges going into the final location and make them go into SubUpdateFinished instead
-        final List<Edge> ignoredEdges = component.getRelatedEdges(component.getFinalLocation());
+        final List<EdgeModel> ignoredEdges = component.getRelatedEdges(component.getFinalLocation());
 
-        for (final Edge hEdge : component.getEdges()) {
+        for (final EdgeModel hEdge : component.getEdges()) {
             // Ignore edges being added in the sub component
             if (subComponent != null && ignoredEdges.contains(hEdge)) continue;
 
             // Draw edges that are purely location to location edges
             if (hEdge.getSourceLocation() != null && hEdge.getTargetLocation() != null) {
-                uToHEdges.put(addEdge(template, hEdge, 0), hEdge);
+                recordEdge(addEdge(template, hEdge, 0), hEdge);
             }
 
             // If the edge starts in a locations and ends in a sub component
@@ -219,10 +346,10 @@ public class HUPPAALDocument {
             }
 
             // If the edge starts somewhere and ends in a fork
-            if (hEdge.getTargetJork() != null && hEdge.getTargetJork().getType().equals(Jork.Type.FORK)) {
+            if (hEdge.getTargetJork() != null && hEdge.getTargetJork().getType().equals(JorkModel.Type.FORK)) {
                 // Find all outgoing edges from this fork and make sure that they are sub-components
-                final List<SubComponent> subComponentsToRunInParallel = new ArrayList<>();
-                for (final Edge edge : component.getOutGoingEdges(hEdge.getTargetJork())) {
+                final List<SubComponentModel> subComponentsToRunInParallel = new ArrayList<>();
+                for (final EdgeModel edge : component.getOutGoingEdges(hEdge.getTargetJork())) {
                     if (edge.getTargetSubComponent() != null) {
                         subComponentsToRunInParallel.add(edge.getTargetSubComponent());
                     } else {
@@ -242,7 +369,7 @@ public class HUPPAALDocument {
         }
 
         // Draw edges from a subComponent to locations
-        for (final Edge hEdge : component.getEdges()) {
+        for (final EdgeModel hEdge : component.getEdges()) {
             // Ignore edges being added in the sub component
             if (subComponent != null && ignoredEdges.contains(hEdge)) continue;
 
@@ -254,10 +381,10 @@ public class HUPPAALDocument {
             }
 
             // If the edge starts in a join and ends somewhere
-            if (hEdge.getSourceJork() != null && hEdge.getSourceJork().getType().equals(Jork.Type.JOIN)) {
+            if (hEdge.getSourceJork() != null && hEdge.getSourceJork().getType().equals(JorkModel.Type.JOIN)) {
                 // Find all outgoing edges from this fork and make sure that they are sub-components
-                final List<SubComponent> subComponentsToRunInParallel = new ArrayList<>();
-                for (final Edge edge : component.getIncomingEdges(hEdge.getSourceJork())) {
+                final List<SubComponentModel> subComponentsToRunInParallel = new ArrayList<>();
+                for (final EdgeModel edge : component.getIncomingEdges(hEdge.getSourceJork())) {
                     if (edge.getSourceSubComponent() != null) {
                         subComponentsToRunInParallel.add(edge.getSourceSubComponent());
                     } else {
@@ -271,24 +398,18 @@ public class HUPPAALDocument {
             }
         }
 
+        // The side effects of the sub component templates are recorded in their own recordings
+        final TemplateCache.Entry recording = templateRecordings.pop();
+
         // Generate templates for all sub components
-        for (final SubComponent subComponent1 : component.getSubComponents()) {
-            boolean isSubcomponent1Started = false;
-            for (final Edge edge : component.getRelatedEdges(subComponent1)) {
-                if (edge.getSourceJork() != null || edge.getSourceLocation() != null) {
-                    isSubcomponent1Started = true;
-                    break;
-                }
-            }
-            generateTemplate(subComponent1, isSubcomponent1Started);
-        }
+        generateSubComponentTemplates(component);
 
         // Add pseudo locations for being a sub component
         if (subComponent != null && isStarted) {
             final int offset = 300;
 
-            final Location initialLocation = component.getInitialLocation();
-            final Location finalLocation = component.getFinalLocation();
+            final LocationModel initialLocation = component.getInitialLocation();
+            final LocationModel finalLocation = component.getFinalLocation();
 
             // Add the three pseudo locations
             final com.uppaal.model.core2.Location subStart = generatePseudoLocationInTemplate(template, "SubStart", false, initialLocation.getX() - offset, initialLocation.getY());
@@ -324,7 +445,7 @@ public class HUPPAALDocument {
             nail.setProperty("x", subStart.getX());
             nail.setProperty("y", subIndicateDone.getY());
 
-            for (final Edge hEdge : ignoredEdges) {
+            for (final EdgeModel hEdge : ignoredEdges) {
                 // From location
                 if (hEdge.getSourceLocation() != null) {
                     final com.uppaal.model.core2.Edge edge = generateEdgeInTemplate(template, hToULocations.get(hEdge.getSourceLocation()), subUpdateFinished);
@@ -341,9 +462,90 @@ public class HUPPAALDocument {
 
         }
 
+        template.setProperty(NAME_PROPERTY_TAG, subComponent == null ? component.getName() : generateName(subComponent, true));
+
+        // Remember a copy of the template (which is not part of this document) for the next generation
+        if (templateCache != null) {
+            templateCache.put(templateKey, recording.copyTo(cloneTemplate(template)));
+        }
+
         return template;
     }
 
+    private void generateSubComponentTemplates(final ComponentModel component) throws BackendException {
+        // A sub component is started if it has an incoming edge from a location or a fork (found in one pass over the edges)
+        final Set<SubComponentModel> startedSubComponents = new HashSet<>();
+        for (final EdgeModel edge : component.getEdges()) {
+            if (edge.getTargetSubComponent() != null && (edge.getSourceJork() != null || edge.getSourceLocation() != null)) {
+                startedSubComponents.add(edge.getTargetSubComponent());
+            }
+        }
+
+        for (final SubComponentModel subComponent : component.getSubComponents()) {
+            generateTemplate(subComponent, startedSubComponents.contains(subComponent));
+        }
+    }
+
+    /**
+     * Gets the key of a template in the template cache.
+     * The key changes whenever something the template is generated from changes.
+     */
+    private String getTemplateKey(final ComponentModel component, final SubComponentModel subComponent, final boolean isStarted) {
+        final StringBuilder key = new StringBuilder();
+
+        // Where the template is instantiated (the sub component is on the top of the stack)
+        if (subComponent != null) {
+            final String name = generateName(subComponent, true);
+            key.append(name).append(':').append(subComponentIdentifiers.get(name)).append(':').append(isStarted);
+        }
+
+        // The component itself, and its sub components (the template uses the invariants of their final locations)
+        key.append('|').append(component.getId()).append('@').append(component.getVersion());
+        for (final SubComponentModel child : component.getSubComponents()) {
+            final ComponentModel childComponent = child.getComponent();
+            key.append(',').append(childComponent.getId()).append('@').append(childComponent.getVersion());
+        }
+
+        return key.toString();
+    }
+
+    private Template reuseTemplate(final TemplateCache.Entry cachedTemplate, final ComponentModel component) throws BackendException {
+        final Template template = cloneTemplate(cachedTemplate.template);
+        uppaalDocument.insert(template, null);
+
+        // The cloned template must inherit default properties from this document (and not the one it was generated in)
+        template.setPrototype(uppaalDocument.createTemplate().getPrototype());
+
+        // Repeat the side effects of generating the template
+        final TemplateCache.Entry entry = cachedTemplate.copyTo(template);
+        entry.globalDeclarations.forEach(this::addToGlobalDeclarations);
+        subComponentIdentifiers.putAll(entry.subComponentIdentifiers);
+        entry.locations.forEach(pair -> addLocationsToMaps(pair.getKey(), (com.uppaal.model.core2.Location) pair.getValue()));
+        entry.edges.forEach(pair -> uToHEdges.put((com.uppaal.model.core2.Edge) pair.getKey(), pair.getValue()));
+
+        generateSubComponentTemplates(component);
+
+        return template;
+    }
+
+    private static Template cloneTemplate(final Template template) throws BackendException {
+        try {
+            return (Template) template.clone();
+        } catch (final CloneNotSupportedException e) {
+            throw new BackendException("Could not copy template", e);
+        }
+    }
+
+    private void recordLocation(final LocationModel hLocation, final com.uppaal.model.core2.Location uLocation) {
+        templateRecordings.peek().locations.add(new Pair<>(hLocation, uLocation));
+        addLocationsToMaps(hLocation, uLocation);
+    }
+
+    private void recordEdge(final com.uppaal.model.core2.Edge uEdge, final EdgeModel hEdge) {
+        templateRecordings.peek().edges.add(new Pair<>(uEdge, hEdge));
+        uToHEdges.put(uEdge, hEdge);
+    }
+
     private com.uppaal.model.core2.Location generatePseudoLocationInTemplate(final Template template, final String name, final boolean isCommitted, final double x, final double y) {
         final com.uppaal.model.core2.Location uLocation = template.createLocation();
         template.insert(uLocation, null);
@@ -395,13 +597,13 @@ public class HUPPAALDocument {
         p.setProperty("y", pY - 10);
     }
 
-    private void addPseudoLocationsForSubComponent(final Template template, final SubComponent targetSubComponent) {
-        addPseudoLocationsForSubComponent(template, new ArrayList<SubComponent>() {{
+    private void addPseudoLocationsForSubComponent(final Template template, final SubComponentModel targetSubComponent) {
+        addPseudoLocationsForSubComponent(template, new ArrayList<SubComponentModel>() {{
             add(targetSubComponent);
         }});
     }
 
-    private void addPseudoLocationsForSubComponent(final Template template, final List<SubComponent> targetSubComponents) {
+    private void addPseudoLocationsForSubComponent(final Template template, final List<SubComponentModel> targetSubComponents) {
         // Styling properties (used to place them in the uppaal document)
         final int x = (int) targetSubComponents.get(0).getX();
         final int y = (int) targetSubComponents.get(0).getY();
@@ -414,7 +616,7 @@ public class HUPPAALDocument {
 
         // Add invariant to the exit pseudo location
         String finalLocationInvariants = "";
-        for (final SubComponent subComponent : targetSubComponents) {
+        for (final SubComponentModel subComponent : targetSubComponents) {
             if (!finalLocationInvariants.isEmpty()) {
                 finalLocationInvariants += " && ";
             }
@@ -423,11 +625,14 @@ public class HUPPAALDocument {
 
         exit.setProperty(INVARIANT_PROPERTY_TAG, finalLocationInvariants);
 
-        // Generate a new identifier for the collection of sub-components
-        final int id = uniqueChannelIdentifier.getAndIncrement();
+        // Identify the collection of sub-components by its first sub-component (stable between generations of the document)
+        final String id = generateName(targetSubComponents.get(0));
 
         // Store identifier for all sub components so that they know which channels to sync on
-        targetSubComponents.forEach(subComponent -> subComponentIdentifiers.put(generateName(subComponent), id));
+        targetSubComponents.forEach(subComponent -> {
+            subComponentIdentifiers.put(generateName(subComponent), id);
+            templateRecordings.peek().subComponentIdentifiers.put(generateName(subComponent), id);
+        });
 
         // Draw edge from enter to running
         final com.uppaal.model.core2.Edge enterToRunning = generateEdgeInTemplate(template, enter, running);
@@ -440,7 +645,7 @@ public class HUPPAALDocument {
         final List<String> isDoneBooleans = new ArrayList<>();
 
         // Loop through the provided sub components, generating guards and sync for them
-        for (final SubComponent targetSubComponent : targetSubComponents) {
+        for (final SubComponentModel targetSubComponent : targetSubComponents) {
             // Add isDone boolean for this sub component.
             final String subComponentIsDoneBoolName = "isDone" + generateName(targetSubComponent);
             addToGlobalDeclarations("bool " + subComponentIsDoneBoolName + " = false;");
@@ -472,7 +677,7 @@ public class HUPPAALDocument {
         subComponentPseudoLocationMap.put(generateName(targetSubComponents.get(0)), new Pair<>(enter, exit));
     }
 
-    private void addLocationsToMaps(final Location hLocation, final com.uppaal.model.core2.Location uLocation) {
+    private void addLocationsToMaps(final LocationModel hLocation, final com.uppaal.model.core2.Location uLocation) {
         final String serializedHLocationName = generateName(hLocation);
         hToULocations.put(hLocation, uLocation);
         uToHLocations.put(uLocation, hLocation);
@@ -486,10 +691,10 @@ public class HUPPAALDocument {
         nameList.add(serializedHLocationName);
     }
 
-    private com.uppaal.model.core2.Location addLocation(final Template template, final Location hLocation, final int offset) {
-        final int x = (int) hLocation.xProperty().get();
-        final int y = (int) hLocation.yProperty().get() + offset;
-        final Color color = hLocation.getColor().toAwtColor(hLocation.getColorIntensity());
+    private com.uppaal.model.core2.Location addLocation(final Template template, final LocationModel hLocation, final int offset) {
+        final int x = (int) hLocation.getX();
+        final int y = (int) hLocation.getY() + offset;
+        final Color color = new Color(hLocation.getColor());
 
         // Create new UPPAAL location and insert it into the template
         final com.uppaal.model.core2.Location uLocation = template.createLocation();
@@ -504,17 +709,17 @@ public class HUPPAALDocument {
         }
 
         // Add committed property if location is committed
-        if (hLocation.getUrgency().equals(Location.Urgency.COMMITTED)) {
+        if (hLocation.getUrgency().equals(LocationModel.Urgency.COMMITTED)) {
             uLocation.setProperty(COMMITTED_PROPERTY_TAG, true);
         }
 
         // Add urgent property if location is urgent
-        if (hLocation.getUrgency().equals(Location.Urgency.URGENT)) {
+        if (hLocation.getUrgency().equals(LocationModel.Urgency.URGENT)) {
             uLocation.setProperty("urgent", true);
         }
 
         // Add initial property if location is initial
-        if (hLocation.getType().equals(Location.Type.INITIAL)) {
+        if (hLocation.getType().equals(LocationModel.Type.INITIAL)) {
             uLocation.setProperty("init", true);
         }
 
@@ -533,11 +738,11 @@ public class HUPPAALDocument {
         return uLocation;
     }
 
-    private com.uppaal.model.core2.Edge addEdge(final Template template, final Edge hEdge, final int offset) throws BackendException {
+    private com.uppaal.model.core2.Edge addEdge(final Template template, final EdgeModel hEdge, final int offset) throws BackendException {
         return addEdge(template, hEdge, offset, null);
     }
 
-    private com.uppaal.model.core2.Edge addEdge(final Template template, final Edge hEdge, final int offset, final com.uppaal.model.core2.Location fallBackLocation) throws BackendException {
+    private com.uppaal.model.core2.Edge addEdge(final Template template, final EdgeModel hEdge, final int offset, final com.uppaal.model.core2.Location fallBackLocation) throws BackendException {
         // Create new UPPAAL edge and insert it into the template
         final com.uppaal.model.core2.Edge uEdge = template.createEdge();
         template.insert(uEdge, null);
@@ -572,46 +777,44 @@ public class HUPPAALDocument {
         return uEdge;
     }
 
-    private void annotateEdge(final com.uppaal.model.core2.Edge uEdge, final Edge hEdge, final int offset) {
-        final List<Nail> reversedNails = new ArrayList<>();
-        hEdge.getNails().forEach(nail -> reversedNails.add(0, nail));
-
-        for (final Nail hNail : reversedNails) {
+    private void annotateEdge(final com.uppaal.model.core2.Edge uEdge, final EdgeModel hEdge, final int offset) {
+        // Insert the nails in reverse order
+        for (int nail = hEdge.getNailCount() - 1; nail >= 0; nail--) {
 
             // Create a Uppaal nail
             final com.uppaal.model.core2.Nail uNail = uEdge.createNail();
             uEdge.insert(uNail, null);
 
-            final int x = (int) hNail.getX();
-            final int y = ((int) hNail.getY()) + offset;
+            final int x = (int) hEdge.getNailX(nail);
+            final int y = ((int) hEdge.getNailY(nail)) + offset;
 
             // If the nail is a property nail and the edge have this property set, add it to the view
-            if (!Strings.isNullOrEmpty(hEdge.getSelect()) && hNail.getPropertyType().equals(Edge.PropertyType.SELECTION)) {
+            if (!Strings.isNullOrEmpty(hEdge.getSelect()) && hEdge.getNailPropertyType(nail).equals(EdgeModel.PropertyType.SELECTION)) {
                 uEdge.setProperty("select", hEdge.getSelect());
                 final Property p = uEdge.getProperty("select");
-                p.setProperty("x", x + ((int) hNail.getPropertyX()));
-                p.setProperty("y", y + ((int) hNail.getPropertyY()) + offset);
+                p.setProperty("x", x + ((int) hEdge.getNailPropertyX(nail)));
+                p.setProperty("y", y + ((int) hEdge.getNailPropertyY(nail)) + offset);
             }
 
-            if (!Strings.isNullOrEmpty(hEdge.getGuard()) && hNail.getPropertyType().equals(Edge.PropertyType.GUARD)) {
+            if (!Strings.isNullOrEmpty(hEdge.getGuard()) && hEdge.getNailPropertyType(nail).equals(EdgeModel.PropertyType.GUARD)) {
                 uEdge.setProperty(GUARD_PROPERTY_TAG, hEdge.getGuard());
                 final Property p = uEdge.getProperty(GUARD_PROPERTY_TAG);
-                p.setProperty("x", x + ((int) hNail.getPropertyX()));
-                p.setProperty("y", y + ((int) hNail.getPropertyY()) + offset);
+                p.setProperty("x", x + ((int) hEdge.getNailPropertyX(nail)));
+                p.setProperty("y", y + ((int) hEdge.getNailPropertyY(nail)) + offset);
             }
 
-            if (!Strings.isNullOrEmpty(hEdge.getSync()) && hNail.getPropertyType().equals(Edge.PropertyType.SYNCHRONIZATION)) {
+            if (!Strings.isNullOrEmpty(hEdge.getSync()) && hEdge.getNailPropertyType(nail).equals(EdgeModel.PropertyType.SYNCHRONIZATION)) {
                 uEdge.setProperty(SYNC_PROPERTY_TAG, hEdge.getSync());
                 final Property p = uEdge.getProperty(SYNC_PROPERTY_TAG);
-                p.setProperty("x", x + ((int) hNail.getPropertyX()));
-                p.setProperty("y", y + ((int) hNail.getPropertyY()) + offset);
+                p.setProperty("x", x + ((int) hEdge.getNailPropertyX(nail)));
+                p.setProperty("y", y + ((int) hEdge.getNailPropertyY(nail)) + offset);
             }
 
-            if (!Strings.isNullOrEmpty(hEdge.getUpdate()) && hNail.getPropertyType().equals(Edge.PropertyType.UPDATE)) {
+            if (!Strings.isNullOrEmpty(hEdge.getUpdate()) && hEdge.getNailPropertyType(nail).equals(EdgeModel.PropertyType.UPDATE)) {
                 uEdge.setProperty(UPDATE_PROPERTY_TAG, hEdge.getUpdate());
                 final Property p = uEdge.getProperty(UPDATE_PROPERTY_TAG);
-                p.setProperty("x", x + ((int) hNail.getPropertyX()));
-                p.setProperty("y", y + ((int) hNail.getPropertyY()) + offset);
+                p.setProperty("x", x + ((int) hEdge.getNailPropertyX(nail)));
+                p.setProperty("y", y + ((int) hEdge.getNailPropertyY(nail)) + offset);
             }
 
             // Add the position of the nail
@@ -625,11 +828,97 @@ public class HUPPAALDocument {
         return uppaalDocument;
     }
 
-    public Location getLocation(final com.uppaal.model.core2.Location uLocation) {
+    /**
+     * @return the templates each component of the document is instantiated as
+     */
+    public InstanceIndex getInstanceIndex() {
+        return instanceIndex;
+    }
+
+    /**
+     * Gets a hash of the generated UPPAAL document.
+     * Layout (positions, colors and nails) is not part of the hash, hence two documents with the same fingerprint
+     * will compile to the same system and give the same answers to the same queries.
+     * @return the fingerprint as a hex string
+     */
+    public synchronized String getFingerprint() {
+        if (fingerprint == null) {
+            final StringBuilder content = new StringBuilder();
+            appendElement(content, uppaalDocument, new HashMap<>());
+            fingerprint = sha256(content.toString());
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Appends a textual representation of an element (its properties and children) to a builder
+     * @param builder the builder to append to
+     * @param element the element to append
+     * @param nodeIds identifiers of the nodes appended so far (used to refer to the source and target of edges)
+     */
+    private static void appendElement(final StringBuilder builder, final Element element, final Map<Node, Integer> nodeIds) {
+        builder.append(element.getClass().getSimpleName()).append('{');
+
+        // Append the properties in a deterministic order
+        if (element.getProperties() != null) {
+            final List<Map.Entry<String, Property>> properties = new ArrayList<>(element.getProperties());
+            properties.sort(Comparator.comparing(Map.Entry::getKey));
+
+            for (final Map.Entry<String, Property> property : properties) {
+                if (LAYOUT_PROPERTY_TAGS.contains(property.getKey())) continue;
+
+                builder.append(property.getKey()).append('=').append(property.getValue().getValue()).append(';');
+                appendElement(builder, property.getValue(), nodeIds);
+            }
+        }
+
+        if (element instanceof Node) {
+            // Give every child an identifier before appending them, since edges can refer to any location in the template
+            for (Node child = ((Node) element).getFirst(); child != null; child = child.getNext()) {
+                nodeIds.put(child, nodeIds.size());
+            }
+
+            for (Node child = ((Node) element).getFirst(); child != null; child = child.getNext()) {
+                if (child instanceof com.uppaal.model.core2.Nail) continue;
+
+                builder.append('#').append(nodeIds.get(child));
+
+                if (child instanceof com.uppaal.model.core2.Edge) {
+                    final com.uppaal.model.core2.Edge edge = (com.uppaal.model.core2.Edge) child;
+                    builder.append(nodeIds.get(edge.getSource())).append("->").append(nodeIds.get(edge.getTarget()));
+                }
+
+                appendElement(builder, child, nodeIds);
+            }
+        }
+
+        builder.append('}');
+    }
+
+    static String sha256(final String content) {
+        return sha256(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(final byte[] bytes) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            final StringBuilder result = new StringBuilder(digest.length * 2);
+            for (final byte b : digest) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public LocationModel getLocation(final com.uppaal.model.core2.Location uLocation) {
         return uToHLocations.get(uLocation);
     }
 
-    public Edge getEdge(final com.uppaal.model.core2.Edge uEdge) {
+    public EdgeModel getEdge(final com.uppaal.model.core2.Edge uEdge) {
         return uToHEdges.get(uEdge);
     }
 
@@ -0,0 +1,63 @@
+package SW9.backend;
+
+import SW9.core.ComponentModel;
+import SW9.core.SubComponentModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The names of the UPPAAL templates (processes) each component is instantiated as in a document.
+ * The main component is instantiated by its name, and a sub component by the identifiers of the sub components
+ * leading to it separated with underscores (e.g. "A_B_C" for C in B in A).
+ */
+public class InstanceIndex {
+
+    private final Map<Long, List<String>> templateNames = new HashMap<>();
+
+    InstanceIndex() {
+    }
+
+    /**
+     * Builds the index of the document that would be generated from a main component.
+     * Use {@link HUPPAALDocument#getInstanceIndex()} instead if the document is generated anyway.
+     * @param mainComponent the main component
+     * @return the index
+     */
+    public static InstanceIndex of(final ComponentModel mainComponent) {
+        final InstanceIndex index = new InstanceIndex();
+        index.add(mainComponent, mainComponent.getName());
+
+        for (final SubComponentModel subComponent : mainComponent.getSubComponents()) {
+            index.add(subComponent, "");
+        }
+
+        return index;
+    }
+
+    private void add(final SubComponentModel subComponent, final String parentPath) {
+        final String path = parentPath.isEmpty() ? subComponent.getIdentifier() : parentPath + "_" + subComponent.getIdentifier();
+        add(subComponent.getComponent(), path);
+
+        for (final SubComponentModel child : subComponent.getComponent().getSubComponents()) {
+            add(child, path);
+        }
+    }
+
+    void add(final ComponentModel component, final String templateName) {
+        templateNames.computeIfAbsent(component.getId(), id -> new ArrayList<>()).add(templateName);
+    }
+
+    /**
+     * Gets the names of the templates a component is instantiated as
+     * @param componentId the id of the component (see {@link ComponentModel#getId()})
+     * @return the names, or an empty list if the component is not instantiated
+     */
+    public List<String> getTemplateNames(final long componentId) {
+        final List<String> names = templateNames.get(componentId);
+        return names != null ? Collections.unmodifiableList(names) : Collections.emptyList();
+    }
+}
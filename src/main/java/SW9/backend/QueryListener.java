@@ -53,6 +53,8 @@ public class QueryListener implements QueryFeedback {
 
     @Override
     public void setFeedback(final String s) {
+        if (UPPAALDriver.isHeadless()) return;
+
         if (s.contains("inf") || s.contains("sup")) {
             Platform.runLater(() -> {
                 HUPPAALController.openQueryDialog(query, s.split("\n")[1]);
@@ -0,0 +1,96 @@
+package SW9.backend;
+
+import com.uppaal.engine.QueryFeedback;
+import com.uppaal.engine.QueryVerificationResult;
+import com.uppaal.model.system.symbolic.SymbolicTransition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Passes the feedback of an engine on to another listener, remembers the trace reported by the engine (if any),
+ * and reports the progress of the engine to a {@link VerificationProgressRegistry}
+ */
+class RecordingFeedback implements QueryFeedback {
+
+    private final QueryFeedback listener;
+    private final VerificationProgressRegistry.Tracker tracker;
+    private volatile List<SymbolicTransition> transitions;
+    private volatile VerificationProgress progress;
+
+    RecordingFeedback(final QueryFeedback listener, final VerificationProgressRegistry.Tracker tracker) {
+        this.listener = listener;
+        this.tracker = tracker;
+    }
+
+    /**
+     * @return the transitions of the last trace reported by the engine, or null if the engine did not report a trace
+     */
+    List<SymbolicTransition> getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * Marks the query as finished in the progress registry. Must be called when the engine is done
+     */
+    void finish() {
+        progress = tracker.finish();
+    }
+
+    /**
+     * @return the last progress reported by the engine, or null if the engine did not report progress (or is not done)
+     */
+    VerificationProgress getProgress() {
+        return progress;
+    }
+
+    @Override
+    public void setProgressAvail(final boolean b) {
+        listener.setProgressAvail(b);
+    }
+
+    @Override
+    public void setProgress(final int i, final long l, final long l1, final long l2, final long l3, final long l4, final long l5, final long l6, final long l7, final long l8) {
+        tracker.setProgress(i, l, l1, l2, l3, l4, l5, l6, l7, l8);
+        listener.setProgress(i, l, l1, l2, l3, l4, l5, l6, l7, l8);
+    }
+
+    @Override
+    public void setSystemInfo(final long l, final long l1, final long l2) {
+        tracker.setSystemInfo(l, l1, l2);
+        listener.setSystemInfo(l, l1, l2);
+    }
+
+    @Override
+    public void setLength(final int i) {
+        listener.setLength(i);
+    }
+
+    @Override
+    public void setCurrent(final int i) {
+        listener.setCurrent(i);
+    }
+
+    @Override
+    public void setTrace(final char c, final String s, final ArrayList<SymbolicTransition> arrayList, final int i, final QueryVerificationResult queryVerificationResult) {
+        if (arrayList != null && !arrayList.isEmpty()) {
+            transitions = arrayList;
+        }
+        listener.setTrace(c, s, arrayList, i, queryVerificationResult);
+    }
+
+    @Override
+    public void setFeedback(final String s) {
+        listener.setFeedback(s);
+    }
+
+    @Override
+    public void appendText(final String s) {
+        listener.appendText(s);
+    }
+
+    @Override
+    public void setResultText(final String s) {
+        listener.setResultText(s);
+    }
+}
@@ -0,0 +1,92 @@
+package SW9.backend;
+
+import SW9.core.ComponentModel;
+import SW9.core.EdgeModel;
+import SW9.core.LocationModel;
+import com.uppaal.model.core2.Node;
+import com.uppaal.model.core2.Template;
+import javafx.util.Pair;
+
+import java.util.*;
+
+/**
+ * Templates generated by {@link HUPPAALDocument}, kept between generations of the document such that only the
+ * templates of components which changed since the last generation have to be generated again.
+ * The layout of a reused template is the layout of the component when the template was generated.
+ */
+class TemplateCache {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Set<String> usedKeys = new HashSet<>();
+
+    /**
+     * Gets the template generated for the given key
+     * @param key the key of the template (see {@link HUPPAALDocument})
+     * @param component the component the template must be generated from
+     * @return the cached template, or null if no template is cached for the key and component
+     */
+    Entry get(final String key, final ComponentModel component) {
+        usedKeys.add(key);
+
+        final Entry entry = entries.get(key);
+        if (entry == null || entry.component.getId() != component.getId()) return null;
+
+        return entry;
+    }
+
+    void put(final String key, final Entry entry) {
+        usedKeys.add(key);
+        entries.put(key, entry);
+    }
+
+    /**
+     * Forgets the templates which were not used since the last call (e.g. templates of deleted sub components)
+     */
+    void evictUnused() {
+        entries.keySet().retainAll(usedKeys);
+        usedKeys.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * A generated template together with the side effects of generating it,
+     * which must be repeated whenever the template is reused
+     */
+    static class Entry {
+        final ComponentModel component;
+        final Template template;
+        final List<String> globalDeclarations = new ArrayList<>();
+        final Map<String, String> subComponentIdentifiers = new LinkedHashMap<>();
+        final List<Pair<LocationModel, Node>> locations = new ArrayList<>();
+        final List<Pair<Node, EdgeModel>> edges = new ArrayList<>();
+
+        Entry(final ComponentModel component, final Template template) {
+            this.component = component;
+            this.template = template;
+        }
+
+        /**
+         * Copies the entry to another template (typically a clone of the template of this entry)
+         * @param template the template of the copy
+         * @return the copy, where the nodes of this template are replaced by the nodes at the same position in the given template
+         */
+        Entry copyTo(final Template template) {
+            // Templates are cloned node by node, hence the nodes of the two templates appear in the same order
+            final Map<Node, Node> nodes = new IdentityHashMap<>();
+            for (Node from = this.template.getFirst(), to = template.getFirst(); from != null && to != null; from = from.getNext(), to = to.getNext()) {
+                nodes.put(from, to);
+            }
+
+            final Entry copy = new Entry(component, template);
+            copy.globalDeclarations.addAll(globalDeclarations);
+            copy.subComponentIdentifiers.putAll(subComponentIdentifiers);
+            locations.forEach(pair -> copy.locations.add(new Pair<>(pair.getKey(), nodes.get(pair.getValue()))));
+            edges.forEach(pair -> copy.edges.add(new Pair<>(nodes.get(pair.getKey()), pair.getValue())));
+
+            return copy;
+        }
+    }
+}
@@ -1,68 +1,120 @@
 package SW9.backend;
 
-import SW9.abstractions.Edge;
-import SW9.abstractions.Location;
+import SW9.core.EdgeModel;
+import SW9.core.LocationModel;
 import com.uppaal.model.system.SystemEdgeSelect;
 import com.uppaal.model.system.SystemLocation;
 import com.uppaal.model.system.symbolic.SymbolicState;
 import com.uppaal.model.system.symbolic.SymbolicTransition;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * A trace reported by an engine (e.g. a counter example), mapped back to the H-UPPAAL model.
+ * Transitions are decoded when they are accessed, such that a long trace can be inspected without keeping
+ * a decoded copy of every step in memory.
+ */
 public class Trace {
 
     public class Transition {
-        private final List<Location> sourceLocations = new ArrayList<>();
-        private final List<Location> targetLocations = new ArrayList<>();
-        private final List<Edge> edges = new ArrayList<>();
+        private final SymbolicTransition symbolicTransition;
 
-        private Transition(final SymbolicTransition symbolicTransition, final HUPPAALDocument huppaalDocument) {
+        private List<LocationModel> sourceLocations;
+        private List<LocationModel> targetLocations;
+        private List<EdgeModel> edges;
 
-            final SymbolicState sourceState = symbolicTransition.getSource();
-            final SymbolicState targetState = symbolicTransition.getTarget();
-
-            final SystemEdgeSelect[] chosenEdges = symbolicTransition.getEdges();
+        private Transition(final SymbolicTransition symbolicTransition) {
+            this.symbolicTransition = symbolicTransition;
+        }
 
-            if (sourceState != null) {
-                for (final SystemLocation sourceSystemLocation : sourceState.getLocations()) {
-                    sourceLocations.add(huppaalDocument.getLocation(sourceSystemLocation.getLocation()));
-                }
+        public synchronized List<LocationModel> getTargetLocations() {
+            if (targetLocations == null) {
+                targetLocations = getLocations(symbolicTransition.getTarget());
             }
+            return targetLocations;
+        }
 
-            if (targetState != null) {
-                for (final SystemLocation targetSystemLocation : targetState.getLocations()) {
-                    targetLocations.add(huppaalDocument.getLocation(targetSystemLocation.getLocation()));
-                }
+        public synchronized List<LocationModel> getSourceLocation() {
+            if (sourceLocations == null) {
+                sourceLocations = getLocations(symbolicTransition.getSource());
             }
+            return sourceLocations;
+        }
 
-            if (chosenEdges != null) {
-                for (final SystemEdgeSelect chosenEdge : chosenEdges) {
-                    edges.add(huppaalDocument.getEdge(chosenEdge.getEdge()));
+        public synchronized List<EdgeModel> getEdges() {
+            if (edges == null) {
+                final SystemEdgeSelect[] chosenEdges = symbolicTransition.getEdges();
+                if (chosenEdges == null) {
+                    edges = Collections.emptyList();
+                } else {
+                    edges = new ArrayList<>(chosenEdges.length);
+                    for (final SystemEdgeSelect chosenEdge : chosenEdges) {
+                        edges.add(huppaalDocument.getEdge(chosenEdge.getEdge()));
+                    }
                 }
             }
+            return edges;
         }
 
-        public List<Location> getTargetLocations() {
-            return targetLocations;
-        }
+        private List<LocationModel> getLocations(final SymbolicState state) {
+            if (state == null) return Collections.emptyList();
 
-        public List<Location> getSourceLocation() {
-            return sourceLocations;
+            final SystemLocation[] systemLocations = state.getLocations();
+            final List<LocationModel> locations = new ArrayList<>(systemLocations.length);
+            for (final SystemLocation systemLocation : systemLocations) {
+                locations.add(huppaalDocument.getLocation(systemLocation.getLocation()));
+            }
+            return locations;
         }
+    }
 
-        public List<Edge> getEdges() {
-            return edges;
-        }
+    private final List<SymbolicTransition> symbolicTransitions;
+    private final HUPPAALDocument huppaalDocument;
+
+    /**
+     * @param symbolicTransitions the transitions reported by the engine
+     * @param huppaalDocument the document the engine compiled, used to map the transitions back to the model
+     */
+    public Trace(final List<SymbolicTransition> symbolicTransitions, final HUPPAALDocument huppaalDocument) {
+        this.symbolicTransitions = symbolicTransitions;
+        this.huppaalDocument = huppaalDocument;
     }
 
+    /**
+     * Gets the transitions of the trace. The list is a view, every access decodes the transition anew,
+     * hence keep the transitions you are interested in instead of accessing them repeatedly
+     * @return the transitions
+     */
     public List<Transition> getTransitions() {
-        return transitions;
+        return new AbstractList<Transition>() {
+            @Override
+            public Transition get(final int index) {
+                return getTransition(index);
+            }
+
+            @Override
+            public int size() {
+                return getLength();
+            }
+        };
     }
 
-    private List<Transition> transitions = new ArrayList<>();
+    /**
+     * Decodes a single transition of the trace
+     * @param index the index of the transition
+     * @return the transition
+     */
+    public Transition getTransition(final int index) {
+        return new Transition(symbolicTransitions.get(index));
+    }
 
-    public Trace(final List<SymbolicTransition> symbolicTransitions, final HUPPAALDocument huppaalDocument) {
-        symbolicTransitions.forEach(symbolicTransition -> transitions.add(new Transition(symbolicTransition, huppaalDocument)));
+    /**
+     * @return the number of transitions of the trace
+     */
+    public int getLength() {
+        return symbolicTransitions.size();
     }
 }
@@ -1,11 +1,13 @@
 package SW9.backend;
 
+import SW9.Debug;
 import SW9.HUPPAAL;
 import SW9.abstractions.Component;
 import SW9.abstractions.Location;
-import SW9.abstractions.SubComponent;
 import SW9.code_analysis.CodeAnalysis;
-import com.google.common.base.Strings;
+import SW9.core.ComponentModel;
+import SW9.core.LocationModel;
+import SW9.core.ProjectModel;
 import com.uppaal.engine.Engine;
 import com.uppaal.engine.EngineException;
 import com.uppaal.engine.Problem;
@@ -18,165 +20,903 @@ import org.apache.commons.io.FileUtils;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class UPPAALDriver {
 
-    public static final int MAX_ENGINES = 10;
+    public static final int DEFAULT_ENGINE_POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors());
+    public static final long DEFAULT_ENGINE_BORROW_TIMEOUT = 60000;
+    public static final int DEFAULT_RESULT_CACHE_CAPACITY = 10000;
+    public static final long NO_DEADLINE = -1;
     public static final Object engineLock = false; // Used to lock concurrent engine reference access
 
     private static HUPPAALDocument huppaalDocument;
+    private static final TemplateCache templateCache = new TemplateCache();
+
+    private static volatile EnginePool enginePool = new EnginePool(DEFAULT_ENGINE_POOL_SIZE, UPPAALDriver::createEngine);
+    private static long engineBorrowTimeout = DEFAULT_ENGINE_BORROW_TIMEOUT;
+    private static boolean warmEnginesEnabled = true;
+    private static boolean singlePassReachabilityEnabled = false;
+
+    private static final VerificationExecutor verificationExecutor = new VerificationExecutor(DEFAULT_ENGINE_POOL_SIZE);
+
+    private static final DeadlineScheduler deadlineScheduler = new DeadlineScheduler();
+    private static long defaultQueryDeadline = NO_DEADLINE;
+
+    // The value of an observer flag in the feedback of a sup query, e.g. "huppaal_visited[3] <= 1"
+    private static final Pattern OBSERVER_FLAG_PATTERN = Pattern.compile(Pattern.quote(HUPPAALDocument.OBSERVER_VARIABLE) + "\\[(\\d+)\\]\\s*(?:<=|=|:)\\s*(-?\\d+)");
+
+    private static final VerificationProgressRegistry progressRegistry = new VerificationProgressRegistry();
+
+    private static final VerificationResultCache resultCache = new VerificationResultCache(DEFAULT_RESULT_CACHE_CAPACITY);
+    private static boolean resultCacheEnabled = true;
+
+    // If true the JavaFX toolkit is not running, hence we cannot report to the UI
+    private static boolean headless = false;
 
     public static void generateDebugUPPAALModel() throws Exception, BackendException {
-        // Generate and store the debug document
-        buildHUPPAALDocument();
-        storeUppaalFile(huppaalDocument.toUPPAALDocument(), HUPPAAL.debugDirectory + File.separator + "debug.xml");
+        // Generate and store the debug document (generate everything, since cached templates may have an outdated layout)
+        final HUPPAALDocument debugDocument = new HUPPAALDocument(getMainComponent().toModel());
+        storeUppaalFile(debugDocument.toUPPAALDocument(), HUPPAAL.debugDirectory + File.separator + "debug.xml");
+    }
+
+    public static HUPPAALDocument buildHUPPAALDocument() throws BackendException, Exception {
+        return buildHUPPAALDocument(takeProjectSnapshot());
+    }
+
+    /**
+     * Generates the HUPPAAL document from a snapshot of the project
+     * @param project the snapshot (see {@link #takeProjectSnapshot()})
+     * @return the generated document, which is used by subsequent queries
+     */
+    public static HUPPAALDocument buildHUPPAALDocument(final ProjectModel project) throws BackendException, Exception {
+        final ComponentModel mainComponent = project.getMainComponent();
+        if (mainComponent == null) {
+            throw new Exception("Main component is null");
+        }
+
+        // Generate HUPPAAL document based on the main component (only generating templates of changed components)
+        synchronized (templateCache) {
+            huppaalDocument = new HUPPAALDocument(mainComponent, templateCache);
+        }
+        return huppaalDocument;
+    }
+
+    /**
+     * Takes a snapshot of the project, which background threads can read while the user edits the project.
+     * The snapshot is taken on the JavaFX application thread (waiting for it if called from another thread),
+     * unless we are headless.
+     * @return the snapshot
+     * @throws BackendException if the snapshot could not be taken
+     */
+    public static ProjectModel takeProjectSnapshot() throws BackendException {
+        if (headless || Platform.isFxApplicationThread()) {
+            return HUPPAAL.getProject().snapshot();
+        }
+
+        final FutureTask<ProjectModel> snapshot = new FutureTask<>(() -> HUPPAAL.getProject().snapshot());
+        Platform.runLater(snapshot);
+
+        try {
+            return snapshot.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BackendException("Interrupted while taking a snapshot of the project", e);
+        } catch (final ExecutionException e) {
+            throw new BackendException("Could not take a snapshot of the project", e.getCause());
+        }
     }
 
-    public static void buildHUPPAALDocument() throws BackendException, Exception {
+    private static Component getMainComponent() throws Exception {
         final Component mainComponent = HUPPAAL.getProject().getMainComponent();
         if (mainComponent == null) {
             throw new Exception("Main component is null");
         }
 
-        // Generate HUPPAAL document based on the main component
-        huppaalDocument = new HUPPAALDocument(mainComponent);
+        return mainComponent;
+    }
+
+    public static CompletableFuture<Boolean> runQuery(final String query,
+                                                      final Consumer<Boolean> success,
+                                                      final Consumer<BackendException> failure) {
+        return runQuery(query, success, failure, defaultQueryDeadline);
     }
 
-    public static Thread runQuery(final String query,
-                                  final Consumer<Boolean> success,
-                                  final Consumer<BackendException> failure) {
-        return runQuery(query, success, failure, -1);
+    public static CompletableFuture<Boolean> runQuery(final String query,
+                                                      final Consumer<Boolean> success,
+                                                      final Consumer<BackendException> failure,
+                                                      final long timeout) {
+        return runQuery(query, success, failure, engine -> {}, new QueryListener(), timeout);
     }
-    public static Thread runQuery(final String query,
-                                  final Consumer<Boolean> success,
-                                  final Consumer<BackendException> failure,
-                                  final long timeout) {
 
-        final Consumer<Engine> engineConsumer = engine -> {
-            if(timeout >= 0) {
-                new Timer().schedule(new TimerTask() {
-                    @Override
-                    public void run() {
+    public static CompletableFuture<Boolean> runQuery(final String query,
+                                                      final Consumer<Boolean> success,
+                                                      final Consumer<BackendException> failure,
+                                                      final Consumer<Engine> engineConsumer) {
+        return runQuery(query, success, failure, engineConsumer, new QueryListener());
+    }
+
+    public static CompletableFuture<Boolean> runQuery(final String query,
+                                                      final Consumer<Boolean> success,
+                                                      final Consumer<BackendException> failure,
+                                                      final Consumer<Engine> engineConsumer,
+                                                      final QueryListener queryListener) {
+        return runQuery(query, success, failure, engineConsumer, queryListener, defaultQueryDeadline);
+    }
+
+    public static CompletableFuture<Boolean> runQuery(final String query,
+                                                      final Consumer<Boolean> success,
+                                                      final Consumer<BackendException> failure,
+                                                      final Consumer<Engine> engineConsumer,
+                                                      final QueryListener queryListener,
+                                                      final long timeout) {
+        return runQuery(query, success, failure, engineConsumer, queryListener, timeout, VerificationScheduler.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Runs a query on the current document. The query is queued on the verification executor,
+     * and runs as soon as a thread of its priority class and an engine are available.
+     * @param query the query to run
+     * @param success called with the result of the query
+     * @param failure called if the query could not be run
+     * @param engineConsumer called with the engine running the query (e.g. such that the query can be cancelled)
+     * @param queryListener receives the feedback of the engine while it runs the query
+     * @param timeout the maximum time (in ms) the query is allowed to run, or {@link #NO_DEADLINE}
+     * @param priority the priority of the query. Background queries are restarted if they are preempted by an interactive query
+     * @return a future which is completed with the result after success is called, or exceptionally after failure is called.
+     * Cancelling the future cancels the engine running the query, and neither success nor failure is called afterwards
+     */
+    public static CompletableFuture<Boolean> runQuery(final String query,
+                                                      final Consumer<Boolean> success,
+                                                      final Consumer<BackendException> failure,
+                                                      final Consumer<Engine> engineConsumer,
+                                                      final QueryListener queryListener,
+                                                      final long timeout,
+                                                      final VerificationScheduler.Priority priority) {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        final VerificationGeneration generation = new VerificationGeneration();
+        cancelWithFuture(future, generation);
+
+        final Runnable task = createQueryTask(
+                query,
+                result -> {
+                    if (result.isConclusive()) {
+                        success.accept(result.isSatisfied());
+                        future.complete(result.isSatisfied());
+                    } else {
+                        failure.accept(result.getException());
+                        future.completeExceptionally(result.getException());
+                    }
+                },
+                engineConsumer,
+                queryListener,
+                timeout,
+                priority,
+                generation
+        );
+
+        execute(priority, future, task);
+        return future;
+    }
+
+    public static CompletableFuture<VerificationResult> verify(final String query) {
+        return verify(query, defaultQueryDeadline, VerificationScheduler.Priority.INTERACTIVE);
+    }
+
+    public static CompletableFuture<VerificationResult> verify(final String query,
+                                                               final long timeout,
+                                                               final VerificationScheduler.Priority priority) {
+        return verify(query, new QueryListener(), timeout, priority);
+    }
+
+    /**
+     * Verifies a query on the current document. The query is queued on the verification executor,
+     * and runs as soon as a thread of its priority class and an engine are available.
+     * @param query the query to verify
+     * @param queryListener receives the feedback of the engine while it runs the query
+     * @param timeout the maximum time (in ms) the query is allowed to run, or {@link #NO_DEADLINE}
+     * @param priority the priority of the query
+     * @return a future which is completed with the result, also if the query could not be run (see {@link VerificationResult#getException()}).
+     * Cancelling the future cancels the engine running the query
+     */
+    public static CompletableFuture<VerificationResult> verify(final String query,
+                                                               final QueryListener queryListener,
+                                                               final long timeout,
+                                                               final VerificationScheduler.Priority priority) {
+        final CompletableFuture<VerificationResult> future = new CompletableFuture<>();
+        final VerificationGeneration generation = new VerificationGeneration();
+        cancelWithFuture(future, generation);
+
+        execute(priority, future, createQueryTask(query, future::complete, engine -> {}, queryListener, timeout, priority, generation));
+        return future;
+    }
+
+    /**
+     * Verifies many queries on the current document. Each query is verified on its own, hence as many queries
+     * are verified at a time as there are engines (use {@link #runQueries(List, BiConsumer, BiConsumer, long)} instead to
+     * run queries one after another on the same engine).
+     * The results can be aggregated using {@link VerificationResult#allOf(List)}.
+     * @param queries the queries to verify
+     * @param timeout the maximum time (in ms) each query is allowed to run, or {@link #NO_DEADLINE}
+     * @param priority the priority of the queries
+     * @return the futures of the results, in the order of the queries
+     */
+    public static List<CompletableFuture<VerificationResult>> verifyAll(final List<String> queries,
+                                                                        final long timeout,
+                                                                        final VerificationScheduler.Priority priority) {
+        final List<CompletableFuture<VerificationResult>> results = new ArrayList<>();
+        queries.forEach(query -> results.add(verify(query, timeout, priority)));
+        return results;
+    }
+
+    private static Runnable createQueryTask(final String query,
+                                            final Consumer<VerificationResult> done,
+                                            final Consumer<Engine> engineConsumer,
+                                            final QueryListener queryListener,
+                                            final long timeout,
+                                            final VerificationScheduler.Priority priority,
+                                            final VerificationGeneration generation) {
+        // Results of a cancelled query are not reported
+        final Consumer<VerificationResult> generationDone = result -> {
+            if (generation.accept()) done.accept(result);
+        };
+
+        return new Runnable() {
+            EnginePool pool;
+            WarmEngine engine;
+            DeadlineScheduler.Deadline deadline;
+
+            @Override
+            public void run() {
+                // The document might be replaced while we wait for an engine, use the one present when we started
+                final HUPPAALDocument document = huppaalDocument;
+
+                boolean preempted;
+                do {
+                    preempted = false;
+                    try {
+                        preempted = tryRunQuery(document);
+                    } finally {
+                        // The engine must not be cancelled after it is given back to the pool
+                        if (deadline != null) {
+                            deadline.complete();
+                            deadline = null;
+                        }
+
                         synchronized (engineLock) {
-                            if(engine == null) return;
-                            engine.cancel();
+                            if (engine != null) {
+                                generation.finish(engine);
+                            }
+
+                            if (pool != null) {
+                                pool.release(engine);
+                            }
+                            engine = null;
                         }
                     }
-                }, timeout);
+                } while (preempted && !Thread.currentThread().isInterrupted() && !generation.isCancelled());
+            }
+
+            /**
+             * Runs the query once
+             * @return true if the query was preempted before it got a result, hence should be run again
+             */
+            private boolean tryRunQuery(final HUPPAALDocument document) {
+                // Create a list to store the problems of the query
+                final ArrayList<Problem> problems = new ArrayList<>();
+                long startTime = System.nanoTime();
+
+                try {
+                    // If the query was run on a document with the same content before, there is no need to ask an engine
+                    final Boolean cachedResult = getCachedResult(document, query);
+                    if (cachedResult != null) {
+                        generationDone.accept(VerificationResult.cached(query, cachedResult));
+                        return false;
+                    }
+
+                    // Wait for an engine to become available
+                    try {
+                        pool = enginePool;
+                        engine = pool.borrow(priority, engineBorrowTimeout, TimeUnit.MILLISECONDS);
+                    } catch (final InterruptedException e) {
+                        return false;
+                    }
+                    if (!generation.start(engine)) return false;
+
+                    // An interactive query might have preempted the engine while we waited for it, give it back and wait again
+                    if (pool.isPreempted(engine)) return true;
+
+                    startTime = System.nanoTime();
+                    engine.connect();
+                    engineConsumer.accept(engine);
+
+                    // Get the system (only compiled if the document changed since the engine last saw it), and fill the problems list if any
+                    final UppaalSystem system = engine.getSystem(document, problems, warmEnginesEnabled);
+
+                    reportProblems(problems);
+
+                    // Update some internal state for the engine by getting the initial state
+                    engine.getInitialState(system);
+
+                    final RecordingFeedback feedback = new RecordingFeedback(queryListener, progressRegistry.start(query, engine.getId()));
+                    final QueryVerificationResult qvr;
+                    try {
+                        deadline = deadlineScheduler.schedule(engine, timeout);
+                        qvr = engine.query(system, "", query, feedback);
+                        deadline.complete();
+                    } finally {
+                        feedback.finish();
+                    }
+
+                    if (isPreemptedWithoutResult(pool, engine, qvr)) return true;
+
+                    // Process the query result
+                    final Trace trace = feedback.getTransitions() != null ? new Trace(feedback.getTransitions(), engine.getCompiledDocument()) : null;
+                    final VerificationResult result = VerificationResult.of(query, qvr, engine.getId(), problems, trace, feedback.getProgress(), System.nanoTime() - startTime);
+                    cacheResult(document, result);
+                    generationDone.accept(result);
+
+                } catch (final BackendException.EngineUnavailableException e) {
+                    // We gave up waiting for an engine
+                    generationDone.accept(VerificationResult.error(query, e, VerificationResult.NO_ENGINE, problems, 0));
+                } catch (final IOException e) {
+                    // We lost the connection to the server, make sure that we reconnect the next time the engine is used
+                    engine.disconnect();
+                    if (pool.isPreempted(engine)) return true;
+                    generationDone.accept(VerificationResult.error(query, new BackendException.BadUPPAALQueryException("Unable to run query", e), engine.getId(), problems, System.nanoTime() - startTime));
+                } catch (EngineException | NullPointerException e) {
+                    // Something went wrong
+                    if (engine != null && pool.isPreempted(engine)) return true;
+                    final int engineId = engine != null ? engine.getId() : VerificationResult.NO_ENGINE;
+                    generationDone.accept(VerificationResult.error(query, new BackendException.BadUPPAALQueryException("Unable to run query", e), engineId, problems, System.nanoTime() - startTime));
+                }
+
+                return false;
             }
         };
+    }
 
-        return runQuery(query, success, failure, engineConsumer);
+    /**
+     * Runs a list of queries one after another on a single engine, such that the document is only compiled once.
+     * The result of each query is reported as soon as it is known.
+     * @param queries the queries to run
+     * @param success called with the index of a query (in the list of queries) and its result
+     * @param failure called with the index of a query (in the list of queries) if the query could not be run
+     * @param timeout the maximum time (in ms) each query is allowed to run, or {@link #NO_DEADLINE}
+     * @return a future which is completed when the results of all queries have been reported
+     */
+    public static CompletableFuture<Void> runQueries(final List<String> queries,
+                                                     final BiConsumer<Integer, Boolean> success,
+                                                     final BiConsumer<Integer, BackendException> failure,
+                                                     final long timeout) {
+        return runQueries(queries, success, failure, timeout, VerificationScheduler.Priority.BACKGROUND);
     }
 
-    public static Thread runQuery(final String query,
-                                  final Consumer<Boolean> success,
-                                  final Consumer<BackendException> failure,
-                                  final Consumer<Engine> engineConsumer) {
-        return runQuery(query, success, failure, engineConsumer, new QueryListener());
+    /**
+     * Runs a list of queries one after another on a single engine, such that the document is only compiled once.
+     * The result of each query is reported as soon as it is known.
+     * If the queries are preempted by an interactive query, the engine is given up and the remaining queries
+     * continue when an engine is available again.
+     * @param queries the queries to run
+     * @param success called with the index of a query (in the list of queries) and its result
+     * @param failure called with the index of a query (in the list of queries) if the query could not be run
+     * @param timeout the maximum time (in ms) each query is allowed to run, or {@link #NO_DEADLINE}
+     * @param priority the priority of the queries
+     * @return a future which is completed when the results of all queries have been reported.
+     * Cancelling the future cancels the engine running the queries, and the remaining queries are not run
+     */
+    public static CompletableFuture<Void> runQueries(final List<String> queries,
+                                                     final BiConsumer<Integer, Boolean> success,
+                                                     final BiConsumer<Integer, BackendException> failure,
+                                                     final long timeout,
+                                                     final VerificationScheduler.Priority priority) {
+        return runQueries(queries, success, failure, timeout, priority, new VerificationGeneration());
     }
 
-    public static Thread runQuery(final String query,
-                                   final Consumer<Boolean> success,
-                                   final Consumer<BackendException> failure,
-                                   final Consumer<Engine> engineConsumer,
-                                   final QueryListener queryListener) {
-        return new Thread() {
-            Engine engine;
+    /**
+     * Runs a list of queries of a generation one after another on a single engine.
+     * If the generation is cancelled, the engine is cancelled and given back to the pool, the remaining queries
+     * are not run, and results which arrive after the cancellation are discarded (neither success nor failure is called).
+     * @see #runQueries(List, BiConsumer, BiConsumer, long, VerificationScheduler.Priority)
+     * @param generation the generation the queries belong to. Cancelling the returned future cancels the generation
+     */
+    public static CompletableFuture<Void> runQueries(final List<String> queries,
+                                                     final BiConsumer<Integer, Boolean> success,
+                                                     final BiConsumer<Integer, BackendException> failure,
+                                                     final long timeout,
+                                                     final VerificationScheduler.Priority priority,
+                                                     final VerificationGeneration generation) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        cancelWithFuture(future, generation);
+
+        final Runnable task = createQueriesTask(queries, success, failure, timeout, priority, generation);
+        execute(priority, future, () -> {
+            task.run();
+            future.complete(null);
+        });
+
+        return future;
+    }
+
+    private static Runnable createQueriesTask(final List<String> queries,
+                                              final BiConsumer<Integer, Boolean> success,
+                                              final BiConsumer<Integer, BackendException> failure,
+                                              final long timeout,
+                                              final VerificationScheduler.Priority priority,
+                                              final VerificationGeneration generation) {
+        // Results of a cancelled generation are stale
+        final BiConsumer<Integer, Boolean> generationSuccess = (index, result) -> {
+            if (generation.accept()) success.accept(index, result);
+        };
+        final BiConsumer<Integer, BackendException> generationFailure = (index, e) -> {
+            if (generation.accept()) failure.accept(index, e);
+        };
+
+        return new Runnable() {
+            EnginePool pool;
+            WarmEngine engine;
 
             @Override
             public void run() {
+                // The document might be replaced while we wait for an engine, use the one present when we started
+                final HUPPAALDocument document = huppaalDocument;
+
+                // Report the results we already know, and only ask an engine about the rest
+                final List<Integer> uncachedIndices = new ArrayList<>();
                 try {
-                    // "Create" the engine and set the correct server path
-                    while (engine == null) {
-                        if (isInterrupted()) return;
-                        engine = getOSDependentEngine();
-                        if (engine == null) {
-                            // Waiting for engine
-                            Thread.yield();
+                    for (int i = 0; i < queries.size(); i++) {
+                        final Boolean cachedResult = getCachedResult(document, queries.get(i));
+                        if (cachedResult != null) {
+                            generationSuccess.accept(i, cachedResult);
                         } else {
-                            break;
+                            uncachedIndices.add(i);
                         }
                     }
+                } catch (final NullPointerException e) {
+                    // No document has been built
+                    for (int i = 0; i < queries.size(); i++) {
+                        generationFailure.accept(i, new BackendException.BadUPPAALQueryException("Unable to run query", e));
+                    }
+                    return;
+                }
 
-                    engine.connect();
-                    engineConsumer.accept(engine);
+                if (uncachedIndices.isEmpty() || generation.isCancelled()) return;
+
+                int index = 0;
+                try {
+                    // Wait for an engine to become available
+                    try {
+                        pool = enginePool;
+                        engine = pool.borrow(priority, engineBorrowTimeout, TimeUnit.MILLISECONDS);
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    if (!generation.start(engine)) return;
+
+                    for (; index < uncachedIndices.size(); index++) {
+                        if (Thread.currentThread().isInterrupted() || generation.isCancelled()) return;
+
+                        // Give the engine to the interactive query which preempted us, and wait for an engine again
+                        if (pool.isPreempted(engine)) {
+                            generation.finish(engine);
+                            pool.release(engine);
+                            engine = null;
 
-                    // Create a list to store the problems of the query
-                    final ArrayList<Problem> problems = new ArrayList<>();
-
-                    // Get the system, and fill the problems list if any
-                    final UppaalSystem system = engine.getSystem(huppaalDocument.toUPPAALDocument(), problems);
-
-                    // Run on UI thread
-                    Platform.runLater(() -> {
-                        // Clear the UI for backend-errors
-                        CodeAnalysis.clearBackendErrors();
-
-                        // Check if there is any problems
-                        if (!problems.isEmpty()) {
-                            problems.forEach(problem -> {
-                                System.out.println("problem: " + problem);
-
-                                // Generate the message
-                                CodeAnalysis.Message message = null;
-                                if (problem.getPath().contains("declaration")) {
-                                    final String[] lines = problem.getLocation().split("\\n");
-                                    final String errorLine = lines[problem.getFirstLine() - 1];
-
-                                    message = new CodeAnalysis.Message(
-                                            problem.getMessage() + " on line " + problem.getFirstLine() + " (" + errorLine + ")",
-                                            CodeAnalysis.MessageType.ERROR
-                                    );
-                                } else {
-                                    message = new CodeAnalysis.Message(
-                                            problem.getMessage() + " (" + problem.getLocation() + ")",
-                                            CodeAnalysis.MessageType.ERROR
-                                    );
-                                }
-
-                                CodeAnalysis.addBackendError(message);
-                            });
+                            try {
+                                engine = pool.borrow(priority, engineBorrowTimeout, TimeUnit.MILLISECONDS);
+                            } catch (final InterruptedException e) {
+                                return;
+                            }
+                            if (!generation.start(engine)) return;
                         }
-                    });
 
-                    // Update some internal state for the engine by getting the initial state
-                    engine.getInitialState(system);
+                        final int queryIndex = uncachedIndices.get(index);
+                        final Consumer<Boolean> querySuccess = result -> generationSuccess.accept(queryIndex, result);
+                        final Consumer<BackendException> queryFailure = e -> generationFailure.accept(queryIndex, e);
 
-                    final QueryVerificationResult qvr = engine.query(system, "", query, queryListener);
-                    final char result = qvr.result;
+                        DeadlineScheduler.Deadline deadline = null;
+                        try {
+                            // Get the system (only compiled the first time, unless a timeout killed the server)
+                            final ArrayList<Problem> problems = new ArrayList<>();
+                            final UppaalSystem system = engine.getSystem(document, problems, warmEnginesEnabled);
 
-                    // Process the query result
-                    if (result == 'T') {
-                        success.accept(true);
-                    } else if (result == 'F') {
-                        success.accept(false);
-                    } else if (result == 'M') {
-                        failure.accept(new BackendException.QueryErrorException("UPPAAL Engine was uncertain on the result"));
-                    } else {
-                        failure.accept(new BackendException.BadUPPAALQueryException("Unable to run query", qvr.exception));
+                            // The problems are the same for all queries, only report them once
+                            if (index == 0) {
+                                reportProblems(problems);
+                            }
+
+                            // Update some internal state for the engine by getting the initial state
+                            engine.getInitialState(system);
+
+                            final RecordingFeedback feedback = new RecordingFeedback(new QueryListener(), progressRegistry.start(queries.get(queryIndex), engine.getId()));
+                            final QueryVerificationResult qvr;
+                            try {
+                                deadline = deadlineScheduler.schedule(engine, timeout);
+                                qvr = engine.query(system, "", queries.get(queryIndex), feedback);
+                                deadline.complete();
+                            } finally {
+                                feedback.finish();
+                            }
+
+                            // Run the query again when we have an engine again
+                            if (isPreemptedWithoutResult(pool, engine, qvr)) {
+                                index--;
+                                continue;
+                            }
+
+                            // Process the query result
+                            processResult(document, VerificationResult.of(queries.get(queryIndex), qvr, engine.getId(), problems, null, feedback.getProgress(), 0), querySuccess, queryFailure);
+                        } catch (final IOException e) {
+                            // We lost the connection to the server, make sure that we reconnect for the next query
+                            engine.disconnect();
+                            if (pool.isPreempted(engine)) {
+                                index--;
+                                continue;
+                            }
+                            queryFailure.accept(new BackendException.BadUPPAALQueryException("Unable to run query", e));
+                        } catch (EngineException | NullPointerException e) {
+                            // Something went wrong with this query, continue with the next one
+                            if (pool.isPreempted(engine)) {
+                                index--;
+                                continue;
+                            }
+                            queryFailure.accept(new BackendException.BadUPPAALQueryException("Unable to run query", e));
+                        } finally {
+                            if (deadline != null) {
+                                deadline.complete();
+                            }
+                        }
                     }
 
-                } catch (EngineException | IOException | NullPointerException e) {
-                    // Something went wrong
-                    failure.accept(new BackendException.BadUPPAALQueryException("Unable to run query", e));
+                } catch (final BackendException.EngineUnavailableException e) {
+                    // We gave up waiting for an engine, none of the queries can be run
+                    for (; index < uncachedIndices.size(); index++) {
+                        generationFailure.accept(uncachedIndices.get(index), e);
+                    }
                 } finally {
-                    synchronized (engineLock) {
-                        releaseOSDependentEngine(engine);
-                        engine = null;
+                    // The engine must not be cancelled with the generation after it is given back to the pool
+                    if (engine != null) {
+                        generation.finish(engine);
+                    }
+
+                    if (pool != null) {
+                        pool.release(engine);
+                    }
+                    engine = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Checks the reachability of all locations of some components in a single exploration of the state space.
+     * A document is generated in which every location sets a flag when it is entered, and one sup query on the flags
+     * tells which locations can be reached. The answers are stored in the result cache as the answers to the usual
+     * reachability queries of the locations (see {@link #getLocationReachableQuery(LocationModel, ComponentModel, InstanceIndex)}).
+     * Locations which the exploration did not answer (e.g. because it was cut off by the deadline) are checked with
+     * the usual queries afterwards.
+     * @param mainComponent the main component of the snapshot the components are part of
+     * @param components the components to check
+     * @param success called with a location and whether it is reachable
+     * @param failure called with a location if its reachability could not be determined
+     * @param timeout the maximum time (in ms) to spend per location, or {@link #NO_DEADLINE}. The exploration is allowed to run
+     *                for this time multiplied by the number of locations it observes, and each of the usual queries for this time
+     * @param generation the generation the analysis belongs to (see {@link #runQueries(List, BiConsumer, BiConsumer, long, VerificationScheduler.Priority, VerificationGeneration)})
+     * @return a future which is completed when the results of all locations have been reported.
+     * Cancelling the future cancels the generation
+     */
+    public static CompletableFuture<Void> runSinglePassReachability(final ComponentModel mainComponent,
+                                                                    final List<ComponentModel> components,
+                                                                    final BiConsumer<LocationModel, Boolean> success,
+                                                                    final BiConsumer<LocationModel, BackendException> failure,
+                                                                    final long timeout,
+                                                                    final VerificationGeneration generation) {
+        // Results of a cancelled generation are stale
+        final BiConsumer<LocationModel, Boolean> generationSuccess = (location, result) -> {
+            if (generation.accept()) success.accept(location, result);
+        };
+        final BiConsumer<LocationModel, BackendException> generationFailure = (location, e) -> {
+            if (generation.accept()) failure.accept(location, e);
+        };
+
+        final Runnable task = new Runnable() {
+            EnginePool pool;
+            WarmEngine engine;
+
+            @Override
+            public void run() {
+                // The document might be replaced while we run, use the one present when we started
+                final HUPPAALDocument document = huppaalDocument;
+                if (document == null) {
+                    components.forEach(component -> component.getLocationsWithInitialAndFinal().forEach(location ->
+                            generationFailure.accept(location, new BackendException("No document has been built"))));
+                    return;
+                }
+
+                // The locations to check, and their usual reachability queries
+                final List<LocationModel> locations = new ArrayList<>();
+                final List<String> queries = new ArrayList<>();
+                for (final ComponentModel component : components) {
+                    for (final LocationModel location : component.getLocationsWithInitialAndFinal()) {
+                        locations.add(location);
+                        queries.add(getLocationReachableQuery(location, component, document.getInstanceIndex()));
+                    }
+                }
+
+                // Report the results we already know, and only explore if some are unknown
+                final List<Integer> unknownIndices = new ArrayList<>();
+                for (int i = 0; i < locations.size(); i++) {
+                    final Boolean cachedResult = getCachedResult(document, queries.get(i));
+                    if (cachedResult != null) {
+                        generationSuccess.accept(locations.get(i), cachedResult);
+                    } else {
+                        unknownIndices.add(i);
+                    }
+                }
+
+                if (unknownIndices.isEmpty() || generation.isCancelled()) return;
+
+                final int[] visited;
+                try {
+                    visited = explore(locations);
+                } catch (final InterruptedException e) {
+                    return;
+                } catch (final BackendException e) {
+                    for (final int i : unknownIndices) {
+                        generationFailure.accept(locations.get(i), e);
                     }
+                    return;
+                }
+
+                // Report the answers of the exploration, and check the rest the usual way
+                final List<Integer> remainingIndices = new ArrayList<>();
+                for (final int i : unknownIndices) {
+                    if (visited != null && visited[i] >= 0) {
+                        final boolean reachable = visited[i] > 0;
+                        resultCache.put(document, queries.get(i), reachable);
+                        generationSuccess.accept(locations.get(i), reachable);
+                    } else {
+                        remainingIndices.add(i);
+                    }
+                }
+
+                if (remainingIndices.isEmpty() || Thread.currentThread().isInterrupted() || generation.isCancelled()) return;
+
+                final List<String> remainingQueries = new ArrayList<>();
+                remainingIndices.forEach(i -> remainingQueries.add(queries.get(i)));
+
+                // We already hold a thread of the executor, hence run the queries on it
+                createQueriesTask(
+                        remainingQueries,
+                        (index, result) -> success.accept(locations.get(remainingIndices.get(index)), result),
+                        (index, e) -> failure.accept(locations.get(remainingIndices.get(index)), e),
+                        timeout,
+                        VerificationScheduler.Priority.BACKGROUND,
+                        generation
+                ).run();
+            }
+
+            /**
+             * Explores the state space of a document observing the locations
+             * @return for each location 1 if it was visited, 0 if not, and -1 if the exploration did not tell,
+             * or null if the exploration could not be completed
+             */
+            private int[] explore(final List<LocationModel> locations) throws InterruptedException, BackendException {
+                final HUPPAALDocument observerDocument;
+                synchronized (templateCache) {
+                    observerDocument = HUPPAALDocument.withReachabilityObserver(mainComponent, locations, templateCache);
+                }
+
+                final StringBuilder query = new StringBuilder("sup: ");
+                for (int i = 0; i < locations.size(); i++) {
+                    if (i > 0) query.append(", ");
+                    query.append(HUPPAALDocument.OBSERVER_VARIABLE).append('[').append(i).append(']');
+                }
 
+                while (!generation.isCancelled()) {
+                    pool = enginePool;
+                    engine = pool.borrow(VerificationScheduler.Priority.BACKGROUND, engineBorrowTimeout, TimeUnit.MILLISECONDS);
+
+                    DeadlineScheduler.Deadline deadline = null;
+                    try {
+                        if (!generation.start(engine)) return null;
+
+                        final UppaalSystem system = engine.getSystem(observerDocument, new ArrayList<>(), warmEnginesEnabled);
+                        if (system == null) return null;
+
+                        engine.getInitialState(system);
+
+                        // The values of a sup query are reported as feedback
+                        final StringBuilder feedback = new StringBuilder();
+                        final RecordingFeedback recordingFeedback = new RecordingFeedback(new QueryListener() {
+                            @Override
+                            public void setFeedback(final String s) {
+                                feedback.append(s).append('\n');
+                            }
+                        }, progressRegistry.start(query.toString(), engine.getId()));
+                        try {
+                            deadline = deadlineScheduler.schedule(engine, timeout < 0 ? NO_DEADLINE : timeout * locations.size());
+                            engine.query(system, "", query.toString(), recordingFeedback);
+                        } finally {
+                            recordingFeedback.finish();
+                        }
+
+                        // Explore again when we get an engine again
+                        if (pool.isPreempted(engine) && feedback.length() == 0) continue;
+
+                        // The flags of a partial exploration are not conclusive
+                        if (!deadline.complete()) return null;
+
+                        return parseObserverFlags(feedback.toString(), locations.size());
+                    } catch (final IOException e) {
+                        engine.disconnect();
+                        if (pool.isPreempted(engine)) continue;
+                        return null;
+                    } catch (EngineException | NullPointerException e) {
+                        if (pool.isPreempted(engine)) continue;
+                        return null;
+                    } finally {
+                        if (deadline != null) {
+                            deadline.complete();
+                        }
+
+                        generation.finish(engine);
+                        pool.release(engine);
+                        engine = null;
+                    }
                 }
+
+                return null;
             }
         };
+
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        cancelWithFuture(future, generation);
+
+        execute(VerificationScheduler.Priority.BACKGROUND, future, () -> {
+            task.run();
+            future.complete(null);
+        });
+
+        return future;
     }
 
-    private static final ArrayList<Engine> createdEngines = new ArrayList<>();
-    private static final ArrayList<Engine> availableEngines = new ArrayList<>();
+    /**
+     * Queues a task on the verification executor.
+     * If the task stops without completing its future (e.g. because it was interrupted while waiting for an engine),
+     * the future is cancelled. Background tasks are listed as background threads while they run.
+     */
+    private static void execute(final VerificationScheduler.Priority priority, final CompletableFuture<?> future, final Runnable task) {
+        verificationExecutor.execute(priority, () -> {
+            // The future might have been cancelled while the task was queued
+            if (future.isDone()) return;
+
+            final boolean listed = priority == VerificationScheduler.Priority.BACKGROUND && !headless;
+            if (listed) {
+                Debug.addThread(Thread.currentThread());
+            }
+
+            try {
+                task.run();
+            } catch (final RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                if (listed) {
+                    Debug.removeThread(Thread.currentThread());
+                }
+                future.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * Cancels a generation (and thereby the engines running its queries) when the future of its work is cancelled
+     */
+    private static void cancelWithFuture(final CompletableFuture<?> future, final VerificationGeneration generation) {
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) generation.cancel();
+        });
+    }
+
+    /**
+     * Reads the values of the observer flags from the feedback of a sup query
+     * @param feedback the feedback, containing e.g. "huppaal_visited[3] <= 1"
+     * @param count the number of flags
+     * @return the value of each flag, or -1 if the feedback does not contain the value of the flag
+     */
+    static int[] parseObserverFlags(final String feedback, final int count) {
+        final int[] values = new int[count];
+        Arrays.fill(values, -1);
+
+        final Matcher matcher = OBSERVER_FLAG_PATTERN.matcher(feedback);
+        while (matcher.find()) {
+            final int flag = Integer.parseInt(matcher.group(1));
+            if (flag < count) {
+                values[flag] = Math.min(1, Math.max(0, Integer.parseInt(matcher.group(2))));
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Checks if an engine was cancelled because its (background) work was preempted, before the query got a result
+     */
+    private static boolean isPreemptedWithoutResult(final EnginePool pool, final WarmEngine engine, final QueryVerificationResult qvr) {
+        return pool.isPreempted(engine) && qvr.result != 'T' && qvr.result != 'F';
+    }
+
+    private static void reportProblems(final List<Problem> problems) {
+        if (headless) {
+            problems.forEach(problem -> System.err.println("problem: " + problem));
+            return;
+        }
+
+        // Run on UI thread
+        Platform.runLater(() -> {
+            // Clear the UI for backend-errors
+            CodeAnalysis.clearBackendErrors();
+
+            // Check if there is any problems
+            if (!problems.isEmpty()) {
+                problems.forEach(problem -> {
+                    System.out.println("problem: " + problem);
+
+                    // Generate the message
+                    CodeAnalysis.Message message = null;
+                    if (problem.getPath().contains("declaration")) {
+                        final String[] lines = problem.getLocation().split("\\n");
+                        final String errorLine = lines[problem.getFirstLine() - 1];
+
+                        message = new CodeAnalysis.Message(
+                                problem.getMessage() + " on line " + problem.getFirstLine() + " (" + errorLine + ")",
+                                CodeAnalysis.MessageType.ERROR
+                        );
+                    } else {
+                        message = new CodeAnalysis.Message(
+                                problem.getMessage() + " (" + problem.getLocation() + ")",
+                                CodeAnalysis.MessageType.ERROR
+                        );
+                    }
+
+                    CodeAnalysis.addBackendError(message);
+                });
+            }
+        });
+    }
+
+    private static Boolean getCachedResult(final HUPPAALDocument document, final String query) {
+        if (!resultCacheEnabled) return null;
+        return resultCache.get(document, query);
+    }
+
+    private static void processResult(final HUPPAALDocument document,
+                                      final VerificationResult result,
+                                      final Consumer<Boolean> success,
+                                      final Consumer<BackendException> failure) {
+        cacheResult(document, result);
+
+        if (result.isConclusive()) {
+            success.accept(result.isSatisfied());
+        } else {
+            failure.accept(result.getException());
+        }
+    }
+
+    private static void cacheResult(final HUPPAALDocument document, final VerificationResult result) {
+        if (result.isConclusive() && !result.isCached()) {
+            resultCache.put(document, result.getQuery(), result.isSatisfied());
+        }
+    }
 
     private static File findServerFile(final String serverName) {
         final String os = System.getProperty("os.name");
@@ -193,57 +933,142 @@ public class UPPAALDriver {
         return file;
     }
 
-    private static Engine getAvailableEngineOrCreateNew() {
-        if (availableEngines.size() == 0) {
-            final String serverName = "server";
-            final File serverFile = findServerFile(serverName);
-            serverFile.setExecutable(true); // Allows us to use the server file
+    /**
+     * Checks whether the UPPAAL server can be found in the server directory (see {@link HUPPAAL#serverDirectory})
+     * @return true if the server file exists
+     */
+    public static boolean isServerAvailable() {
+        return findServerFile("server").isFile();
+    }
 
-            // Check if the user copied the file correctly
-            if (!serverFile.exists()) {
-                System.out.println("Could not find backend-file: " + serverFile.getAbsolutePath() + ". Please make sure to copy UPPAAL binaries to this location.");
-            }
+    private static WarmEngine createEngine() {
+        final String serverName = "server";
+        final File serverFile = findServerFile(serverName);
+        serverFile.setExecutable(true); // Allows us to use the server file
 
-            // Create a new engine, set the server path, and return it
-            final Engine engine = new Engine();
-            engine.setServerPath(serverFile.getPath());
-            createdEngines.add(engine);
-            return engine;
-        } else {
-            final Engine engine = availableEngines.get(0);
-            availableEngines.remove(0);
-            return engine;
+        // Check if the user copied the file correctly
+        if (!serverFile.exists()) {
+            System.err.println("Could not find backend-file: " + serverFile.getAbsolutePath() + ". Please make sure to copy UPPAAL binaries to this location.");
         }
+
+        // Create a new engine, set the server path, and return it
+        final WarmEngine engine = new WarmEngine();
+        engine.setServerPath(serverFile.getPath());
+        return engine;
     }
 
-    private static Engine getOSDependentEngine() {
-        synchronized (createdEngines) {
-            if (!(createdEngines.size() >= MAX_ENGINES && availableEngines.size() == 0)) {
-                final Engine engine = getAvailableEngineOrCreateNew();
-                if (engine != null) {
-                    return engine;
-                }
-            }
-        }
+    public static void stopEngines() {
+        enginePool.shutdown();
+    }
+
+    /**
+     * Replaces the engine pool with a pool of the given size. Engines of the current pool are stopped.
+     * @param size the maximum number of engines running concurrently
+     */
+    public static void setEnginePoolSize(final int size) {
+        final EnginePool oldPool = enginePool;
+        enginePool = new EnginePool(size, UPPAALDriver::createEngine);
+        oldPool.shutdown();
 
-        // No engines are available currently, check back again later
-        return null;
+        // No more tasks than engines can run at a time anyway
+        verificationExecutor.setThreads(size);
     }
 
-    private static void releaseOSDependentEngine(final Engine engine) {
-        synchronized (createdEngines) {
-            availableEngines.add(engine);
-        }
+    public static int getEnginePoolSize() {
+        return enginePool.getSize();
     }
 
-    public static void stopEngines() {
-        synchronized (createdEngines) {
-            while (createdEngines.size() != 0) {
-                final Engine engine = createdEngines.get(0);
-                engine.cancel(); // Cancel any running tasks on this engine
-                createdEngines.remove(0);
-            }
-        }
+    /**
+     * Sets how long a query will wait for an engine before it fails
+     * @param timeout the timeout in milliseconds
+     */
+    public static void setEngineBorrowTimeout(final long timeout) {
+        engineBorrowTimeout = timeout;
+    }
+
+    /**
+     * Enables or disables warm engines. When enabled, engines reuse the system they compiled for a previous query
+     * if the document did not change. When disabled, the document is compiled for every query.
+     * @param enabled true if engines should be kept warm
+     */
+    public static void setWarmEnginesEnabled(final boolean enabled) {
+        warmEnginesEnabled = enabled;
+    }
+
+    /**
+     * Enables or disables checking the reachability of all locations in a single exploration of the state space
+     * (see {@link #runSinglePassReachability(ComponentModel, List, BiConsumer, BiConsumer, long, VerificationGeneration)}).
+     * This uses less CPU when many locations are reachable, but the flags observing the locations enlarge
+     * the state space, hence it is disabled by default.
+     * @param enabled true if the reachability analysis should use a single exploration
+     */
+    public static void setSinglePassReachabilityEnabled(final boolean enabled) {
+        singlePassReachabilityEnabled = enabled;
+    }
+
+    public static boolean isSinglePassReachabilityEnabled() {
+        return singlePassReachabilityEnabled;
+    }
+
+    public static EnginePool.Metrics getEnginePoolMetrics() {
+        return enginePool.getMetrics();
+    }
+
+    /**
+     * Gets the queue depths and wait times of interactive and background queries waiting for an engine
+     * @return the metrics of the scheduler of the current engine pool
+     */
+    public static VerificationScheduler.Metrics getSchedulerMetrics() {
+        return enginePool.getSchedulerMetrics();
+    }
+
+    /**
+     * @return the registry of the progress engines report while they verify queries
+     */
+    public static VerificationProgressRegistry getProgressRegistry() {
+        return progressRegistry;
+    }
+
+    /**
+     * Sets the deadline of queries which are not given a timeout explicitly
+     * @param deadline the maximum time (in ms) a query is allowed to run, or {@link #NO_DEADLINE}
+     */
+    public static void setDefaultQueryDeadline(final long deadline) {
+        defaultQueryDeadline = deadline;
+    }
+
+    public static long getDefaultQueryDeadline() {
+        return defaultQueryDeadline;
+    }
+
+    public static DeadlineScheduler.Metrics getDeadlineMetrics() {
+        return deadlineScheduler.getMetrics();
+    }
+
+    /**
+     * Enables or disables answering queries from the result cache.
+     * Results of queries are remembered even though the cache is disabled.
+     * @param enabled true if queries should be answered from the cache when possible
+     */
+    public static void setResultCacheEnabled(final boolean enabled) {
+        resultCacheEnabled = enabled;
+    }
+
+    /**
+     * Sets whether the driver runs without the JavaFX toolkit (e.g. from the command line).
+     * When headless, problems with the model are printed instead of shown in the UI.
+     * @param headless true if the JavaFX toolkit is not running
+     */
+    public static void setHeadless(final boolean headless) {
+        UPPAALDriver.headless = headless;
+    }
+
+    public static boolean isHeadless() {
+        return headless;
+    }
+
+    public static VerificationResultCache getResultCache() {
+        return resultCache;
     }
 
     private static void storeUppaalFile(final Document uppaalDocument, final String fileName) {
@@ -257,26 +1082,62 @@ public class UPPAALDriver {
     }
 
     public static String getLocationReachableQuery(final Location location, final Component component) {
+        return getLocationReachableQuery(location, component, InstanceIndex.of(HUPPAAL.getProject().getMainComponent().snapshot()));
+    }
+
+    /**
+     * Gets a query checking if a location is reachable in any instance of its component
+     * @param location the location
+     * @param component the component of the location
+     * @param instances the instances of the components in the document the query is run on
+     * @return the query
+     */
+    public static String getLocationReachableQuery(final Location location, final Component component, final InstanceIndex instances) {
+        return getLocationReachableQuery(location.getId(), component.getModelId(), instances);
+    }
+
+    /**
+     * Gets a query checking if a location is reachable in any instance of its component
+     * @param location the location
+     * @param component the component of the location
+     * @param instances the instances of the components in the document the query is run on (see {@link HUPPAALDocument#getInstanceIndex()})
+     * @return the query
+     */
+    public static String getLocationReachableQuery(final LocationModel location, final ComponentModel component, final InstanceIndex instances) {
+        return getLocationReachableQuery(location.getId(), component.getId(), instances);
+    }
+
+    private static String getLocationReachableQuery(final String locationId, final long componentId, final InstanceIndex instances) {
 
         // Get the various flattened names of a location to produce a reachability query
-        final List<String> templateNames = getTemplateNames(component);
-        final List<String> locationNames = new ArrayList<>();
+        final List<String> templateNames = instances.getTemplateNames(componentId);
+        final List<String> locationNames = new ArrayList<>(templateNames.size());
 
         for (final String templateName : templateNames) {
-            locationNames.add(templateName + "." + location.getId());
+            locationNames.add(templateName + "." + locationId);
         }
 
         return "E<> " + String.join(" || ", locationNames);
     }
 
     public static String getExistDeadlockQuery(final Component component) {
+        return getExistDeadlockQuery(component.snapshot(), InstanceIndex.of(HUPPAAL.getProject().getMainComponent().snapshot()));
+    }
+
+    /**
+     * Gets a query checking if any instance of a component can deadlock
+     * @param component the component
+     * @param instances the instances of the components in the document the query is run on (see {@link HUPPAALDocument#getInstanceIndex()})
+     * @return the query
+     */
+    public static String getExistDeadlockQuery(final ComponentModel component, final InstanceIndex instances) {
         // Get the various flattened names of a location to produce a reachability query
-        final List<String> template = getTemplateNames(component);
+        final List<String> template = instances.getTemplateNames(component.getId());
         final List<String> locationNames = new ArrayList<>();
 
 
         for (final String templateName : template) {
-            for (final Location location : component.getLocations()) {
+            for (final LocationModel location : component.getLocations()) {
                 locationNames.add(templateName + "." + location.getId());
             }
 
@@ -287,38 +1148,6 @@ public class UPPAALDriver {
         return "E<> (" + String.join(" || ", locationNames) + ") && deadlock";
     }
 
-    private static List<String> getTemplateNames(final Component component) {
-        final List<String> subComponentInstanceNames = new ArrayList<>();
-
-        if (component.isIsMain()) {
-            subComponentInstanceNames.add(component.getName());
-        }
-
-        // Run through all sub components in main
-        for (final SubComponent subComp : HUPPAAL.getProject().getMainComponent().getSubComponents()) {
-            subComponentInstanceNames.addAll(getTemplateNames("", subComp, component));
-        }
-        return subComponentInstanceNames;
-    }
-
-    private static List<String> getTemplateNames(String str, final SubComponent subject, final Component needle) {
-        final List<String> subComponentInstanceNames = new ArrayList<>();
-
-        // Run all their sub components
-        for (final SubComponent sc : subject.getComponent().getSubComponents()) {
-            subComponentInstanceNames.addAll(getTemplateNames(subject.getIdentifier(), sc, needle));
-        }
-
-        if (subject.getComponent().equals(needle)) {
-            if (!Strings.isNullOrEmpty(str)) {
-                str += "_";
-            }
-            subComponentInstanceNames.add(str + subject.getIdentifier());
-        }
-
-        return subComponentInstanceNames;
-    }
-
     public enum TraceType {
         NONE, SOME, SHORTEST, FASTEST;
 
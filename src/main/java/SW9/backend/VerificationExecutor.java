@@ -0,0 +1,85 @@
+package SW9.backend;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs verification tasks on a bounded number of (daemon) threads, one set of threads per priority class.
+ * Tasks which cannot run yet wait in a queue instead of holding a thread, and interactive tasks never wait for
+ * threads busy with background tasks (they still compete for engines, see {@link VerificationScheduler}).
+ * Idle threads are stopped after a while, such that the executor does not keep threads around while nothing is verified.
+ */
+public class VerificationExecutor {
+
+    private static final long IDLE_THREAD_TIMEOUT = 30;
+
+    private final Map<VerificationScheduler.Priority, ThreadPoolExecutor> executors = new EnumMap<>(VerificationScheduler.Priority.class);
+
+    public VerificationExecutor(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A verification executor must have at least one thread per priority");
+        }
+
+        for (final VerificationScheduler.Priority priority : VerificationScheduler.Priority.values()) {
+            final AtomicInteger threadCount = new AtomicInteger(0);
+            final String name = priority.name().charAt(0) + priority.name().substring(1).toLowerCase() + " verification ";
+
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                final Thread thread = new Thread(runnable, name + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+
+            executors.put(priority, executor);
+        }
+    }
+
+    /**
+     * Queues a task, which is run as soon as a thread of its priority class is available
+     * @param priority the priority of the task
+     * @param task the task
+     */
+    public void execute(final VerificationScheduler.Priority priority, final Runnable task) {
+        executors.get(priority).execute(task);
+    }
+
+    /**
+     * Changes the number of threads per priority class. Running tasks are not affected
+     * @param threads the new number of threads
+     */
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A verification executor must have at least one thread per priority");
+        }
+
+        for (final ThreadPoolExecutor executor : executors.values()) {
+            // The core size may never exceed the maximum size
+            if (threads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            } else {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    /**
+     * @return the number of tasks of the given priority waiting for a thread
+     */
+    public int getQueuedTasks(final VerificationScheduler.Priority priority) {
+        return executors.get(priority).getQueue().size();
+    }
+
+    /**
+     * @return the number of tasks of the given priority currently running
+     */
+    public int getActiveTasks(final VerificationScheduler.Priority priority) {
+        return executors.get(priority).getActiveCount();
+    }
+}
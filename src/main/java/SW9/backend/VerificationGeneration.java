@@ -0,0 +1,95 @@
+package SW9.backend;
+
+import com.uppaal.engine.Engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A generation of verification work, e.g. the reachability analysis of one version of the model.
+ * When the model changes the work of the previous generation is stale. Cancelling the generation cancels the engines
+ * running its queries (such that they are given back to the pool right away), and results which arrive after the
+ * cancellation are discarded.
+ */
+public class VerificationGeneration {
+
+    private static final AtomicLong generationCounter = new AtomicLong(0);
+
+    private final long number = generationCounter.incrementAndGet();
+    private final List<Engine> runningEngines = new ArrayList<>();
+    private boolean cancelled = false;
+
+    // Metrics
+    private long cancelledEngineCount = 0;
+    private final AtomicLong discardedResultCount = new AtomicLong(0);
+
+    /**
+     * @return the number of the generation. Later generations have larger numbers
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the generation, and the engines currently running its queries
+     */
+    public synchronized void cancel() {
+        if (cancelled) return;
+        cancelled = true;
+
+        cancelledEngineCount += runningEngines.size();
+        runningEngines.forEach(Engine::cancel);
+        runningEngines.clear();
+    }
+
+    /**
+     * Registers an engine as running work of this generation, such that it is cancelled if the generation is.
+     * {@link VerificationGeneration#finish(Engine)} must be called before the engine is given back to the pool.
+     * @param engine the engine
+     * @return false if the generation is already cancelled, hence the work should not be started
+     */
+    synchronized boolean start(final Engine engine) {
+        if (cancelled) return false;
+
+        runningEngines.add(engine);
+        return true;
+    }
+
+    /**
+     * Unregisters an engine, such that it is not cancelled if the generation is cancelled later on
+     * @param engine the engine previously registered with {@link VerificationGeneration#start(Engine)}
+     */
+    synchronized void finish(final Engine engine) {
+        runningEngines.remove(engine);
+    }
+
+    /**
+     * Checks if a result of this generation should be reported, and counts it as discarded if not
+     * @return true if the generation is not cancelled
+     */
+    boolean accept() {
+        if (!isCancelled()) return true;
+
+        discardedResultCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return the number of engines which were cancelled when the generation was cancelled
+     */
+    public synchronized long getCancelledEngineCount() {
+        return cancelledEngineCount;
+    }
+
+    /**
+     * @return the number of results which arrived after the generation was cancelled
+     */
+    public long getDiscardedResultCount() {
+        return discardedResultCount.get();
+    }
+}
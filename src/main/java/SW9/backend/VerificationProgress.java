@@ -0,0 +1,129 @@
+package SW9.backend;
+
+/**
+ * A snapshot of the progress an engine reported while verifying a query (see {@link VerificationProgressRegistry})
+ */
+public class VerificationProgress {
+
+    private final String query;
+    private final int engineId;
+    private final long states;
+    private final long maxStates;
+    private final double statesPerSecond;
+    private final long virtualMemoryKb;
+    private final long residentMemoryKb;
+    private final long maxResidentMemoryKb;
+    private final long availableMemoryKb;
+    private final long physicalMemoryKb;
+    private final long cpuMillis;
+    private final long elapsedMillis;
+
+    VerificationProgress(final String query,
+                         final int engineId,
+                         final long states,
+                         final long maxStates,
+                         final double statesPerSecond,
+                         final long virtualMemoryKb,
+                         final long residentMemoryKb,
+                         final long maxResidentMemoryKb,
+                         final long availableMemoryKb,
+                         final long physicalMemoryKb,
+                         final long cpuMillis,
+                         final long elapsedMillis) {
+        this.query = query;
+        this.engineId = engineId;
+        this.states = states;
+        this.maxStates = maxStates;
+        this.statesPerSecond = statesPerSecond;
+        this.virtualMemoryKb = virtualMemoryKb;
+        this.residentMemoryKb = residentMemoryKb;
+        this.maxResidentMemoryKb = maxResidentMemoryKb;
+        this.availableMemoryKb = availableMemoryKb;
+        this.physicalMemoryKb = physicalMemoryKb;
+        this.cpuMillis = cpuMillis;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public int getEngineId() {
+        return engineId;
+    }
+
+    /**
+     * @return the number of states in the passed and waiting list of the engine in the last progress update
+     */
+    public long getStates() {
+        return states;
+    }
+
+    /**
+     * @return the largest number of states the engine reported while verifying the query
+     */
+    public long getMaxStates() {
+        return maxStates;
+    }
+
+    /**
+     * @return the rate at which states were added between the last two progress updates
+     */
+    public double getStatesPerSecond() {
+        return statesPerSecond;
+    }
+
+    public long getVirtualMemoryKb() {
+        return virtualMemoryKb;
+    }
+
+    public long getResidentMemoryKb() {
+        return residentMemoryKb;
+    }
+
+    public long getMaxResidentMemoryKb() {
+        return maxResidentMemoryKb;
+    }
+
+    /**
+     * @return the free physical memory of the machine running the engine
+     */
+    public long getAvailableMemoryKb() {
+        return availableMemoryKb;
+    }
+
+    /**
+     * @return the total physical memory of the machine running the engine, or 0 if the engine did not tell
+     */
+    public long getPhysicalMemoryKb() {
+        return physicalMemoryKb;
+    }
+
+    /**
+     * @return the CPU time (user and system) the engine spent on the query
+     */
+    public long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    /**
+     * @return the time since the engine started on the query
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Formats a number of states in a short, human readable way (e.g. 1.2M)
+     */
+    public static String formatStates(final double states) {
+        if (states >= 1000000) return String.format("%.1fM", states / 1000000);
+        if (states >= 1000) return String.format("%.1fk", states / 1000);
+        return String.format("%.0f", states);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s states (%s/s), %d MB", formatStates(states), formatStates(statesPerSecond), residentMemoryKb / 1024);
+    }
+}
@@ -0,0 +1,251 @@
+package SW9.backend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the progress updates engines send while they verify queries (states in the passed and waiting list,
+ * memory and CPU usage), such that long verifications can be followed in the UI, and the resources needed by
+ * a project can be measured in headless runs.
+ * A query is registered under the thread verifying it, and removed when the engine is done.
+ */
+public class VerificationProgressRegistry {
+
+    private final Map<Thread, Tracker> running = new ConcurrentHashMap<>();
+
+    // Metrics of finished queries (guarded by this)
+    private long finishedCount = 0;
+    private long reportingCount = 0;
+    private long maxStates = 0;
+    private long maxResidentMemoryKb = 0;
+    private long totalCpuMillis = 0;
+
+    /**
+     * Registers a query which the current thread is about to verify.
+     * {@link Tracker#finish()} must be called when the engine is done.
+     * @param query the query
+     * @param engineId the id of the engine verifying the query
+     * @return the tracker to report the progress of the engine to
+     */
+    Tracker start(final String query, final int engineId) {
+        final Tracker tracker = new Tracker(query, engineId, Thread.currentThread());
+        running.put(tracker.thread, tracker);
+        return tracker;
+    }
+
+    /**
+     * Gets the progress of the query a thread is verifying
+     * @param thread the thread
+     * @return the progress, or null if the thread is not verifying a query, or the engine did not report any progress yet
+     */
+    public VerificationProgress getProgress(final Thread thread) {
+        final Tracker tracker = running.get(thread);
+        return tracker != null ? tracker.snapshot() : null;
+    }
+
+    /**
+     * @return the progress of the queries currently being verified (for which the engine reported progress)
+     */
+    public List<VerificationProgress> getRunning() {
+        final List<VerificationProgress> progress = new ArrayList<>();
+        for (final Tracker tracker : running.values()) {
+            final VerificationProgress snapshot = tracker.snapshot();
+            if (snapshot != null) {
+                progress.add(snapshot);
+            }
+        }
+        return progress;
+    }
+
+    public synchronized Metrics getMetrics() {
+        long states = 0;
+        double statesPerSecond = 0;
+        long residentMemoryKb = 0;
+        final List<VerificationProgress> runningProgress = getRunning();
+        for (final VerificationProgress progress : runningProgress) {
+            states += progress.getStates();
+            statesPerSecond += progress.getStatesPerSecond();
+            residentMemoryKb += progress.getResidentMemoryKb();
+        }
+
+        return new Metrics(runningProgress.size(), states, statesPerSecond, residentMemoryKb,
+                finishedCount, reportingCount, maxStates, maxResidentMemoryKb, totalCpuMillis);
+    }
+
+    private synchronized void finished(final VerificationProgress progress) {
+        finishedCount++;
+        if (progress == null) return;
+
+        reportingCount++;
+        maxStates = Math.max(maxStates, progress.getMaxStates());
+        maxResidentMemoryKb = Math.max(maxResidentMemoryKb, progress.getMaxResidentMemoryKb());
+        totalCpuMillis += progress.getCpuMillis();
+    }
+
+    /**
+     * Receives the progress updates of the engine verifying a query
+     */
+    class Tracker {
+        private final String query;
+        private final int engineId;
+        private final Thread thread;
+        private final long startTime = System.currentTimeMillis();
+
+        private boolean reported = false;
+        private long states;
+        private long maxStates;
+        private double statesPerSecond;
+        private long virtualMemoryKb;
+        private long residentMemoryKb;
+        private long maxResidentMemoryKb;
+        private long availableMemoryKb;
+        private long physicalMemoryKb;
+        private long cpuMillis;
+        private long timestamp;
+
+        private Tracker(final String query, final int engineId, final Thread thread) {
+            this.query = query;
+            this.engineId = engineId;
+            this.thread = thread;
+        }
+
+        synchronized void setSystemInfo(final long vmsize, final long physsize, final long swapsize) {
+            physicalMemoryKb = physsize;
+        }
+
+        synchronized void setProgress(final int load, final long vm, final long rss, final long cached, final long avail, final long swap, final long swapfree, final long user, final long sys, final long timestamp) {
+            // The rate is measured between two updates
+            if (reported && timestamp > this.timestamp) {
+                statesPerSecond = Math.max(0, (load - states) * 1000d / (timestamp - this.timestamp));
+            }
+
+            reported = true;
+            states = load;
+            maxStates = Math.max(maxStates, load);
+            virtualMemoryKb = vm;
+            residentMemoryKb = rss;
+            maxResidentMemoryKb = Math.max(maxResidentMemoryKb, rss);
+            availableMemoryKb = avail;
+            cpuMillis = user + sys;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * @return the progress reported so far, or null if the engine did not report any progress yet
+         */
+        synchronized VerificationProgress snapshot() {
+            if (!reported) return null;
+
+            return new VerificationProgress(query, engineId, states, maxStates, statesPerSecond, virtualMemoryKb, residentMemoryKb,
+                    maxResidentMemoryKb, availableMemoryKb, physicalMemoryKb, cpuMillis, System.currentTimeMillis() - startTime);
+        }
+
+        /**
+         * Removes the query from the running queries
+         * @return the last progress reported, or null if the engine did not report any progress
+         */
+        VerificationProgress finish() {
+            if (!running.remove(thread, this)) return snapshot();
+
+            final VerificationProgress progress = snapshot();
+            finished(progress);
+            return progress;
+        }
+    }
+
+    /**
+     * An immutable snapshot of the metrics of a progress registry
+     */
+    public static class Metrics {
+        private final int runningCount;
+        private final long runningStates;
+        private final double runningStatesPerSecond;
+        private final long runningResidentMemoryKb;
+        private final long finishedCount;
+        private final long reportingCount;
+        private final long maxStates;
+        private final long maxResidentMemoryKb;
+        private final long totalCpuMillis;
+
+        private Metrics(final int runningCount,
+                        final long runningStates,
+                        final double runningStatesPerSecond,
+                        final long runningResidentMemoryKb,
+                        final long finishedCount,
+                        final long reportingCount,
+                        final long maxStates,
+                        final long maxResidentMemoryKb,
+                        final long totalCpuMillis) {
+            this.runningCount = runningCount;
+            this.runningStates = runningStates;
+            this.runningStatesPerSecond = runningStatesPerSecond;
+            this.runningResidentMemoryKb = runningResidentMemoryKb;
+            this.finishedCount = finishedCount;
+            this.reportingCount = reportingCount;
+            this.maxStates = maxStates;
+            this.maxResidentMemoryKb = maxResidentMemoryKb;
+            this.totalCpuMillis = totalCpuMillis;
+        }
+
+        /**
+         * @return the number of queries being verified for which the engine reported progress
+         */
+        public int getRunningCount() {
+            return runningCount;
+        }
+
+        /**
+         * @return the sum of the states of the queries being verified
+         */
+        public long getRunningStates() {
+            return runningStates;
+        }
+
+        public double getRunningStatesPerSecond() {
+            return runningStatesPerSecond;
+        }
+
+        public long getRunningResidentMemoryKb() {
+            return runningResidentMemoryKb;
+        }
+
+        public long getFinishedCount() {
+            return finishedCount;
+        }
+
+        /**
+         * @return the number of finished queries for which the engine reported progress
+         */
+        public long getReportingCount() {
+            return reportingCount;
+        }
+
+        /**
+         * @return the largest number of states an engine needed for a single finished query
+         */
+        public long getMaxStates() {
+            return maxStates;
+        }
+
+        /**
+         * @return the largest resident memory an engine needed for a single finished query
+         */
+        public long getMaxResidentMemoryKb() {
+            return maxResidentMemoryKb;
+        }
+
+        public long getTotalCpuMillis() {
+            return totalCpuMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d running (%s states, %s states/s, %d MB), %d finished (%d reporting progress, max. %s states, max. %d MB, %d ms CPU)",
+                    runningCount, VerificationProgress.formatStates(runningStates), VerificationProgress.formatStates(runningStatesPerSecond),
+                    runningResidentMemoryKb / 1024, finishedCount, reportingCount, VerificationProgress.formatStates(maxStates),
+                    maxResidentMemoryKb / 1024, totalCpuMillis);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package SW9.backend;
+
+import com.uppaal.engine.Problem;
+import com.uppaal.engine.QueryVerificationResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of verifying a query (see {@link UPPAALDriver#verify(String)}).
+ * A result is also created if the query could not be run, in which case the verdict is {@link Verdict#ERROR}
+ * and the exception tells why. Hence the future of a query only completes exceptionally if it is cancelled.
+ */
+public class VerificationResult {
+
+    public enum Verdict {
+        SATISFIED, NOT_SATISFIED, MAYBE, ERROR
+    }
+
+    /**
+     * The engine id of results which did not need an engine (e.g. because they were cached)
+     */
+    public static final int NO_ENGINE = -1;
+
+    private final String query;
+    private final Verdict verdict;
+    private final long durationNanos;
+    private final int engineId;
+    private final List<Problem> problems;
+    private final Trace trace;
+    private final VerificationProgress progress;
+    private final BackendException exception;
+
+    private VerificationResult(final String query,
+                               final Verdict verdict,
+                               final long durationNanos,
+                               final int engineId,
+                               final List<Problem> problems,
+                               final Trace trace,
+                               final VerificationProgress progress,
+                               final BackendException exception) {
+        this.query = query;
+        this.verdict = verdict;
+        this.durationNanos = durationNanos;
+        this.engineId = engineId;
+        this.problems = Collections.unmodifiableList(new ArrayList<>(problems));
+        this.trace = trace;
+        this.progress = progress;
+        this.exception = exception;
+    }
+
+    /**
+     * Creates the result of a query answered by an engine
+     * @param query the query
+     * @param qvr the answer of the engine
+     * @param engineId the id of the engine
+     * @param problems the problems of the document the query was run on
+     * @param trace the trace reported by the engine, or null
+     * @param progress the last progress reported by the engine, or null
+     * @param durationNanos the time it took to answer the query
+     * @return the result
+     */
+    static VerificationResult of(final String query,
+                                 final QueryVerificationResult qvr,
+                                 final int engineId,
+                                 final List<Problem> problems,
+                                 final Trace trace,
+                                 final VerificationProgress progress,
+                                 final long durationNanos) {
+        switch (qvr.result) {
+            case 'T':
+                return new VerificationResult(query, Verdict.SATISFIED, durationNanos, engineId, problems, trace, progress, null);
+            case 'F':
+                return new VerificationResult(query, Verdict.NOT_SATISFIED, durationNanos, engineId, problems, trace, progress, null);
+            case 'M':
+                return new VerificationResult(query, Verdict.MAYBE, durationNanos, engineId, problems, trace, progress,
+                        new BackendException.QueryErrorException("UPPAAL Engine was uncertain on the result"));
+            default:
+                return new VerificationResult(query, Verdict.ERROR, durationNanos, engineId, problems, trace, progress,
+                        new BackendException.BadUPPAALQueryException("Unable to run query", qvr.exception));
+        }
+    }
+
+    /**
+     * Creates the result of a query which was answered by the result cache
+     */
+    static VerificationResult cached(final String query, final boolean satisfied) {
+        return new VerificationResult(query, satisfied ? Verdict.SATISFIED : Verdict.NOT_SATISFIED, 0, NO_ENGINE, Collections.emptyList(), null, null, null);
+    }
+
+    /**
+     * Creates the result of a query which could not be run
+     */
+    static VerificationResult error(final String query,
+                                    final BackendException exception,
+                                    final int engineId,
+                                    final List<Problem> problems,
+                                    final long durationNanos) {
+        return new VerificationResult(query, Verdict.ERROR, durationNanos, engineId, problems, null, null, exception);
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    /**
+     * @return true if the engine was certain whether the query is satisfied or not
+     */
+    public boolean isConclusive() {
+        return verdict == Verdict.SATISFIED || verdict == Verdict.NOT_SATISFIED;
+    }
+
+    public boolean isSatisfied() {
+        return verdict == Verdict.SATISFIED;
+    }
+
+    /**
+     * @return the time from the engine starting on the query (including compiling the document, if needed) until the answer
+     */
+    public double getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMicros(durationNanos) / 1000d;
+    }
+
+    /**
+     * @return the id of the engine which answered the query (see {@link WarmEngine#getId()}), or {@link #NO_ENGINE}
+     */
+    public int getEngineId() {
+        return engineId;
+    }
+
+    /**
+     * @return true if the result was taken from the result cache instead of asking an engine
+     */
+    public boolean isCached() {
+        return engineId == NO_ENGINE && exception == null;
+    }
+
+    /**
+     * @return the problems (warnings and errors) of the document the query was run on
+     */
+    public List<Problem> getProblems() {
+        return problems;
+    }
+
+    /**
+     * @return the trace (e.g. a counter example) reported by the engine, if any
+     */
+    public Optional<Trace> getTrace() {
+        return Optional.ofNullable(trace);
+    }
+
+    /**
+     * @return the last progress (states, memory and CPU usage) reported by the engine, if any
+     */
+    public Optional<VerificationProgress> getProgress() {
+        return Optional.ofNullable(progress);
+    }
+
+    /**
+     * @return the reason the result is not conclusive, or null if it is
+     */
+    public BackendException getException() {
+        return exception;
+    }
+
+    /**
+     * Aggregates the results of many queries (e.g. of {@link UPPAALDriver#verifyAll(List, long, VerificationScheduler.Priority)})
+     * @param results the futures of the results
+     * @return a future which is completed with the results (in the order of the futures) when all of them are known
+     */
+    public static CompletableFuture<List<VerificationResult>> allOf(final List<CompletableFuture<VerificationResult>> results) {
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            final List<VerificationResult> list = new ArrayList<>();
+            results.forEach(result -> list.add(result.join()));
+            return list;
+        });
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %s (%.1f ms, engine %d)", query, verdict.name().toLowerCase(), getDurationMillis(), engineId);
+    }
+}
@@ -0,0 +1,137 @@
+package SW9.backend;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of query results, keyed by the content of the generated UPPAAL document and the query.
+ * Since layout is not part of the key (see {@link HUPPAALDocument#getFingerprint()}), results survive moving
+ * locations, recoloring components etc. The least recently used results are evicted when the cache is full.
+ * The cache can be saved to (and loaded from) a hidden file in the project directory, such that results survive restarts.
+ */
+public class VerificationResultCache {
+
+    public static final String CACHE_FILE_NAME = ".verification-cache";
+
+    private final int capacity;
+    private final Map<String, Boolean> results;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public VerificationResultCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("A result cache must be able to hold at least one result");
+        }
+
+        this.capacity = capacity;
+
+        // Access ordered, such that the first entry is the least recently used one
+        this.results = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return size() > VerificationResultCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the result of a query on a document, if it is known
+     * @param document the document the query is run on
+     * @param query the query
+     * @return the result, or null if the query was not run on a document with the same content before
+     */
+    public synchronized Boolean get(final HUPPAALDocument document, final String query) {
+        final Boolean result = results.get(getKey(document, query));
+
+        if (result == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Remembers the result of a query on a document
+     * @param document the document the query was run on
+     * @param query the query
+     * @param result the result of the query
+     */
+    public synchronized void put(final HUPPAALDocument document, final String query, final boolean result) {
+        results.put(getKey(document, query), result);
+    }
+
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Loads results previously saved in the given directory (if any). Results already in the cache are kept.
+     * @param directory the project directory
+     * @throws IOException if the cache file exists, but could not be read
+     */
+    public void load(final File directory) throws IOException {
+        final File file = new File(directory, CACHE_FILE_NAME);
+        if (!file.isFile()) return;
+
+        final List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
+
+        synchronized (this) {
+            // The file is ordered from least to most recently used
+            for (final String line : lines) {
+                final String[] parts = line.split(" ");
+
+                // Ignore lines we do not understand, the file might have been written by another version
+                if (parts.length != 2 || !(parts[1].equals("T") || parts[1].equals("F"))) continue;
+
+                if (!results.containsKey(parts[0])) {
+                    results.put(parts[0], parts[1].equals("T"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the results of the cache to a hidden file in the given directory
+     * @param directory the project directory
+     * @throws IOException if the file could not be written
+     */
+    public void save(final File directory) throws IOException {
+        final List<String> lines = new ArrayList<>();
+
+        synchronized (this) {
+            results.forEach((key, result) -> lines.add(key + " " + (result ? "T" : "F")));
+        }
+
+        FileUtils.writeLines(new File(directory, CACHE_FILE_NAME), StandardCharsets.UTF_8.name(), lines);
+    }
+
+    private static String getKey(final HUPPAALDocument document, final String query) {
+        return HUPPAALDocument.sha256(document.getFingerprint() + "\n" + query);
+    }
+}
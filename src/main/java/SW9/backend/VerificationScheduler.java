@@ -0,0 +1,359 @@
+package SW9.backend;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides who may use the engines of an {@link EnginePool}, and in which order.
+ * Interactive work (e.g. a query run by the user) is always served before background work (e.g. the periodic
+ * reachability analysis). Within a priority class work is served in the order in which it arrived.
+ * If interactive work arrives while all engines are in use, background work is preempted: its preemption action
+ * (typically cancelling the engine) is run, and the engine is handed to the interactive work when it is released.
+ */
+public class VerificationScheduler {
+
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final int slots;
+    private int freeSlots;
+
+    // Requests waiting for a slot, one queue per priority
+    private final List<Deque<Request>> queues = new ArrayList<>();
+
+    // Granted slots which may be preempted
+    private final List<Slot> backgroundSlots = new ArrayList<>();
+    private int pendingPreemptions = 0;
+
+    // Metrics (guarded by this)
+    private final int[] maxQueueDepth = new int[PRIORITIES.length];
+    private final long[] grantCount = new long[PRIORITIES.length];
+    private final long[] totalWaitNanos = new long[PRIORITIES.length];
+    private final long[] maxWaitNanos = new long[PRIORITIES.length];
+    private final long[] timeoutCount = new long[PRIORITIES.length];
+    private long preemptionCount = 0;
+
+    public VerificationScheduler(final int slots) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("A scheduler must have at least one slot");
+        }
+
+        this.slots = slots;
+        this.freeSlots = slots;
+
+        for (final Priority ignored : PRIORITIES) {
+            queues.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Acquires a slot, blocking until one is available.
+     * The slot must be given back using {@link VerificationScheduler#release(Slot)}.
+     * @param priority the priority of the work which will use the slot
+     * @param timeout the maximum time to wait for a slot
+     * @param unit the time unit of the timeout
+     * @return the slot
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws BackendException.EngineUnavailableException if no slot became available before the timeout
+     */
+    public synchronized Slot acquire(final Priority priority, final long timeout, final TimeUnit unit) throws InterruptedException, BackendException.EngineUnavailableException {
+        final Request request = new Request(priority);
+
+        // Work of the same or a higher priority which is already waiting goes first
+        if (freeSlots > 0 && !hasWaitingRequests(priority)) {
+            freeSlots--;
+            return grant(request, false);
+        }
+
+        final Deque<Request> queue = queues.get(priority.ordinal());
+        queue.addLast(request);
+        maxQueueDepth[priority.ordinal()] = Math.max(maxQueueDepth[priority.ordinal()], queue.size());
+
+        if (priority == Priority.INTERACTIVE) {
+            preemptIfNeeded();
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            while (!request.granted) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    queue.remove(request);
+                    timeoutCount[priority.ordinal()]++;
+                    throw new BackendException.EngineUnavailableException("No UPPAAL engine became available within " + unit.toMillis(timeout) + " ms");
+                }
+
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (final InterruptedException e) {
+            // If we were given a slot while being interrupted, pass it on
+            if (request.granted) {
+                freeSlots++;
+                dispatch();
+            } else {
+                queue.remove(request);
+            }
+            throw e;
+        }
+
+        return grant(request, true);
+    }
+
+    /**
+     * Gives a slot back, and hands it to the waiting work of the highest priority (if any)
+     * @param slot the slot previously acquired from this scheduler
+     */
+    public synchronized void release(final Slot slot) {
+        if (slot == null || slot.released) return;
+        slot.released = true;
+
+        if (backgroundSlots.remove(slot) && slot.preempted) {
+            pendingPreemptions--;
+        }
+
+        freeSlots++;
+        dispatch();
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public synchronized int getQueueDepth() {
+        int depth = 0;
+        for (final Deque<Request> queue : queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    public synchronized Metrics getMetrics() {
+        final int[] queueDepth = new int[PRIORITIES.length];
+        for (final Priority priority : PRIORITIES) {
+            queueDepth[priority.ordinal()] = queues.get(priority.ordinal()).size();
+        }
+
+        return new Metrics(
+                queueDepth,
+                maxQueueDepth.clone(),
+                grantCount.clone(),
+                totalWaitNanos.clone(),
+                maxWaitNanos.clone(),
+                timeoutCount.clone(),
+                preemptionCount
+        );
+    }
+
+    private boolean hasWaitingRequests(final Priority priority) {
+        for (int i = 0; i <= priority.ordinal(); i++) {
+            if (!queues.get(i).isEmpty()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hands free slots to waiting requests, highest priority first
+     */
+    private void dispatch() {
+        boolean granted = false;
+
+        for (final Deque<Request> queue : queues) {
+            while (freeSlots > 0 && !queue.isEmpty()) {
+                queue.pollFirst().granted = true;
+                freeSlots--;
+                granted = true;
+            }
+        }
+
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Preempts background work until every waiting interactive request will get a slot when the preempted work is done
+     */
+    private void preemptIfNeeded() {
+        final int waitingInteractive = queues.get(Priority.INTERACTIVE.ordinal()).size();
+
+        for (final Slot slot : backgroundSlots) {
+            if (pendingPreemptions >= waitingInteractive) return;
+            if (slot.preempted) continue;
+
+            slot.preempted = true;
+            pendingPreemptions++;
+            preemptionCount++;
+
+            if (slot.preemptionAction != null) {
+                slot.preemptionAction.run();
+            }
+        }
+    }
+
+    private Slot grant(final Request request, final boolean waited) {
+        final long waitTime = System.nanoTime() - request.startTime;
+        final int index = request.priority.ordinal();
+        grantCount[index]++;
+        totalWaitNanos[index] += waitTime;
+        maxWaitNanos[index] = Math.max(maxWaitNanos[index], waitTime);
+
+        final Slot slot = new Slot(request.priority, waited);
+        if (request.priority == Priority.BACKGROUND) {
+            backgroundSlots.add(slot);
+        }
+
+        // Interactive work might have arrived between handing this slot to background work and the work waking up
+        if (!queues.get(Priority.INTERACTIVE.ordinal()).isEmpty()) {
+            preemptIfNeeded();
+        }
+
+        return slot;
+    }
+
+    private static class Request {
+        private final Priority priority;
+        private final long startTime = System.nanoTime();
+        private boolean granted = false;
+
+        private Request(final Priority priority) {
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * The right to use an engine, given to work of some priority
+     */
+    public class Slot {
+        private final Priority priority;
+        private final boolean waited;
+        private boolean preempted = false;
+        private boolean released = false;
+        private Runnable preemptionAction;
+
+        private Slot(final Priority priority, final boolean waited) {
+            this.priority = priority;
+            this.waited = waited;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return true if the slot was not available immediately when it was requested
+         */
+        public boolean hasWaited() {
+            return waited;
+        }
+
+        /**
+         * @return true if interactive work is waiting for this slot to be released
+         */
+        public boolean isPreempted() {
+            synchronized (VerificationScheduler.this) {
+                return preempted;
+            }
+        }
+
+        /**
+         * Sets the action which is run when the work using this slot is preempted.
+         * If the slot is already preempted the action is run immediately.
+         * @param action the action, e.g. cancelling the engine running the work
+         */
+        public void setPreemptionAction(final Runnable action) {
+            synchronized (VerificationScheduler.this) {
+                preemptionAction = action;
+                if (preempted && !released) {
+                    action.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * An immutable snapshot of the metrics of a scheduler
+     */
+    public static class Metrics {
+        private final int[] queueDepth;
+        private final int[] maxQueueDepth;
+        private final long[] grantCount;
+        private final long[] totalWaitNanos;
+        private final long[] maxWaitNanos;
+        private final long[] timeoutCount;
+        private final long preemptionCount;
+
+        private Metrics(final int[] queueDepth,
+                        final int[] maxQueueDepth,
+                        final long[] grantCount,
+                        final long[] totalWaitNanos,
+                        final long[] maxWaitNanos,
+                        final long[] timeoutCount,
+                        final long preemptionCount) {
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.grantCount = grantCount;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeoutCount = timeoutCount;
+            this.preemptionCount = preemptionCount;
+        }
+
+        /**
+         * @return the number of requests of the given priority currently waiting for an engine
+         */
+        public int getQueueDepth(final Priority priority) {
+            return queueDepth[priority.ordinal()];
+        }
+
+        public int getMaxQueueDepth(final Priority priority) {
+            return maxQueueDepth[priority.ordinal()];
+        }
+
+        public long getGrantCount(final Priority priority) {
+            return grantCount[priority.ordinal()];
+        }
+
+        public double getAverageWaitMillis(final Priority priority) {
+            final long count = grantCount[priority.ordinal()];
+            if (count == 0) return 0;
+            return TimeUnit.NANOSECONDS.toMicros(totalWaitNanos[priority.ordinal()]) / 1000d / count;
+        }
+
+        public double getMaxWaitMillis(final Priority priority) {
+            return TimeUnit.NANOSECONDS.toMicros(maxWaitNanos[priority.ordinal()]) / 1000d;
+        }
+
+        /**
+         * @return the number of times a request of the given priority gave up waiting for an engine
+         */
+        public long getTimeoutCount(final Priority priority) {
+            return timeoutCount[priority.ordinal()];
+        }
+
+        /**
+         * @return the number of times background work was preempted by interactive work
+         */
+        public long getPreemptionCount() {
+            return preemptionCount;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder();
+
+            for (final Priority priority : PRIORITIES) {
+                builder.append(String.format("%s: %d queued (max %d), %d granted (avg. wait %.1f ms, max wait %.1f ms), %d timeouts; ",
+                        priority.name().toLowerCase(), getQueueDepth(priority), getMaxQueueDepth(priority), getGrantCount(priority),
+                        getAverageWaitMillis(priority), getMaxWaitMillis(priority), getTimeoutCount(priority)));
+            }
+
+            return builder.append(preemptionCount).append(" preemptions").toString();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package SW9.backend;
+
+import com.uppaal.engine.Engine;
+import com.uppaal.engine.EngineException;
+import com.uppaal.engine.Problem;
+import com.uppaal.model.system.UppaalSystem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An UPPAAL engine which stays connected to its server between queries and remembers the last system it compiled.
+ * Queries on a document which did not change since the previous query on this engine reuse the compiled system
+ * instead of uploading and compiling the document again.
+ */
+public class WarmEngine extends Engine {
+
+    private static final AtomicInteger engineCounter = new AtomicInteger(0);
+
+    private final int id = engineCounter.incrementAndGet();
+    private final List<Problem> compiledProblems = new ArrayList<>();
+    private volatile UppaalSystem compiledSystem;
+    private volatile HUPPAALDocument compiledDocument;
+    private volatile String compiledFingerprint;
+
+    /**
+     * @return the id of the engine, unique within this run of the application
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Connects to the server (if not already connected) and gets the system of the given document.
+     * @param document the document to get the system of
+     * @param problems list to store the problems (warnings and errors) of the document in
+     * @param reuse if false the document is always compiled, even though it did not change
+     * @return the compiled system, or null if the document could not be compiled
+     * @throws EngineException if an error occurred in the server protocol
+     * @throws IOException if we could not communicate with the server
+     */
+    public UppaalSystem getSystem(final HUPPAALDocument document, final List<Problem> problems, final boolean reuse) throws EngineException, IOException {
+        connect();
+
+        final String fingerprint = document.getFingerprint();
+
+        if (!reuse || compiledSystem == null || !fingerprint.equals(compiledFingerprint)) {
+            final ArrayList<Problem> newProblems = new ArrayList<>();
+            final UppaalSystem system = getSystem(document.toUPPAALDocument(), newProblems);
+
+            compiledProblems.clear();
+            compiledProblems.addAll(newProblems);
+
+            // Only remember systems which could be compiled
+            compiledSystem = system;
+            compiledDocument = system != null ? document : null;
+            compiledFingerprint = system != null ? fingerprint : null;
+        }
+
+        problems.addAll(compiledProblems);
+        return compiledSystem;
+    }
+
+    /**
+     * Gets the document from which the current system was compiled.
+     * Use this document (and not a later generated one) to map elements of the system back to H-UPPAAL elements.
+     * @return the document, or null if no system is compiled
+     */
+    public HUPPAALDocument getCompiledDocument() {
+        return compiledDocument;
+    }
+
+    /**
+     * Forgets the compiled system, such that it is compiled again the next time it is needed
+     */
+    public void forgetSystem() {
+        compiledSystem = null;
+        compiledDocument = null;
+        compiledFingerprint = null;
+    }
+
+    @Override
+    protected void disconnected() {
+        // The server (and hence the compiled system) is gone
+        forgetSystem();
+        super.disconnected();
+    }
+}
@@ -8,6 +8,7 @@ import SW9.utility.helpers.SelectHelper;
 import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.ListChangeListener;
 import javafx.event.EventHandler;
 import javafx.fxml.Initializable;
 import javafx.scene.input.KeyCode;
@@ -28,6 +29,10 @@ public class CanvasController implements Initializable {
 
     private final static HashMap<Component, Pair<Double, Double>> componentTranslateMap = new HashMap<>();
 
+    // Presentations are created when a component is first shown, and reused when it is shown again.
+    // They are not evicted: a presentation listens to its component, hence lives as long as the component does anyway
+    private final static HashMap<Component, ComponentPresentation> componentPresentationCache = new HashMap<>();
+
     public Pane root;
 
     public static Component getActiveComponent() {
@@ -86,11 +91,32 @@ public class CanvasController implements Initializable {
                 root.setTranslateY(GRID_SIZE * 8);
             }
 
-            final ComponentPresentation newComponentPresentation = new ComponentPresentation(newComponent);
+            ComponentPresentation newComponentPresentation = componentPresentationCache.get(newComponent);
+            if (newComponentPresentation == null) {
+                // The component (e.g. of a binary project) might not be decoded yet
+                newComponent.load();
+
+                newComponentPresentation = new ComponentPresentation(newComponent);
+                componentPresentationCache.put(newComponent, newComponentPresentation);
+            }
+
             root.getChildren().add(newComponentPresentation);
             root.requestFocus();
         });
 
+        // Forget the presentations of components which are no longer part of the project
+        HUPPAAL.getProject().getComponents().addListener(new ListChangeListener<Component>() {
+            @Override
+            public void onChanged(final Change<? extends Component> c) {
+                while (c.next()) {
+                    c.getRemoved().forEach(removedComponent -> {
+                        componentPresentationCache.remove(removedComponent);
+                        componentTranslateMap.remove(removedComponent);
+                    });
+                }
+            }
+        });
+
         leaveTextAreas = () -> {root.requestFocus();};
 
         leaveOnEnterPressed = (keyEvent) -> {
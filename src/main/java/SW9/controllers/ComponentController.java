@@ -177,22 +177,86 @@ public class ComponentController implements Initializable {
         component.addListener((obs, old, component) -> {
             if (component == null) return;
 
-            if (!errorsAndWarningsInitialized.containsKey(component) || !errorsAndWarningsInitialized.get(component)) {
-                initializeSubComponentUniqueNameError();
-                initializeNoIncomingEdgesWarning();
-                errorsAndWarningsInitialized.put(component, true);
+            initializeCodeAnalysis(component);
+        });
+    }
+
+    /**
+     * Starts checking a component, and its locations, edges and sub components, for errors and warnings (once per component).
+     * The checks do not need a presentation of the component, hence components which are never shown are checked as well.
+     * A component which is not decoded yet (see {@link Component#load()}) is checked when it is decoded
+     * @param component the component to check
+     */
+    public static void initializeCodeAnalysis(final Component component) {
+        if (!component.isLoaded()) {
+            component.loadedProperty().addListener((observable, wasLoaded, isLoaded) -> {
+                if (isLoaded) initializeCodeAnalysis(component);
+            });
+            return;
+        }
+
+        if (!errorsAndWarningsInitialized.containsKey(component) || !errorsAndWarningsInitialized.get(component)) {
+            initializeSubComponentUniqueNameError(component);
+            initializeNoIncomingEdgesWarning(component);
+            initializeElementErrors(component);
+            errorsAndWarningsInitialized.put(component, true);
+        }
+    }
+
+    /**
+     * Starts checking the locations, edges and sub components of a component (including the ones added later).
+     * The presentations of the elements start the same checks, each check is only started once per element
+     */
+    private static void initializeElementErrors(final Component component) {
+        final Consumer<Location> initializeLocation = location -> LocationController.initializeInvalidNameError(location, component);
+        final Consumer<Edge> initializeEdge = edge -> {
+            EdgeController.initializeEdgeErrorFromTargetLocation(edge, component);
+            EdgeController.initializeEdgeErrorToInitialLocation(edge, component);
+            EdgeController.initializeEdgeToForkError(edge, component);
+            EdgeController.initializeEdgeFromJoinError(edge, component);
+        };
+        final Consumer<SubComponent> initializeSubComponent = subComponent -> SubComponentController.initializeInconsistentEdgeError(subComponent, component);
+
+        component.getLocationsWithInitialAndFinal().forEach(initializeLocation);
+        new ArrayList<>(component.getEdges()).forEach(initializeEdge);
+        new ArrayList<>(component.getSubComponents()).forEach(initializeSubComponent);
+
+        component.getLocations().addListener(new ListChangeListener<Location>() {
+            @Override
+            public void onChanged(final Change<? extends Location> c) {
+                while (c.next()) {
+                    c.getAddedSubList().forEach(initializeLocation);
+                }
+            }
+        });
+
+        component.getEdges().addListener(new ListChangeListener<Edge>() {
+            @Override
+            public void onChanged(final Change<? extends Edge> c) {
+                while (c.next()) {
+                    c.getAddedSubList().forEach(initializeEdge);
+                }
+            }
+        });
+
+        component.getSubComponents().addListener(new ListChangeListener<SubComponent>() {
+            @Override
+            public void onChanged(final Change<? extends SubComponent> c) {
+                while (c.next()) {
+                    c.getAddedSubList().forEach(initializeSubComponent);
+                }
             }
         });
     }
 
-    private void initializeNoIncomingEdgesWarning() {
+    private static void initializeNoIncomingEdgesWarning(final Component component) {
         final Map<Location, CodeAnalysis.Message> messages = new HashMap<>();
 
         final Function<Location, Boolean> hasIncomingEdges = location -> {
-            if (!getComponent().getLocations().contains(location))
+            if (!component.getLocations().contains(location))
                 return true; // Do now show messages for locations not in the set of locations
 
-            for (final Edge edge : getComponent().getEdges()) {
+            for (final Edge edge : component.getEdges()) {
                 final Location targetLocation = edge.getTargetLocation();
                 if (targetLocation != null && targetLocation.equals(location)) return true;
             }
@@ -200,7 +264,7 @@ public class ComponentController implements Initializable {
             return false;
         };
 
-        final Consumer<Component> checkLocations = (component) -> {
+        final Runnable checkLocations = () -> {
             final List<Location> ignored = new ArrayList<>();
 
             // Run through all of the locations we are currently displaying a warning for, checking if we should remove them
@@ -237,15 +301,14 @@ public class ComponentController implements Initializable {
             }
         };
 
-        final Component component = getComponent();
-        checkLocations.accept(component);
+        checkLocations.run();
 
         // Check location whenever we get new edges
         component.getEdges().addListener(new ListChangeListener<Edge>() {
             @Override
             public void onChanged(final Change<? extends Edge> c) {
                 while (c.next()) {
-                    checkLocations.accept(component);
+                    checkLocations.run();
                 }
             }
         });
@@ -255,7 +318,7 @@ public class ComponentController implements Initializable {
             @Override
             public void onChanged(final Change<? extends Location> c) {
                 while (c.next()) {
-                    checkLocations.accept(component);
+                    checkLocations.run();
                 }
             }
         });
@@ -290,13 +353,13 @@ public class ComponentController implements Initializable {
         newComponent.getJorks().forEach(handleAddedJork);
     }
 
-    private void initializeSubComponentUniqueNameError() {
+    private static void initializeSubComponentUniqueNameError(final Component component) {
         final HashMap<String, ArrayList<CodeAnalysis.Message>> errorsMap = new HashMap<>();
 
         final Runnable checkNames = () -> {
             final HashMap<String, Integer> occurrences = new HashMap<>();
 
-            subComponentPresentationMap.keySet().forEach(subComponent -> {
+            new ArrayList<>(component.getSubComponents()).forEach(subComponent -> {
 
                 // Check if we have seen the identifier of the sub component before
                 final String identifier = subComponent.getIdentifier();
@@ -320,12 +383,12 @@ public class ComponentController implements Initializable {
                 if (addedErrors > foundErrors) { // There are too many errors in the view
                     final CodeAnalysis.Message messageToRemove = messages.get(0);
                     messages.remove(messageToRemove);
-                    Platform.runLater(() -> CodeAnalysis.removeMessage(getComponent(), messageToRemove));
+                    Platform.runLater(() -> CodeAnalysis.removeMessage(component, messageToRemove));
                 } else if (addedErrors < foundErrors) { // There are too few errors in the view
                     // Find all subcomponents with that name
                     final List<Nearable> clashingSubcomponents = new ArrayList<>();
 
-                    getComponent().getSubComponents().forEach(subComponent -> {
+                    component.getSubComponents().forEach(subComponent -> {
                         if (subComponent.getIdentifier().equals(id)) {
                             clashingSubcomponents.add(subComponent);
                         }
@@ -333,26 +396,24 @@ public class ComponentController implements Initializable {
 
                     final CodeAnalysis.Message identifierIsNotUnique = new CodeAnalysis.Message("Identifier '" + id + "' is multiply defined", CodeAnalysis.MessageType.ERROR, clashingSubcomponents);
                     messages.add(identifierIsNotUnique);
-                    Platform.runLater(() -> CodeAnalysis.addMessage(getComponent(), identifierIsNotUnique));
+                    Platform.runLater(() -> CodeAnalysis.addMessage(component, identifierIsNotUnique));
                 }
             });
 
             // Remove any messages that are no longer found
             errorsMap.keySet().forEach(id -> {
                 if (!occurrences.containsKey(id)) {
-                    errorsMap.get(id).forEach(message -> Platform.runLater(() -> CodeAnalysis.removeMessage(getComponent(), message)));
+                    errorsMap.get(id).forEach(message -> Platform.runLater(() -> CodeAnalysis.removeMessage(component, message)));
                     errorsMap.put(id, new ArrayList<>());
                 }
             });
 
         };
 
-        // Wait until component is not null
-        if (!COMPONENT_SUBCOMPONENT_NAME_CHECK_TIMER_MAP.containsKey(getComponent())) {
+        if (!COMPONENT_SUBCOMPONENT_NAME_CHECK_TIMER_MAP.containsKey(component)) {
             final TimerTask reachabilityCheckTask = new TimerTask() {
                 @Override
                 public void run() {
-                    if (getComponent() == null) return;
                     checkNames.run();
                 }
             };
@@ -361,7 +422,7 @@ public class ComponentController implements Initializable {
             final Timer timer = new Timer();
             timer.schedule(reachabilityCheckTask, 0, interval);
 
-            COMPONENT_SUBCOMPONENT_NAME_CHECK_TIMER_MAP.put(getComponent(), timer);
+            COMPONENT_SUBCOMPONENT_NAME_CHECK_TIMER_MAP.put(component, timer);
         }
 
         // Cancel timers when the component is removed
@@ -104,141 +104,141 @@ public class EdgeController implements Initializable, SelectHelper.ItemSelectabl
         });
     }
 
-    public void initializeEdgeErrorFromTargetLocation() {
-        if (initializedEdgeFromTargetError.containsKey(getEdge())) return; // Already initialized
-        initializedEdgeFromTargetError.put(getEdge(), true); // Set initialized
+    public static void initializeEdgeErrorFromTargetLocation(final Edge edge, final Component component) {
+        if (initializedEdgeFromTargetError.containsKey(edge)) return; // Already initialized
+        initializedEdgeFromTargetError.put(edge, true); // Set initialized
 
-        final CodeAnalysis.Message message = new CodeAnalysis.Message("Outgoing edges from a target location are not allowed", CodeAnalysis.MessageType.ERROR, getEdge());
+        final CodeAnalysis.Message message = new CodeAnalysis.Message("Outgoing edges from a target location are not allowed", CodeAnalysis.MessageType.ERROR, edge);
 
         final Consumer<Location> checkIfErrorIsPresent = (sourceLocation) -> {
             if (sourceLocation != null
                     && sourceLocation.getType().equals(Location.Type.FINAl)
-                    && getComponent().getEdges().contains(getEdge())
-                    && getEdge().getTargetCircular() != null) {
+                    && component.getEdges().contains(edge)
+                    && edge.getTargetCircular() != null) {
 
 
                 // Add the message to the UI
-                CodeAnalysis.addMessage(getComponent(), message);
+                CodeAnalysis.addMessage(component, message);
             } else {
                 // Remove the message from the UI
-                CodeAnalysis.removeMessage(getComponent(), message);
+                CodeAnalysis.removeMessage(component, message);
             }
         };
 
         // When the source location is updated
-        getEdge().sourceLocationProperty().addListener((obs, oldSource, newSource) -> checkIfErrorIsPresent.accept(newSource));
+        edge.sourceLocationProperty().addListener((obs, oldSource, newSource) -> checkIfErrorIsPresent.accept(newSource));
 
         // When the list of edges are updated
-        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(getEdge().getSourceLocation());
-        getComponent().getEdges().addListener(listener);
+        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(edge.getSourceLocation());
+        component.getEdges().addListener(listener);
 
         // Check if the error is present right now
-        checkIfErrorIsPresent.accept(getEdge().getSourceLocation());
+        checkIfErrorIsPresent.accept(edge.getSourceLocation());
     }
 
-    public void initializeEdgeErrorToInitialLocation() {
-        if (initializedEdgeToInitialError.containsKey(getEdge())) return; // Already initialized
-        initializedEdgeToInitialError.put(getEdge(), true); // Set initialized
+    public static void initializeEdgeErrorToInitialLocation(final Edge edge, final Component component) {
+        if (initializedEdgeToInitialError.containsKey(edge)) return; // Already initialized
+        initializedEdgeToInitialError.put(edge, true); // Set initialized
 
-        final CodeAnalysis.Message message = new CodeAnalysis.Message("Incoming edges to an initial location are not allowed", CodeAnalysis.MessageType.ERROR, getEdge());
+        final CodeAnalysis.Message message = new CodeAnalysis.Message("Incoming edges to an initial location are not allowed", CodeAnalysis.MessageType.ERROR, edge);
 
         final Consumer<Location> checkIfErrorIsPresent = (targetLocation) -> {
 
             if (targetLocation != null
                     && targetLocation.getType().equals(Location.Type.INITIAL)
-                    && getComponent().getEdges().contains(getEdge())) {
+                    && component.getEdges().contains(edge)) {
 
                 // Add the message to the UI
-                CodeAnalysis.addMessage(getComponent(), message);
+                CodeAnalysis.addMessage(component, message);
             } else {
                 // Remove the message from the UI
-                CodeAnalysis.removeMessage(getComponent(), message);
+                CodeAnalysis.removeMessage(component, message);
             }
         };
 
         // When the source location is updated
-        getEdge().targetLocationProperty().addListener((obs, oldTarget, newTarget) -> checkIfErrorIsPresent.accept(newTarget));
+        edge.targetLocationProperty().addListener((obs, oldTarget, newTarget) -> checkIfErrorIsPresent.accept(newTarget));
 
         // When the list of edges are updated
-        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(getEdge().getTargetLocation());
-        getComponent().getEdges().addListener(listener);
+        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(edge.getTargetLocation());
+        component.getEdges().addListener(listener);
 
         // Check if the error is present right now
-        checkIfErrorIsPresent.accept(getEdge().getTargetLocation());
+        checkIfErrorIsPresent.accept(edge.getTargetLocation());
     }
 
-    public void initializeEdgeToForkError() {
-        if (initializedEdgeToForkError.containsKey(getEdge())) return; // Already initialized
-        initializedEdgeToForkError.put(getEdge(), true); // Set initialized
+    public static void initializeEdgeToForkError(final Edge edge, final Component component) {
+        if (initializedEdgeToForkError.containsKey(edge)) return; // Already initialized
+        initializedEdgeToForkError.put(edge, true); // Set initialized
 
-        final CodeAnalysis.Message message = new CodeAnalysis.Message("Only subcomponents can run in parallel", CodeAnalysis.MessageType.ERROR, getEdge());
+        final CodeAnalysis.Message message = new CodeAnalysis.Message("Only subcomponents can run in parallel", CodeAnalysis.MessageType.ERROR, edge);
 
-        final Consumer<Edge> checkIfErrorIsPresent = (edge) -> {
-            if (edge != null // The edge is not null
+        final Consumer<Edge> checkIfErrorIsPresent = (checkedEdge) -> {
+            if (checkedEdge != null // The edge is not null
                     // The edge is not being drawn
-                    && !edge.equals(getComponent().getUnfinishedEdge())
+                    && !checkedEdge.equals(component.getUnfinishedEdge())
                     // The edge has a source jork
-                    && edge.getSourceJork() != null
+                    && checkedEdge.getSourceJork() != null
                     // The source jork is a fork
-                    && edge.getSourceJork().getType().equals(Jork.Type.FORK)
+                    && checkedEdge.getSourceJork().getType().equals(Jork.Type.FORK)
                     // The jork does not have a sub component as its target
-                    && edge.getTargetSubComponent() == null
+                    && checkedEdge.getTargetSubComponent() == null
                     // The edge is in the component (not deleted)
-                    && getComponent().getEdges().contains(edge)) {
+                    && component.getEdges().contains(checkedEdge)) {
                 // Add the message to the UI
-                CodeAnalysis.addMessage(getComponent(), message);
+                CodeAnalysis.addMessage(component, message);
             } else {
                 // Add the message to the UI
-                CodeAnalysis.removeMessage(getComponent(), message);
+                CodeAnalysis.removeMessage(component, message);
             }
         };
 
         // When the target location is updated
-        getEdge().targetCircularProperty().addListener((obs, oldTarget, newTarget) -> checkIfErrorIsPresent.accept(getEdge()));
+        edge.targetCircularProperty().addListener((obs, oldTarget, newTarget) -> checkIfErrorIsPresent.accept(edge));
 
         // When the list of edges are updated
-        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(getEdge());
-        getComponent().getEdges().addListener(listener);
+        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(edge);
+        component.getEdges().addListener(listener);
 
         // Check if the error is present right now
-        checkIfErrorIsPresent.accept(getEdge());
+        checkIfErrorIsPresent.accept(edge);
     }
 
-    public void initializeEdgeFromJoinError() {
-        if (initializedEdgeFromJoinError.containsKey(getEdge())) return; // Already initialized
-        initializedEdgeFromJoinError.put(getEdge(), true); // Set initialized
+    public static void initializeEdgeFromJoinError(final Edge edge, final Component component) {
+        if (initializedEdgeFromJoinError.containsKey(edge)) return; // Already initialized
+        initializedEdgeFromJoinError.put(edge, true); // Set initialized
 
-        final CodeAnalysis.Message message = new CodeAnalysis.Message("Only subcomponents that are running in parallel can be joined", CodeAnalysis.MessageType.ERROR, getEdge());
+        final CodeAnalysis.Message message = new CodeAnalysis.Message("Only subcomponents that are running in parallel can be joined", CodeAnalysis.MessageType.ERROR, edge);
 
-        final Consumer<Edge> checkIfErrorIsPresent = (edge) -> {
-            if (edge != null // The edge is not null
+        final Consumer<Edge> checkIfErrorIsPresent = (checkedEdge) -> {
+            if (checkedEdge != null // The edge is not null
                     // The edge is not being drawn
-                    && !edge.equals(getComponent().getUnfinishedEdge())
+                    && !checkedEdge.equals(component.getUnfinishedEdge())
                     // The edge has a target jork
-                    && edge.getTargetJork() != null
+                    && checkedEdge.getTargetJork() != null
                     // The target jork is a join
-                    && edge.getTargetJork().getType().equals(Jork.Type.JOIN)
+                    && checkedEdge.getTargetJork().getType().equals(Jork.Type.JOIN)
                     // The jork does not have a sub component as its source
-                    && edge.getSourceSubComponent() == null
+                    && checkedEdge.getSourceSubComponent() == null
                     // The edge is in the component (not deleted)
-                    && getComponent().getEdges().contains(edge)) {
+                    && component.getEdges().contains(checkedEdge)) {
                 // Add the message to the UI
-                CodeAnalysis.addMessage(getComponent(), message);
+                CodeAnalysis.addMessage(component, message);
             } else {
                 // Add the message to the UI
-                CodeAnalysis.removeMessage(getComponent(), message);
+                CodeAnalysis.removeMessage(component, message);
             }
         };
 
         // When the target location is updated
-        getEdge().targetCircularProperty().addListener((obs, oldTarget, newTarget) -> checkIfErrorIsPresent.accept(getEdge()));
+        edge.targetCircularProperty().addListener((obs, oldTarget, newTarget) -> checkIfErrorIsPresent.accept(edge));
 
         // When the list of edges are updated
-        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(getEdge());
-        getComponent().getEdges().addListener(listener);
+        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(edge);
+        component.getEdges().addListener(listener);
 
         // Check if the error is present right now
-        checkIfErrorIsPresent.accept(getEdge());
+        checkIfErrorIsPresent.accept(edge);
     }
 
     private void ensureNailsInFront() {
@@ -4,8 +4,17 @@ import SW9.Debug;
 import SW9.HUPPAAL;
 import SW9.abstractions.*;
 import SW9.backend.BackendException;
+import SW9.backend.HUPPAALDocument;
+import SW9.backend.InstanceIndex;
 import SW9.backend.UPPAALDriver;
+import SW9.backend.VerificationGeneration;
+import SW9.backend.VerificationProgress;
+import SW9.backend.VerificationProgressRegistry;
+import SW9.backend.VerificationScheduler;
 import SW9.code_analysis.CodeAnalysis;
+import SW9.core.ComponentModel;
+import SW9.core.LocationModel;
+import SW9.core.ProjectModel;
 import SW9.presentations.*;
 import SW9.utility.UndoRedoStack;
 import SW9.utility.colors.Color;
@@ -16,7 +25,10 @@ import SW9.utility.keyboard.KeyboardTracker;
 import SW9.utility.keyboard.NudgeDirection;
 import SW9.utility.keyboard.Nudgeable;
 import com.jfoenix.controls.*;
+import javafx.animation.Animation;
 import javafx.animation.Interpolator;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.animation.Transition;
 import javafx.application.Platform;
 import javafx.beans.binding.When;
@@ -44,8 +56,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 public class HUPPAALController implements Initializable {
@@ -53,7 +64,9 @@ public class HUPPAALController implements Initializable {
     // Reachability analysis
     public static boolean reachabilityServiceEnabled = false;
     private static long reachabilityTime = Long.MAX_VALUE;
-    private static ExecutorService reachabilityService;
+    private static String lastReachabilityAnalysisKey = null;
+    private static VerificationGeneration reachabilityGeneration;
+    private static volatile long activeComponentId = -1;
 
     // View stuff
     public StackPane root;
@@ -242,6 +255,13 @@ public class HUPPAALController implements Initializable {
     }
 
     private void initializeReachabilityAnalysisThread() {
+        // Remember which component the user is looking at, such that it is checked first
+        final Component initialActiveComponent = CanvasController.getActiveComponent();
+        activeComponentId = initialActiveComponent != null ? initialActiveComponent.getModelId() : -1;
+        CanvasController.activeComponentProperty().addListener((obs, oldComponent, newComponent) -> {
+            activeComponentId = newComponent != null ? newComponent.getModelId() : -1;
+        });
+
         new Thread(() -> {
             while (true) {
 
@@ -258,75 +278,224 @@ public class HUPPAALController implements Initializable {
                 // We are now performing the analysis. Do not do another analysis before another change is introduced
                 reachabilityTime = Long.MAX_VALUE;
 
-                // Cancel any ongoing analysis
-                if (reachabilityService != null) {
-                    reachabilityService.shutdownNow();
+                // Take a snapshot of the project, such that the analysis does not read the model while the user edits it
+                final ProjectModel project;
+
+                // Make sure that the model is generated, and check if the change affected what we verify
+                final HUPPAALDocument document;
+                final String analysisKey;
+                try {
+                    project = UPPAALDriver.takeProjectSnapshot();
+                    document = UPPAALDriver.buildHUPPAALDocument(project);
+                    analysisKey = getReachabilityAnalysisKey(document, project);
+                } catch (final BackendException e) {
+                    // Something went wrong with creating the document
+                    e.printStackTrace();
+                    continue;
+                } catch (final Exception ignored) {
+                    // The main component is null. Ignore.
+                    continue;
                 }
 
-                // Start new analysis
-                reachabilityService = Executors.newFixedThreadPool(10);
+                // If only visual properties changed, the ongoing (or completed) analysis is still valid
+                if (analysisKey.equals(lastReachabilityAnalysisKey)) continue;
+                lastReachabilityAnalysisKey = analysisKey;
 
-                while (Debug.backgroundThreads.size() > 0) {
-                    final Thread thread = Debug.backgroundThreads.get(0);
-                    thread.interrupt();
-                    Debug.removeThread(thread);
+                // Cancel any ongoing analysis, such that its engines are free for the new one, and its late results are discarded
+                if (reachabilityGeneration != null) {
+                    reachabilityGeneration.cancel();
                 }
+                final VerificationGeneration generation = new VerificationGeneration();
+                reachabilityGeneration = generation;
 
                 try {
-                    // Make sure that the model is generated
-                    UPPAALDriver.buildHUPPAALDocument();
-
-                    HUPPAAL.getProject().getQueries().forEach(query -> {
-                        if (query.isPeriodic()) query.run();
-                    });
+                    // The document was just generated from the snapshot
+                    Platform.runLater(() -> HUPPAAL.getProject().getQueries().forEach(query -> {
+                        if (query.isPeriodic()) {
+                            // A periodic query still running on the previous model is stale
+                            query.cancel();
+                            query.run(false, VerificationScheduler.Priority.BACKGROUND);
+                        }
+                    }));
 
-                    // List of threads to start
-                    List<Thread> threads = new ArrayList<>();
+                    // The components to check, taken by the workers in the order of their relevance to the user
+                    final List<ComponentModel> pendingComponents = new ArrayList<>();
 
-                    // Submit all background reachability queries
-                    HUPPAAL.getProject().getComponents().forEach(component -> {
+                    project.getComponents().forEach(component -> {
                         // Check if we should consider this component
                         if (!component.isIncludeInPeriodicCheck()) {
-                            component.getLocationsWithInitialAndFinal().forEach(location -> location.setReachability(Location.Reachability.EXCLUDED));
+                            component.getLocationsWithInitialAndFinal().forEach(location -> setReachability(component, location, Location.Reachability.EXCLUDED));
                         } else {
-                            component.getLocationsWithInitialAndFinal().forEach(location -> {
-                                final String locationReachableQuery = UPPAALDriver.getLocationReachableQuery(location, component);
-                                final Thread verifyThread = UPPAALDriver.runQuery(
-                                        locationReachableQuery,
-                                        (result -> {
-                                            if (result) {
-                                                location.setReachability(Location.Reachability.REACHABLE);
-                                            } else {
-                                                location.setReachability(Location.Reachability.UNREACHABLE);
-                                            }
-                                            Debug.removeThread(Thread.currentThread());
-                                        }),
-                                        (e) -> {
-                                            location.setReachability(Location.Reachability.UNKNOWN);
-                                            Debug.removeThread(Thread.currentThread());
-                                        },
-                                        2000
-                                );
-
-                                verifyThread.setName(locationReachableQuery + " (" + verifyThread.getName() + ")");
-                                Debug.addThread(verifyThread);
-                                threads.add(verifyThread);
-                            });
+                            pendingComponents.add(component);
                         }
                     });
 
-                    threads.forEach((verifyThread) -> reachabilityService.submit(verifyThread::start));
+                    if (UPPAALDriver.isSinglePassReachabilityEnabled()) {
+                        // Check all components in one exploration of the state space (the order does not matter)
+                        runSinglePassReachability(pendingComponents, project, generation);
+                        continue;
+                    }
+
+                    // One chain of batches per engine, such that the next component is started as soon as an engine is free
+                    for (int i = 0; i < UPPAALDriver.getEnginePoolSize(); i++) {
+                        checkNextComponent(pendingComponents, project, document.getInstanceIndex(), generation);
+                    }
 
-                } catch (final BackendException e) {
-                    // Something went wrong with creating the document
+                } catch (final Exception e) {
+                    // Something went wrong while submitting the analysis, make sure that it is tried again on the next change
+                    lastReachabilityAnalysisKey = null;
                     e.printStackTrace();
-                } catch (final Exception ignored) {
-                    // The main component is null. Ignore.
                 }
             }
         }).start();
     }
 
+    /**
+     * Checks the reachability of the component which is most relevant to the user, and continues with the next
+     * component when it is done, until no components are waiting or the analysis is cancelled
+     * @param components the components waiting to be checked
+     * @param project the snapshot of the project
+     * @param instances the instances of the components in the document generated from the snapshot
+     * @param generation the generation of the analysis
+     */
+    private static void checkNextComponent(final List<ComponentModel> components, final ProjectModel project, final InstanceIndex instances, final VerificationGeneration generation) {
+        if (generation.isCancelled()) return;
+
+        final ComponentModel component = takeMostRelevantComponent(components, project);
+        if (component == null) return;
+
+        checkReachability(component, instances, generation).whenComplete((ignored, e) -> checkNextComponent(components, project, instances, generation));
+    }
+
+    /**
+     * Checks the reachability of all locations of a component (in one batch, such that the component is only
+     * compiled once), and shows the results on the locations
+     * @param component the component in the snapshot
+     * @param instances the instances of the components in the document generated from the snapshot
+     * @param generation the generation of the analysis
+     * @return a future which is completed when the results of all locations are shown
+     */
+    private static CompletableFuture<Void> checkReachability(final ComponentModel component, final InstanceIndex instances, final VerificationGeneration generation) {
+        final List<LocationModel> locations = component.getLocationsWithInitialAndFinal();
+
+        final List<String> queries = new ArrayList<>();
+        locations.forEach(location -> queries.add(UPPAALDriver.getLocationReachableQuery(location, component, instances)));
+
+        return UPPAALDriver.runQueries(
+                queries,
+                (index, result) -> {
+                    if (result) {
+                        setReachability(component, locations.get(index), Location.Reachability.REACHABLE);
+                    } else {
+                        setReachability(component, locations.get(index), Location.Reachability.UNREACHABLE);
+                    }
+                },
+                (index, e) -> setReachability(component, locations.get(index), Location.Reachability.UNKNOWN),
+                2000,
+                VerificationScheduler.Priority.BACKGROUND,
+                generation
+        );
+    }
+
+    /**
+     * Checks the reachability of all locations of some components in one exploration of the state space,
+     * and shows the results on the locations
+     * @param components the components in the snapshot
+     * @param project the snapshot of the project
+     * @param generation the generation of the analysis
+     */
+    private static void runSinglePassReachability(final List<ComponentModel> components, final ProjectModel project, final VerificationGeneration generation) {
+        final Map<LocationModel, ComponentModel> locationComponents = new HashMap<>();
+        components.forEach(component -> component.getLocationsWithInitialAndFinal().forEach(location -> locationComponents.put(location, component)));
+
+        UPPAALDriver.runSinglePassReachability(
+                project.getMainComponent(),
+                components,
+                (location, result) -> {
+                    if (result) {
+                        setReachability(locationComponents.get(location), location, Location.Reachability.REACHABLE);
+                    } else {
+                        setReachability(locationComponents.get(location), location, Location.Reachability.UNREACHABLE);
+                    }
+                },
+                (location, e) -> setReachability(locationComponents.get(location), location, Location.Reachability.UNKNOWN),
+                2000,
+                generation
+        );
+    }
+
+    /**
+     * Removes the component which is most relevant to the user from the components waiting to be checked:
+     * the active component first, then the components instantiated by it (shallowest first), and then the rest.
+     * The active component is looked up on every call, such that the order follows the user to another component.
+     * @param components the components waiting to be checked, in project order
+     * @param project the snapshot of the project
+     * @return the most relevant component, or null if no components are waiting
+     */
+    private static ComponentModel takeMostRelevantComponent(final List<ComponentModel> components, final ProjectModel project) {
+        final ComponentModel activeComponent = project.getComponent(activeComponentId);
+        final Map<Long, Integer> depths = activeComponent != null ? project.getInstantiationDepths(activeComponent) : Collections.emptyMap();
+
+        synchronized (components) {
+            if (components.isEmpty()) return null;
+
+            ComponentModel mostRelevant = null;
+            int mostRelevantDepth = Integer.MAX_VALUE;
+            for (final ComponentModel component : components) {
+                final int depth = depths.getOrDefault(component.getId(), Integer.MAX_VALUE);
+
+                // Ties are broken by project order
+                if (mostRelevant == null || depth < mostRelevantDepth) {
+                    mostRelevant = component;
+                    mostRelevantDepth = depth;
+                }
+            }
+
+            components.remove(mostRelevant);
+            return mostRelevant;
+        }
+    }
+
+    /**
+     * Gets a key which only changes if the outcome of the reachability analysis might change,
+     * i.e. if the semantics of the model or the set of components to check changed
+     * @param document the document generated from the snapshot
+     * @param project the snapshot of the project
+     * @return the key
+     */
+    private static String getReachabilityAnalysisKey(final HUPPAALDocument document, final ProjectModel project) {
+        final StringBuilder key = new StringBuilder(document.getFingerprint());
+
+        // The results are stored in the components, hence a reloaded (but otherwise equal) project must be analysed again
+        project.getComponents().forEach(component -> {
+            if (component.isIncludeInPeriodicCheck()) {
+                key.append(';').append(component.getName()).append('@').append(component.getId());
+            }
+        });
+
+        return key.toString();
+    }
+
+    /**
+     * Shows the reachability of a location in a snapshot on the location in the project (if it still exists)
+     * @param component the component of the location in the snapshot
+     * @param location the location in the snapshot
+     * @param reachability the reachability of the location
+     */
+    private static void setReachability(final ComponentModel component, final LocationModel location, final Location.Reachability reachability) {
+        Platform.runLater(() -> {
+            for (final Component projectComponent : HUPPAAL.getProject().getComponents()) {
+                if (projectComponent.getModelId() != component.getId()) continue;
+
+                for (final Location projectLocation : projectComponent.getLocationsWithInitialAndFinal()) {
+                    if (projectLocation.getId().equals(location.getId())) {
+                        projectLocation.setReachability(reachability);
+                    }
+                }
+            }
+        });
+    }
+
     private void initializeStatusBar() {
         statusBar.setBackground(new Background(new BackgroundFill(
                 Color.GREY_BLUE.getColor(Color.Intensity.I800),
@@ -341,6 +510,10 @@ public class HUPPAALController implements Initializable {
         queryLabel.setTextFill(Color.GREY_BLUE.getColor(Color.Intensity.I50));
         queryLabel.setOpacity(0.5);
 
+        // Refresh the progress reported by the engines while background queries are running
+        final Timeline progressUpdater = new Timeline(new KeyFrame(Duration.seconds(1), event -> updateQueryLabel()));
+        progressUpdater.setCycleCount(Animation.INDEFINITE);
+
         Debug.backgroundThreads.addListener(new ListChangeListener<Thread>() {
             @Override
             public void onChanged(final Change<? extends Thread> c) {
@@ -348,9 +521,11 @@ public class HUPPAALController implements Initializable {
                     Platform.runLater(() -> {
                         if(Debug.backgroundThreads.size() == 0) {
                             queryStatusContainer.setOpacity(0);
+                            progressUpdater.stop();
                         } else {
                             queryStatusContainer.setOpacity(1);
-                            queryLabel.setText(Debug.backgroundThreads.size() + " background queries running");
+                            updateQueryLabel();
+                            progressUpdater.play();
                         }
                     });
                 }
@@ -358,6 +533,19 @@ public class HUPPAALController implements Initializable {
         });
     }
 
+    private void updateQueryLabel() {
+        final VerificationProgressRegistry.Metrics metrics = UPPAALDriver.getProgressRegistry().getMetrics();
+
+        String text = Debug.backgroundThreads.size() + " background queries running";
+        if (metrics.getRunningCount() > 0) {
+            text += " (" + VerificationProgress.formatStates(metrics.getRunningStates()) + " states, "
+                    + VerificationProgress.formatStates(metrics.getRunningStatesPerSecond()) + " states/s, "
+                    + metrics.getRunningResidentMemoryKb() / 1024 + " MB)";
+        }
+
+        queryLabel.setText(text);
+    }
+
     private void initializeNoMainComponentError() {
         final CodeAnalysis.Message noMainComponentErrorMessage = new CodeAnalysis.Message("No main component specified", CodeAnalysis.MessageType.ERROR);
 
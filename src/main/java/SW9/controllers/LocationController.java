@@ -228,8 +228,7 @@ public class LocationController implements Initializable, SelectHelper.ItemSelec
         }
     }
 
-    public void initializeInvalidNameError() {
-        final Location location = getLocation();
+    public static void initializeInvalidNameError(final Location location, final Component component) {
         if (invalidNameError.containsKey(location)) return;
         invalidNameError.put(location, true);
 
@@ -240,9 +239,9 @@ public class LocationController implements Initializable, SelectHelper.ItemSelec
                 // Invalidate the list (will update the UI with the new name)
                 invalidNickName.getNearables().remove(location);
                 invalidNickName.getNearables().add(location);
-                CodeAnalysis.addMessage(getComponent(), invalidNickName);
+                CodeAnalysis.addMessage(component, invalidNickName);
             } else {
-                CodeAnalysis.removeMessage(getComponent(), invalidNickName);
+                CodeAnalysis.removeMessage(component, invalidNickName);
             }
         };
 
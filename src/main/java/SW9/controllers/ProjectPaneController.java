@@ -97,12 +97,12 @@ public class ProjectPaneController implements Initializable {
          * INCLUDE IN PERIODIC CHECK
          */
         moreInformationDropDown.addTogglableListElement("Include in periodic check", component.includeInPeriodicCheckProperty(), event -> {
-            final boolean didIncludeInPeriodicCheck = component.includeInPeriodicCheckProperty().get();
+            final boolean didIncludeInPeriodicCheck = component.isIncludeInPeriodicCheck();
 
             UndoRedoStack.push(() -> { // Perform
-                component.includeInPeriodicCheckProperty().set(!didIncludeInPeriodicCheck);
+                component.setIncludeInPeriodicCheck(!didIncludeInPeriodicCheck);
             }, () -> { // Undo
-                component.includeInPeriodicCheckProperty().set(didIncludeInPeriodicCheck);
+                component.setIncludeInPeriodicCheck(didIncludeInPeriodicCheck);
             }, "Component " + component.getName() + " is included in periodic check: " + !didIncludeInPeriodicCheck, "search");
         });
 
@@ -119,10 +119,8 @@ public class SubComponentController implements Initializable, SelectHelper.ItemS
                     // Add a new sub-component
                     UndoRedoStack.push(() -> { // Perform
                         getSubComponent().setComponent(c);
-                        HUPPAALController.runReachabilityAnalysis();
                     }, () -> { // Undo
                         getSubComponent().setComponent(oldComponent);
-                        HUPPAALController.runReachabilityAnalysis();
                     }, "Updated component for  subcomponent '" + getSubComponent().toString() + "' to component '" + c.getName() + "'", "edit");
                 });
             }
@@ -170,22 +168,22 @@ public class SubComponentController implements Initializable, SelectHelper.ItemS
         });
     }
 
-    public void initializeInconsistentEdgeError() {
-        if (initializedInconsistentEdgeError.containsKey(getSubComponent())) return; // Already initialized
-        initializedInconsistentEdgeError.put(getSubComponent(), true); // Set initialized
+    public static void initializeInconsistentEdgeError(final SubComponent subComponent, final Component parentComponent) {
+        if (initializedInconsistentEdgeError.containsKey(subComponent)) return; // Already initialized
+        initializedInconsistentEdgeError.put(subComponent, true); // Set initialized
 
-        final CodeAnalysis.Message onlyOneTypeOfStarters = new CodeAnalysis.Message("Subcomponents can not be started both in parallel and sequentially", CodeAnalysis.MessageType.ERROR, getSubComponent());
-        final CodeAnalysis.Message onlyOneFork = new CodeAnalysis.Message("Subcomponents can only be started by once, and only by a single fork", CodeAnalysis.MessageType.ERROR, getSubComponent());
+        final CodeAnalysis.Message onlyOneTypeOfStarters = new CodeAnalysis.Message("Subcomponents can not be started both in parallel and sequentially", CodeAnalysis.MessageType.ERROR, subComponent);
+        final CodeAnalysis.Message onlyOneFork = new CodeAnalysis.Message("Subcomponents can only be started by once, and only by a single fork", CodeAnalysis.MessageType.ERROR, subComponent);
 
-        final CodeAnalysis.Message onlyOneTypeOfFinishers = new CodeAnalysis.Message("Subcomponents can not end in both a join and locations", CodeAnalysis.MessageType.ERROR, getSubComponent());
-        final CodeAnalysis.Message onlyOneJoin = new CodeAnalysis.Message("Subcomponents can only be joined once, and only by a single join", CodeAnalysis.MessageType.ERROR, getSubComponent());
+        final CodeAnalysis.Message onlyOneTypeOfFinishers = new CodeAnalysis.Message("Subcomponents can not end in both a join and locations", CodeAnalysis.MessageType.ERROR, subComponent);
+        final CodeAnalysis.Message onlyOneJoin = new CodeAnalysis.Message("Subcomponents can only be joined once, and only by a single join", CodeAnalysis.MessageType.ERROR, subComponent);
 
 
-        final Consumer<SubComponent> checkForInconsistentIncoming = (subComponent) -> {
-            if (subComponent != null) { // The subComponent is not null
+        final Consumer<SubComponent> checkForInconsistentIncoming = (checkedSubComponent) -> {
+            if (checkedSubComponent != null) { // The subComponent is not null
 
                 // Get all incoming edges for the sub component
-                final List<Edge> incomingEdges = getParentComponent().getIncomingEdges(subComponent);
+                final List<Edge> incomingEdges = parentComponent.getIncomingEdges(checkedSubComponent);
 
                 // Count the amount of forks to this sub component
                 int forks = 0;
@@ -198,33 +196,33 @@ public class SubComponentController implements Initializable, SelectHelper.ItemS
                 // If the component is started by multiple forks
                 if (forks > 1) {
                     // Add the message to the UI
-                    CodeAnalysis.addMessage(getParentComponent(), onlyOneFork);
+                    CodeAnalysis.addMessage(parentComponent, onlyOneFork);
                 } else {
                     // Remove the message from the UI
-                    CodeAnalysis.removeMessage(getParentComponent(), onlyOneFork);
+                    CodeAnalysis.removeMessage(parentComponent, onlyOneFork);
                 }
 
                 // If there are inconsistent edges (eg from fork and a location)
                 if (incomingEdges.size() > forks && forks != 0) {
                     // Add the message to the UI
-                    CodeAnalysis.addMessage(getParentComponent(), onlyOneTypeOfStarters);
+                    CodeAnalysis.addMessage(parentComponent, onlyOneTypeOfStarters);
                 } else {
                     // Remove the message from the UI
-                    CodeAnalysis.removeMessage(getParentComponent(), onlyOneTypeOfStarters);
+                    CodeAnalysis.removeMessage(parentComponent, onlyOneTypeOfStarters);
                 }
 
             } else {
                 // Remove the messages
-                CodeAnalysis.removeMessage(getParentComponent(), onlyOneTypeOfStarters);
-                CodeAnalysis.removeMessage(getParentComponent(), onlyOneFork);
+                CodeAnalysis.removeMessage(parentComponent, onlyOneTypeOfStarters);
+                CodeAnalysis.removeMessage(parentComponent, onlyOneFork);
             }
         };
 
-        final Consumer<SubComponent> checkForInconsistentOutgoingEdges = (subComponent) -> {
-            if (subComponent != null) { // The subComponent is not null
+        final Consumer<SubComponent> checkForInconsistentOutgoingEdges = (checkedSubComponent) -> {
+            if (checkedSubComponent != null) { // The subComponent is not null
 
                 // Get all outgoing edges for the sub component
-                final List<Edge> outGoingEdges = getParentComponent().getOutGoingEdges(subComponent);
+                final List<Edge> outGoingEdges = parentComponent.getOutGoingEdges(checkedSubComponent);
 
                 // Count the amount of joins to this sub component
                 int joins = 0;
@@ -237,39 +235,39 @@ public class SubComponentController implements Initializable, SelectHelper.ItemS
                 // If the component is started by multiple joins
                 if (joins > 1) {
                     // Add the message to the UI
-                    CodeAnalysis.addMessage(getParentComponent(), onlyOneJoin);
+                    CodeAnalysis.addMessage(parentComponent, onlyOneJoin);
                 } else {
                     // Remove the message from the UI
-                    CodeAnalysis.removeMessage(getParentComponent(), onlyOneJoin);
+                    CodeAnalysis.removeMessage(parentComponent, onlyOneJoin);
                 }
 
                 // If there are inconsistent edges (eg to join and a location)
                 if (outGoingEdges.size() > joins && joins != 0) {
                     // Add the message to the UI
-                    CodeAnalysis.addMessage(getParentComponent(), onlyOneTypeOfFinishers);
+                    CodeAnalysis.addMessage(parentComponent, onlyOneTypeOfFinishers);
                 } else {
                     // Remove the message from the UI
-                    CodeAnalysis.removeMessage(getParentComponent(), onlyOneTypeOfFinishers);
+                    CodeAnalysis.removeMessage(parentComponent, onlyOneTypeOfFinishers);
                 }
 
             } else {
                 // Remove the messages
-                CodeAnalysis.removeMessage(getParentComponent(), onlyOneTypeOfFinishers);
-                CodeAnalysis.removeMessage(getParentComponent(), onlyOneJoin);
+                CodeAnalysis.removeMessage(parentComponent, onlyOneTypeOfFinishers);
+                CodeAnalysis.removeMessage(parentComponent, onlyOneJoin);
             }
         };
 
-        final Consumer<SubComponent> checkIfErrorIsPresent = (subComponent) -> {
-            checkForInconsistentIncoming.accept(subComponent);
-            checkForInconsistentOutgoingEdges.accept(subComponent);
+        final Consumer<SubComponent> checkIfErrorIsPresent = (checkedSubComponent) -> {
+            checkForInconsistentIncoming.accept(checkedSubComponent);
+            checkForInconsistentOutgoingEdges.accept(checkedSubComponent);
         };
 
         // When the list of edges are updated
-        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(getSubComponent());
-        getParentComponent().getEdges().addListener(listener);
+        final InvalidationListener listener = observable -> checkIfErrorIsPresent.accept(subComponent);
+        parentComponent.getEdges().addListener(listener);
 
         // Check if the error is present right now
-        checkIfErrorIsPresent.accept(getSubComponent());
+        checkIfErrorIsPresent.accept(subComponent);
     }
 
     private void makeDraggable() {
@@ -0,0 +1,140 @@
+package SW9.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The part of a component which the verification backend needs, as plain immutable data which is free of JavaFX.
+ * Unlike the observable {@link SW9.abstractions.Component} it registers no listeners and can be read from any thread.
+ */
+public final class ComponentModel {
+
+    private final long id;
+    private final long version;
+
+    private final String name;
+    private final String declarations;
+    private final boolean main;
+    private final boolean includeInPeriodicCheck;
+
+    private final List<LocationModel> locations;
+    private final LocationModel initialLocation;
+    private final LocationModel finalLocation;
+    private final List<JorkModel> jorks;
+    private final List<SubComponentModel> subComponents;
+    private final List<EdgeModel> edges;
+
+    /**
+     * @param id identifies the component this is a model of (the same for all models of the component)
+     * @param version the model version of the component (see {@link SW9.abstractions.Component#getModelVersion()})
+     */
+    public ComponentModel(final long id, final long version, final String name, final String declarations,
+                          final boolean main, final boolean includeInPeriodicCheck,
+                          final List<LocationModel> locations, final LocationModel initialLocation, final LocationModel finalLocation,
+                          final List<JorkModel> jorks, final List<SubComponentModel> subComponents, final List<EdgeModel> edges) {
+        this.id = id;
+        this.version = version;
+        this.name = name;
+        this.declarations = declarations;
+        this.main = main;
+        this.includeInPeriodicCheck = includeInPeriodicCheck;
+        this.locations = Collections.unmodifiableList(new ArrayList<>(locations));
+        this.initialLocation = initialLocation;
+        this.finalLocation = finalLocation;
+        this.jorks = Collections.unmodifiableList(new ArrayList<>(jorks));
+        this.subComponents = Collections.unmodifiableList(new ArrayList<>(subComponents));
+        this.edges = Collections.unmodifiableList(new ArrayList<>(edges));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDeclarations() {
+        return declarations;
+    }
+
+    public boolean isMain() {
+        return main;
+    }
+
+    public boolean isIncludeInPeriodicCheck() {
+        return includeInPeriodicCheck;
+    }
+
+    public List<LocationModel> getLocations() {
+        return locations;
+    }
+
+    public LocationModel getInitialLocation() {
+        return initialLocation;
+    }
+
+    public LocationModel getFinalLocation() {
+        return finalLocation;
+    }
+
+    public List<LocationModel> getLocationsWithInitialAndFinal() {
+        final List<LocationModel> locations = new ArrayList<>(this.locations);
+        locations.add(initialLocation);
+        locations.add(finalLocation);
+        return locations;
+    }
+
+    public List<JorkModel> getJorks() {
+        return jorks;
+    }
+
+    public List<SubComponentModel> getSubComponents() {
+        return subComponents;
+    }
+
+    public List<EdgeModel> getEdges() {
+        return edges;
+    }
+
+    public List<EdgeModel> getRelatedEdges(final LocationModel location) {
+        final List<EdgeModel> relatedEdges = new ArrayList<>();
+
+        for (final EdgeModel edge : edges) {
+            if (location == edge.getSourceLocation() || location == edge.getTargetLocation()) {
+                relatedEdges.add(edge);
+            }
+        }
+
+        return relatedEdges;
+    }
+
+    public List<EdgeModel> getIncomingEdges(final JorkModel jork) {
+        final List<EdgeModel> incomingEdges = new ArrayList<>();
+
+        for (final EdgeModel edge : edges) {
+            if (jork == edge.getTargetJork()) {
+                incomingEdges.add(edge);
+            }
+        }
+
+        return incomingEdges;
+    }
+
+    public List<EdgeModel> getOutGoingEdges(final JorkModel jork) {
+        final List<EdgeModel> outGoingEdges = new ArrayList<>();
+
+        for (final EdgeModel edge : edges) {
+            if (jork == edge.getSourceJork()) {
+                outGoingEdges.add(edge);
+            }
+        }
+
+        return outGoingEdges;
+    }
+}
@@ -0,0 +1,171 @@
+package SW9.core;
+
+/**
+ * An edge of a {@link ComponentModel}. Plain immutable data, free of JavaFX.
+ * An edge has exactly one source and one target, each of which is a location, a sub component or a jork.
+ * The nails of the edge are stored in flat arrays (in the order from the source to the target).
+ */
+public final class EdgeModel {
+
+    public enum PropertyType {
+        NONE, SELECTION, GUARD, SYNCHRONIZATION, UPDATE
+    }
+
+    // Number of coordinates stored per nail: x, y, property x and property y
+    private static final int NAIL_STRIDE = 4;
+
+    private final LocationModel sourceLocation;
+    private final LocationModel targetLocation;
+    private final SubComponentModel sourceSubComponent;
+    private final SubComponentModel targetSubComponent;
+    private final JorkModel sourceJork;
+    private final JorkModel targetJork;
+
+    private final String select;
+    private final String guard;
+    private final String sync;
+    private final String update;
+
+    // Styling properties
+    private final double[] nailCoordinates;
+    private final PropertyType[] nailPropertyTypes;
+
+    private EdgeModel(final Builder builder) {
+        this.sourceLocation = builder.sourceLocation;
+        this.targetLocation = builder.targetLocation;
+        this.sourceSubComponent = builder.sourceSubComponent;
+        this.targetSubComponent = builder.targetSubComponent;
+        this.sourceJork = builder.sourceJork;
+        this.targetJork = builder.targetJork;
+        this.select = builder.select;
+        this.guard = builder.guard;
+        this.sync = builder.sync;
+        this.update = builder.update;
+        this.nailCoordinates = builder.nailCoordinates;
+        this.nailPropertyTypes = builder.nailPropertyTypes;
+    }
+
+    public LocationModel getSourceLocation() {
+        return sourceLocation;
+    }
+
+    public LocationModel getTargetLocation() {
+        return targetLocation;
+    }
+
+    public SubComponentModel getSourceSubComponent() {
+        return sourceSubComponent;
+    }
+
+    public SubComponentModel getTargetSubComponent() {
+        return targetSubComponent;
+    }
+
+    public JorkModel getSourceJork() {
+        return sourceJork;
+    }
+
+    public JorkModel getTargetJork() {
+        return targetJork;
+    }
+
+    public String getSelect() {
+        return select;
+    }
+
+    public String getGuard() {
+        return guard;
+    }
+
+    public String getSync() {
+        return sync;
+    }
+
+    public String getUpdate() {
+        return update;
+    }
+
+    public int getNailCount() {
+        return nailPropertyTypes.length;
+    }
+
+    public double getNailX(final int nail) {
+        return nailCoordinates[nail * NAIL_STRIDE];
+    }
+
+    public double getNailY(final int nail) {
+        return nailCoordinates[nail * NAIL_STRIDE + 1];
+    }
+
+    public double getNailPropertyX(final int nail) {
+        return nailCoordinates[nail * NAIL_STRIDE + 2];
+    }
+
+    public double getNailPropertyY(final int nail) {
+        return nailCoordinates[nail * NAIL_STRIDE + 3];
+    }
+
+    public PropertyType getNailPropertyType(final int nail) {
+        return nailPropertyTypes[nail];
+    }
+
+    /**
+     * Builds an edge. The number of nails must be known up front, such that they can be stored in arrays.
+     */
+    public static class Builder {
+        private LocationModel sourceLocation;
+        private LocationModel targetLocation;
+        private SubComponentModel sourceSubComponent;
+        private SubComponentModel targetSubComponent;
+        private JorkModel sourceJork;
+        private JorkModel targetJork;
+
+        private String select = "";
+        private String guard = "";
+        private String sync = "";
+        private String update = "";
+
+        private final double[] nailCoordinates;
+        private final PropertyType[] nailPropertyTypes;
+
+        public Builder(final int nailCount) {
+            nailCoordinates = new double[nailCount * NAIL_STRIDE];
+            nailPropertyTypes = new PropertyType[nailCount];
+        }
+
+        public Builder source(final LocationModel location, final SubComponentModel subComponent, final JorkModel jork) {
+            this.sourceLocation = location;
+            this.sourceSubComponent = subComponent;
+            this.sourceJork = jork;
+            return this;
+        }
+
+        public Builder target(final LocationModel location, final SubComponentModel subComponent, final JorkModel jork) {
+            this.targetLocation = location;
+            this.targetSubComponent = subComponent;
+            this.targetJork = jork;
+            return this;
+        }
+
+        public Builder properties(final String select, final String guard, final String sync, final String update) {
+            this.select = select;
+            this.guard = guard;
+            this.sync = sync;
+            this.update = update;
+            return this;
+        }
+
+        public Builder nail(final int nail, final double x, final double y, final PropertyType propertyType, final double propertyX, final double propertyY) {
+            nailCoordinates[nail * NAIL_STRIDE] = x;
+            nailCoordinates[nail * NAIL_STRIDE + 1] = y;
+            nailCoordinates[nail * NAIL_STRIDE + 2] = propertyX;
+            nailCoordinates[nail * NAIL_STRIDE + 3] = propertyY;
+            nailPropertyTypes[nail] = propertyType;
+            return this;
+        }
+
+        public EdgeModel build() {
+            return new EdgeModel(this);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package SW9.core;
+
+/**
+ * A fork or join of a {@link ComponentModel}. Plain immutable data, free of JavaFX.
+ */
+public final class JorkModel {
+
+    public enum Type {
+        JOIN, FORK
+    }
+
+    private final String id;
+    private final Type type;
+
+    // Styling properties
+    private final double x;
+    private final double y;
+
+    public JorkModel(final String id, final Type type, final double x, final double y) {
+        this.id = id;
+        this.type = type;
+        this.x = x;
+        this.y = y;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+}
@@ -0,0 +1,67 @@
+package SW9.core;
+
+/**
+ * A location of a {@link ComponentModel}. Plain immutable data, free of JavaFX.
+ */
+public final class LocationModel {
+
+    public enum Type {
+        NORMAL, INITIAL, FINAL
+    }
+
+    public enum Urgency {
+        NORMAL, URGENT, COMMITTED
+    }
+
+    private final String id;
+    private final String invariant;
+    private final Type type;
+    private final Urgency urgency;
+
+    // Styling properties
+    private final double x;
+    private final double y;
+    private final int color;
+
+    /**
+     * @param color the color of the location as 24-bit RGB
+     */
+    public LocationModel(final String id, final String invariant, final Type type, final Urgency urgency,
+                         final double x, final double y, final int color) {
+        this.id = id;
+        this.invariant = invariant;
+        this.type = type;
+        this.urgency = urgency;
+        this.x = x;
+        this.y = y;
+        this.color = color;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getInvariant() {
+        return invariant;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Urgency getUrgency() {
+        return urgency;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public int getColor() {
+        return color;
+    }
+}
@@ -0,0 +1,78 @@
+package SW9.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a project, which can be handed to background threads (e.g. for verification).
+ * Components which did not change between two snapshots are shared by the snapshots.
+ */
+public final class ProjectModel {
+
+    private final List<ComponentModel> components;
+    private final ComponentModel mainComponent;
+
+    public ProjectModel(final List<ComponentModel> components, final ComponentModel mainComponent) {
+        this.components = Collections.unmodifiableList(new ArrayList<>(components));
+        this.mainComponent = mainComponent;
+    }
+
+    public List<ComponentModel> getComponents() {
+        return components;
+    }
+
+    /**
+     * @return the main component, or null if the project has no main component
+     */
+    public ComponentModel getMainComponent() {
+        return mainComponent;
+    }
+
+    /**
+     * Gets the model of a component in the snapshot
+     * @param id the id of the component (see {@link ComponentModel#getId()})
+     * @return the model, or null if the component is not part of the snapshot
+     */
+    public ComponentModel getComponent(final long id) {
+        for (final ComponentModel component : components) {
+            if (component.getId() == id) return component;
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets how deep each component is instantiated below a root component, i.e. 0 for the root,
+     * 1 for components instantiated directly by the root, 2 for components instantiated by those, and so on
+     * @param root the root component
+     * @return the depths by component id. Components which are not instantiated below the root are absent
+     */
+    public Map<Long, Integer> getInstantiationDepths(final ComponentModel root) {
+        final Map<Long, Integer> depths = new HashMap<>();
+        final Deque<ComponentModel> queue = new ArrayDeque<>();
+
+        depths.put(root.getId(), 0);
+        queue.add(root);
+
+        // Breadth first, such that each component gets the depth of its shallowest instantiation
+        while (!queue.isEmpty()) {
+            final ComponentModel component = queue.poll();
+            final int depth = depths.get(component.getId());
+
+            for (final SubComponentModel subComponent : component.getSubComponents()) {
+                final ComponentModel instantiated = subComponent.getComponent();
+                if (instantiated == null || depths.containsKey(instantiated.getId())) continue;
+
+                depths.put(instantiated.getId(), depth + 1);
+                queue.add(instantiated);
+            }
+        }
+
+        return depths;
+    }
+}
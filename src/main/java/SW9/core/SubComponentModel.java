@@ -0,0 +1,37 @@
+package SW9.core;
+
+/**
+ * An instance of a {@link ComponentModel} inside another component. Plain immutable data, free of JavaFX.
+ */
+public final class SubComponentModel {
+
+    private final String identifier;
+    private final ComponentModel component;
+
+    // Styling properties
+    private final double x;
+    private final double y;
+
+    public SubComponentModel(final String identifier, final ComponentModel component, final double x, final double y) {
+        this.identifier = identifier;
+        this.component = component;
+        this.x = x;
+        this.y = y;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public ComponentModel getComponent() {
+        return component;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+}
@@ -1,14 +1,23 @@
 
 package SW9.presentations;
 
+import SW9.Debug;
+import SW9.backend.UPPAALDriver;
+import SW9.backend.VerificationProgress;
 import SW9.utility.colors.Color;
 import com.jfoenix.controls.JFXRippler;
 import com.jfoenix.controls.JFXSpinner;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.JavaFXBuilderFactory;
 import javafx.geometry.Insets;
 import javafx.scene.control.Label;
 import javafx.scene.layout.*;
+import javafx.util.Duration;
 
 import java.io.IOException;
 import java.net.URL;
@@ -56,7 +65,8 @@ public class BackgroundThreadEntryPresentation extends AnchorPane {
         };
 
         new Thread(() -> {
-            while (thread != null && !thread.getState().equals(TERMINATED)) {
+            // Threads of an executor outlive the work they are listed for, stop checking when the work is done
+            while (thread != null && !thread.getState().equals(TERMINATED) && Debug.hasThread(thread)) {
                 check.run();
                 Thread.yield();
             }
@@ -70,6 +80,31 @@ public class BackgroundThreadEntryPresentation extends AnchorPane {
 
         if (thread != null) {
             label.setText(thread.getName());
+
+            // Show the query the thread verifies, and the progress the engine reports, while the thread is listed
+            final Timeline progressUpdater = new Timeline(new KeyFrame(Duration.seconds(1), event -> {
+                final VerificationProgress progress = UPPAALDriver.getProgressRegistry().getProgress(thread);
+                label.setText(progress != null ? progress.getQuery() + ": " + progress : thread.getName());
+            }));
+            progressUpdater.setCycleCount(Animation.INDEFINITE);
+
+            final ListChangeListener<Thread> stopWhenUnlisted = new ListChangeListener<Thread>() {
+                @Override
+                public void onChanged(final Change<? extends Thread> c) {
+                    if (!Debug.hasThread(thread)) {
+                        Debug.backgroundThreads.removeListener(this);
+                        Platform.runLater(progressUpdater::stop);
+                    }
+                }
+            };
+
+            synchronized (Debug.class) {
+                // The thread might have been unlisted before this entry was created
+                if (Debug.hasThread(thread)) {
+                    Debug.backgroundThreads.addListener(stopWhenUnlisted);
+                    progressUpdater.play();
+                }
+            }
         }
     }
 
@@ -38,10 +38,10 @@ public class EdgePresentation extends Group {
             controller.setComponent(component);
             this.component.bind(controller.componentProperty());
 
-            controller.initializeEdgeErrorFromTargetLocation();
-            controller.initializeEdgeErrorToInitialLocation();
-            controller.initializeEdgeToForkError();
-            controller.initializeEdgeFromJoinError();
+            EdgeController.initializeEdgeErrorFromTargetLocation(edge, component);
+            EdgeController.initializeEdgeErrorToInitialLocation(edge, component);
+            EdgeController.initializeEdgeToForkError(edge, component);
+            EdgeController.initializeEdgeFromJoinError(edge, component);
 
         } catch (final IOException ioe) {
             throw new IllegalStateException(ioe);
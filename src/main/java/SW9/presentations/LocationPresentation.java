@@ -81,7 +81,7 @@ public class LocationPresentation extends Group implements MouseTrackable, Selec
             // Bind the location with the one of the controller
             controller.setLocation(location);
 
-            controller.initializeInvalidNameError();
+            LocationController.initializeInvalidNameError(location, component);
 
             initializeIdLabel();
             initializeTypeGraphics();
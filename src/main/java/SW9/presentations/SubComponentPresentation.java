@@ -48,11 +48,14 @@ public class SubComponentPresentation extends StackPane implements SelectHelper.
             fxmlLoader.setRoot(this);
             fxmlLoader.load(location.openStream());
 
+            // The sub component shows the initial and final location of its component, which might not be decoded yet
+            subComponent.getComponent().load();
+
             controller = fxmlLoader.getController();
             controller.setSubComponent(subComponent);
             controller.setParentComponent(parentComponent);
 
-            controller.initializeInconsistentEdgeError();
+            SubComponentController.initializeInconsistentEdgeError(subComponent, parentComponent);
 
             // Todo: Set height and width of the sub component
             setMinWidth(GRID_SIZE * 24);
@@ -0,0 +1,225 @@
+package SW9.utility.serialize;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads json in the binary encoding of {@link BinaryProject}, from a record of a binary project
+ */
+final class BinaryJsonReader extends JsonReader {
+
+    private final ByteBuffer buffer;
+    private final BinaryProject project;
+
+    /**
+     * @param buffer the record, from its position to its limit
+     * @param project the project of the record (with the string table)
+     */
+    BinaryJsonReader(final ByteBuffer buffer, final BinaryProject project) {
+        super(new StringReader(""));
+        this.buffer = buffer;
+        this.project = project;
+    }
+
+    @Override
+    public void beginArray() {
+        expect(BinaryProject.BEGIN_ARRAY);
+    }
+
+    @Override
+    public void endArray() {
+        expect(BinaryProject.END_ARRAY);
+    }
+
+    @Override
+    public void beginObject() {
+        expect(BinaryProject.BEGIN_OBJECT);
+    }
+
+    @Override
+    public void endObject() {
+        expect(BinaryProject.END_OBJECT);
+    }
+
+    @Override
+    public boolean hasNext() {
+        final JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    @Override
+    public JsonToken peek() {
+        if (!buffer.hasRemaining()) return JsonToken.END_DOCUMENT;
+
+        final byte tag = buffer.get(buffer.position());
+        switch (tag) {
+            case BinaryProject.BEGIN_OBJECT: return JsonToken.BEGIN_OBJECT;
+            case BinaryProject.END_OBJECT: return JsonToken.END_OBJECT;
+            case BinaryProject.BEGIN_ARRAY: return JsonToken.BEGIN_ARRAY;
+            case BinaryProject.END_ARRAY: return JsonToken.END_ARRAY;
+            case BinaryProject.NAME: return JsonToken.NAME;
+            case BinaryProject.STRING: return JsonToken.STRING;
+            case BinaryProject.TRUE:
+            case BinaryProject.FALSE: return JsonToken.BOOLEAN;
+            case BinaryProject.NULL: return JsonToken.NULL;
+            case BinaryProject.LONG:
+            case BinaryProject.WHOLE_DOUBLE:
+            case BinaryProject.DOUBLE:
+            case BinaryProject.NUMBER: return JsonToken.NUMBER;
+            default: throw new IllegalStateException("Unknown tag " + tag + " " + location());
+        }
+    }
+
+    @Override
+    public String nextName() {
+        expect(BinaryProject.NAME);
+        return project.getString((int) BinaryProject.readVarint(buffer));
+    }
+
+    @Override
+    public String nextString() {
+        final JsonToken token = peek();
+        final byte tag = buffer.get();
+
+        switch (tag) {
+            case BinaryProject.STRING:
+            case BinaryProject.NUMBER:
+                return project.getString((int) BinaryProject.readVarint(buffer));
+            case BinaryProject.LONG:
+                return Long.toString(BinaryProject.unzigzag(BinaryProject.readVarint(buffer)));
+            case BinaryProject.WHOLE_DOUBLE:
+            case BinaryProject.DOUBLE:
+                return Double.toString(readDouble(tag));
+            default:
+                throw new IllegalStateException("Expected a string but was " + token + " " + location());
+        }
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        final JsonToken token = peek();
+        final byte tag = buffer.get();
+
+        if (tag == BinaryProject.TRUE) return true;
+        if (tag == BinaryProject.FALSE) return false;
+        throw new IllegalStateException("Expected a boolean but was " + token + " " + location());
+    }
+
+    @Override
+    public void nextNull() {
+        expect(BinaryProject.NULL);
+    }
+
+    @Override
+    public double nextDouble() {
+        final JsonToken token = peek();
+
+        switch (buffer.get(buffer.position())) {
+            case BinaryProject.LONG:
+                buffer.get();
+                return BinaryProject.unzigzag(BinaryProject.readVarint(buffer));
+            case BinaryProject.WHOLE_DOUBLE:
+            case BinaryProject.DOUBLE:
+                return readDouble(buffer.get());
+            case BinaryProject.STRING:
+            case BinaryProject.NUMBER:
+                return Double.parseDouble(nextString());
+            default:
+                throw new IllegalStateException("Expected a double but was " + token + " " + location());
+        }
+    }
+
+    @Override
+    public long nextLong() {
+        final JsonToken token = peek();
+
+        switch (buffer.get(buffer.position())) {
+            case BinaryProject.LONG:
+            case BinaryProject.WHOLE_DOUBLE:
+                buffer.get();
+                return BinaryProject.unzigzag(BinaryProject.readVarint(buffer));
+            case BinaryProject.DOUBLE:
+            case BinaryProject.STRING:
+            case BinaryProject.NUMBER:
+                final double value = nextDouble();
+                if ((long) value != value) throw new NumberFormatException("Expected a long but was " + value + " " + location());
+                return (long) value;
+            default:
+                throw new IllegalStateException("Expected a long but was " + token + " " + location());
+        }
+    }
+
+    @Override
+    public int nextInt() {
+        final long value = nextLong();
+        if ((int) value != value) throw new NumberFormatException("Expected an int but was " + value + " " + location());
+        return (int) value;
+    }
+
+    @Override
+    public void skipValue() {
+        int depth = 0;
+
+        do {
+            final byte tag = buffer.get();
+            switch (tag) {
+                case BinaryProject.BEGIN_OBJECT:
+                case BinaryProject.BEGIN_ARRAY:
+                    depth++;
+                    break;
+                case BinaryProject.END_OBJECT:
+                case BinaryProject.END_ARRAY:
+                    depth--;
+                    break;
+                case BinaryProject.NAME:
+                case BinaryProject.STRING:
+                case BinaryProject.NUMBER:
+                case BinaryProject.LONG:
+                case BinaryProject.WHOLE_DOUBLE:
+                    BinaryProject.readVarint(buffer);
+                    break;
+                case BinaryProject.DOUBLE:
+                    buffer.position(buffer.position() + Double.BYTES);
+                    break;
+                default:
+                    // Booleans and nulls have no payload
+            }
+        } while (depth != 0);
+    }
+
+    @Override
+    public void close() {
+        // The record is part of the project file, which is kept in memory
+    }
+
+    @Override
+    public String getPath() {
+        return "$";
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " " + location();
+    }
+
+    private void expect(final byte tag) {
+        final JsonToken token = peek();
+        if (buffer.get() != tag) {
+            buffer.position(buffer.position() - 1);
+            throw new IllegalStateException("Unexpected " + token + " " + location());
+        }
+    }
+
+    private double readDouble(final byte tag) {
+        if (tag == BinaryProject.WHOLE_DOUBLE) return BinaryProject.unzigzag(BinaryProject.readVarint(buffer));
+
+        return Double.longBitsToDouble(buffer.getLong());
+    }
+
+    private String location() {
+        return "at byte " + buffer.position() + " of the record";
+    }
+}
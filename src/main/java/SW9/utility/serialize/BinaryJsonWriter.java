@@ -0,0 +1,183 @@
+package SW9.utility.serialize;
+
+import com.google.gson.stream.JsonWriter;
+import org.apache.commons.io.output.NullWriter;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Writes json in the binary encoding of {@link BinaryProject} (a tag per token, names and strings as indices into
+ * the string table of the file, and numbers as varints where that is lossless).
+ * Like the writers of the json files, null values (and their names) are not written.
+ */
+final class BinaryJsonWriter extends JsonWriter {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final BinaryProject.StringTable strings;
+
+    // The name of the value we are about to write (names are only written if the value is)
+    private String deferredName = null;
+
+    BinaryJsonWriter(final BinaryProject.StringTable strings) {
+        super(new NullWriter());
+        this.strings = strings;
+        setSerializeNulls(false);
+    }
+
+    /**
+     * @return the encoded json
+     */
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    @Override
+    public JsonWriter beginArray() {
+        writeDeferredName();
+        out.write(BinaryProject.BEGIN_ARRAY);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() {
+        out.write(BinaryProject.END_ARRAY);
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginObject() {
+        writeDeferredName();
+        out.write(BinaryProject.BEGIN_OBJECT);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() {
+        if (deferredName != null) throw new IllegalStateException("Missing the value of " + deferredName);
+
+        out.write(BinaryProject.END_OBJECT);
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(final String name) {
+        if (name == null) throw new NullPointerException("name == null");
+        if (deferredName != null) throw new IllegalStateException("Missing the value of " + deferredName);
+
+        deferredName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(final String value) {
+        if (value == null) return nullValue();
+
+        writeDeferredName();
+        out.write(BinaryProject.STRING);
+        BinaryProject.writeVarint(out, strings.indexOf(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter jsonValue(final String value) {
+        if (value == null) return nullValue();
+
+        throw new UnsupportedOperationException("Raw json cannot be written to a binary project");
+    }
+
+    @Override
+    public JsonWriter nullValue() {
+        if (deferredName != null) {
+            if (!getSerializeNulls()) {
+                deferredName = null;
+                return this;
+            }
+            writeDeferredName();
+        }
+
+        out.write(BinaryProject.NULL);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(final boolean value) {
+        writeDeferredName();
+        out.write(value ? BinaryProject.TRUE : BinaryProject.FALSE);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(final Boolean value) {
+        if (value == null) return nullValue();
+
+        return value(value.booleanValue());
+    }
+
+    @Override
+    public JsonWriter value(final double value) {
+        writeDeferredName();
+
+        // Coordinates are mostly snapped to the grid, hence most doubles are whole numbers (-0.0 is not, it would lose its sign)
+        if (value == Math.rint(value) && Math.abs(value) < 1L << 53 && (value != 0 || 1 / value > 0)) {
+            out.write(BinaryProject.WHOLE_DOUBLE);
+            BinaryProject.writeVarint(out, BinaryProject.zigzag((long) value));
+        } else {
+            out.write(BinaryProject.DOUBLE);
+            final long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (bits >>> shift));
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(final long value) {
+        writeDeferredName();
+        out.write(BinaryProject.LONG);
+        BinaryProject.writeVarint(out, BinaryProject.zigzag(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(final Number value) {
+        if (value == null) return nullValue();
+
+        if (value instanceof Double || value instanceof Float) return value(value.doubleValue());
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) return value(value.longValue());
+
+        // A number of unknown type (e.g. a number read from a json file) is written the way it is formatted
+        final String literal = value.toString();
+        if (literal.matches("0|-?[1-9][0-9]{0,17}")) return value(Long.parseLong(literal));
+
+        try {
+            final double number = Double.parseDouble(literal);
+            if (Double.toString(number).equals(literal)) return value(number);
+        } catch (final NumberFormatException e) {
+            // The literal is written as it is
+        }
+
+        writeDeferredName();
+        out.write(BinaryProject.NUMBER);
+        BinaryProject.writeVarint(out, strings.indexOf(literal));
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        // Everything is in memory
+    }
+
+    @Override
+    public void close() {
+        // Everything is in memory
+    }
+
+    private void writeDeferredName() {
+        if (deferredName == null) return;
+
+        out.write(BinaryProject.NAME);
+        BinaryProject.writeVarint(out, strings.indexOf(deferredName));
+        deferredName = null;
+    }
+}
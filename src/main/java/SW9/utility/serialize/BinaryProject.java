@@ -0,0 +1,442 @@
+package SW9.utility.serialize;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A project saved as a single binary file, as an alternative to a json file per component.
+ * Every component (and the queries) is a record with the same content as its json file, encoded as a tag per json token.
+ * Names and strings (ids, expressions, etc.) are stored once in a string table, and numbers (e.g. coordinates) are
+ * stored as varints where that is lossless. Hence a project can be converted to and from json without losing anything.
+ *
+ * The file starts with the string table and an index of the records (with the main component, and the components each
+ * component instantiates, such that components can be ordered without decoding them). The file is read into memory at once,
+ * and a record (and the strings it uses) is only decoded when a reader for it is requested.
+ */
+public class BinaryProject {
+
+    public static final String FILE_NAME = "Project.hbin";
+
+    private static final int MAGIC = 0x48555042; // "HUPB"
+    private static final int VERSION = 2;
+
+    // The tags of the json tokens
+    static final byte BEGIN_OBJECT = 1;
+    static final byte END_OBJECT = 2;
+    static final byte BEGIN_ARRAY = 3;
+    static final byte END_ARRAY = 4;
+    static final byte NAME = 5;
+    static final byte STRING = 6;
+    static final byte TRUE = 7;
+    static final byte FALSE = 8;
+    static final byte NULL = 9;
+    static final byte LONG = 10;
+    static final byte WHOLE_DOUBLE = 11;
+    static final byte DOUBLE = 12;
+    static final byte NUMBER = 13;
+
+    private final ByteBuffer buffer;
+
+    // The position and length (in bytes) of each string in the file, and the strings decoded so far
+    private final int[] stringPositions;
+    private final int[] stringLengths;
+    private final String[] strings;
+
+    private final Map<String, Record> components = new LinkedHashMap<>();
+    private final Record queries;
+
+    private BinaryProject(final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        try {
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a binary project");
+            final int version = buffer.getInt();
+            if (version != VERSION) throw new IOException("Unsupported binary project version " + version);
+
+            final int stringCount = (int) readVarint(buffer);
+            stringPositions = new int[stringCount];
+            stringLengths = new int[stringCount];
+            strings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                stringLengths[i] = (int) readVarint(buffer);
+                stringPositions[i] = buffer.position();
+                buffer.position(buffer.position() + stringLengths[i]);
+            }
+
+            final Record queries = new Record((int) readVarint(buffer), (int) readVarint(buffer), false, Collections.emptyList());
+
+            final int componentCount = (int) readVarint(buffer);
+            final List<String> names = new ArrayList<>();
+            final List<Record> records = new ArrayList<>();
+            for (int i = 0; i < componentCount; i++) {
+                names.add(getString((int) readVarint(buffer)));
+                final int offset = (int) readVarint(buffer);
+                final int length = (int) readVarint(buffer);
+                final boolean isMain = buffer.get() != 0;
+
+                final List<String> subComponentNames = new ArrayList<>();
+                final int subComponentCount = (int) readVarint(buffer);
+                for (int j = 0; j < subComponentCount; j++) {
+                    subComponentNames.add(getString((int) readVarint(buffer)));
+                }
+
+                records.add(new Record(offset, length, isMain, subComponentNames));
+            }
+
+            // The records follow the index
+            final int recordsPosition = buffer.position();
+            this.queries = queries.at(recordsPosition);
+            for (int i = 0; i < componentCount; i++) {
+                components.put(names.get(i), records.get(i).at(recordsPosition));
+            }
+        } catch (final BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("The binary project is corrupt", e);
+        }
+    }
+
+    /**
+     * Opens a binary project. The file is read (but not kept open, such that it can be overwritten), nothing but the index is decoded
+     * @param file the file of the project
+     * @return the project
+     * @throws IOException if the file could not be read, or is not a binary project
+     */
+    public static BinaryProject open(final File file) throws IOException {
+        return new BinaryProject(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * @return the names of the components of the project, in the order they were added
+     */
+    public Set<String> getComponentNames() {
+        return Collections.unmodifiableSet(components.keySet());
+    }
+
+    /**
+     * @param componentName the name of a component of the project
+     * @return true if the component is the main component
+     */
+    public boolean isMainComponent(final String componentName) {
+        return components.get(componentName).isMain;
+    }
+
+    /**
+     * @param componentName the name of a component of the project
+     * @return the names of the components the component instantiates
+     */
+    public List<String> getSubComponentNames(final String componentName) {
+        return Collections.unmodifiableList(components.get(componentName).subComponentNames);
+    }
+
+    /**
+     * Gets a reader of the json of a component (see {@link StreamDeserializable#deserialize(JsonReader)})
+     * @param componentName the name of a component of the project
+     * @return the reader
+     */
+    public JsonReader getComponentReader(final String componentName) {
+        return components.get(componentName).getReader();
+    }
+
+    /**
+     * @return a reader of the json array of the queries of the project
+     */
+    public JsonReader getQueriesReader() {
+        return queries.getReader();
+    }
+
+    /**
+     * Decodes a string of the string table (when it is first used)
+     */
+    synchronized String getString(final int index) {
+        if (strings[index] == null) {
+            final ByteBuffer string = buffer.duplicate();
+            string.position(stringPositions[index]);
+
+            final byte[] bytes = new byte[stringLengths[index]];
+            string.get(bytes);
+            strings[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return strings[index];
+    }
+
+    /**
+     * Copies the tokens of a json stream, e.g. from a json file to a binary project, or the other way around
+     * @param in the json to copy
+     * @param out where to copy the json to
+     * @throws IOException if the json could not be read or written
+     */
+    public static void copy(final JsonReader in, final JsonWriter out) throws IOException {
+        int depth = 0;
+
+        do {
+            final JsonToken token = in.peek();
+            switch (token) {
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    out.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    in.endObject();
+                    out.endObject();
+                    depth--;
+                    break;
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    out.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    in.endArray();
+                    out.endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    out.name(in.nextName());
+                    break;
+                case STRING:
+                    out.value(in.nextString());
+                    break;
+                case NUMBER:
+                    out.value(new NumberLiteral(in.nextString()));
+                    break;
+                case BOOLEAN:
+                    out.value(in.nextBoolean());
+                    break;
+                case NULL:
+                    in.nextNull();
+                    out.nullValue();
+                    break;
+                default:
+                    throw new IOException("Unexpected " + token);
+            }
+        } while (depth != 0);
+    }
+
+    static void writeVarint(final ByteArrayOutputStream out, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.write((int) (remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write((int) remaining);
+    }
+
+    static long readVarint(final ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Maps signed numbers to unsigned numbers, such that numbers close to zero (also negative ones) have short varints
+     */
+    static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A record in the file of the project
+     */
+    private class Record {
+        private final int offset;
+        private final int length;
+        private final boolean isMain;
+        private final List<String> subComponentNames;
+
+        private Record(final int offset, final int length, final boolean isMain, final List<String> subComponentNames) {
+            this.offset = offset;
+            this.length = length;
+            this.isMain = isMain;
+            this.subComponentNames = subComponentNames;
+        }
+
+        /**
+         * @return the record, with the offset made relative to the start of the file
+         */
+        private Record at(final int recordsPosition) {
+            return new Record(recordsPosition + offset, length, isMain, subComponentNames);
+        }
+
+        private JsonReader getReader() {
+            final ByteBuffer record = buffer.duplicate();
+            record.position(offset);
+            record.limit(offset + length);
+            return new BinaryJsonReader(record.slice(), BinaryProject.this);
+        }
+    }
+
+    /**
+     * The strings of the project being written, each of which gets an index in the order they are first used
+     */
+    static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int indexOf(final String string) {
+            Integer index = indices.get(string);
+            if (index == null) {
+                index = strings.size();
+                indices.put(string, index);
+                strings.add(string);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * A number from a json file, which is written exactly as it was read
+     */
+    private static class NumberLiteral extends Number {
+        private static final long serialVersionUID = 1L;
+
+        private final String literal;
+
+        private NumberLiteral(final String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) doubleValue();
+        }
+
+        @Override
+        public long longValue() {
+            return (long) doubleValue();
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) doubleValue();
+        }
+
+        @Override
+        public double doubleValue() {
+            return Double.parseDouble(literal);
+        }
+
+        @Override
+        public String toString() {
+            return literal;
+        }
+    }
+
+    /**
+     * Writes a binary project
+     */
+    public static class Builder {
+        private final StringTable strings = new StringTable();
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        private final Map<String, int[]> componentRecords = new LinkedHashMap<>();
+        private final Map<String, List<String>> subComponentNames = new HashMap<>();
+        private final Set<String> mainComponentNames = new HashSet<>();
+        private int[] queriesRecord = {0, 0};
+
+        /**
+         * Adds a component
+         * @param name the name of the component
+         * @param isMain true if the component is the main component
+         * @param subComponentNames the names of the components the component instantiates
+         * @param content the json of the component
+         * @throws IOException if the json could not be written
+         */
+        public Builder addComponent(final String name, final boolean isMain, final List<String> subComponentNames, final ProjectWriter.Content content) throws IOException {
+            componentRecords.put(name, addRecord(content));
+            this.subComponentNames.put(name, subComponentNames);
+            if (isMain) {
+                mainComponentNames.add(name);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the queries
+         * @param content the json array of the queries
+         * @throws IOException if the json could not be written
+         */
+        public Builder setQueries(final ProjectWriter.Content content) throws IOException {
+            queriesRecord = addRecord(content);
+            return this;
+        }
+
+        private int[] addRecord(final ProjectWriter.Content content) throws IOException {
+            final BinaryJsonWriter writer = new BinaryJsonWriter(strings);
+            content.write(writer);
+
+            final byte[] record = writer.toByteArray();
+            final int offset = records.size();
+            records.write(record, 0, record.length);
+            return new int[]{offset, record.length};
+        }
+
+        /**
+         * Writes the project. The file is replaced atomically, such that a crash never leaves a half-written project
+         * @param file the file to write
+         * @throws IOException if the file could not be written
+         */
+        public void write(final File file) throws IOException {
+            // The index refers to the names of the components, hence it must be encoded before the string table is written
+            final ByteArrayOutputStream index = new ByteArrayOutputStream();
+            writeVarint(index, queriesRecord[0]);
+            writeVarint(index, queriesRecord[1]);
+            writeVarint(index, componentRecords.size());
+            for (final Map.Entry<String, int[]> component : componentRecords.entrySet()) {
+                writeVarint(index, strings.indexOf(component.getKey()));
+                writeVarint(index, component.getValue()[0]);
+                writeVarint(index, component.getValue()[1]);
+                index.write(mainComponentNames.contains(component.getKey()) ? 1 : 0);
+
+                final List<String> names = subComponentNames.get(component.getKey());
+                writeVarint(index, names.size());
+                for (final String name : names) {
+                    writeVarint(index, strings.indexOf(name));
+                }
+            }
+
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            final DataOutputStream header = new DataOutputStream(content);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.flush();
+
+            writeVarint(content, strings.strings.size());
+            for (final String string : strings.strings) {
+                final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarint(content, bytes.length);
+                content.write(bytes, 0, bytes.length);
+            }
+
+            index.writeTo(content);
+            records.writeTo(content);
+
+            ProjectWriter.writeAtomically(file, content.toByteArray());
+        }
+    }
+}
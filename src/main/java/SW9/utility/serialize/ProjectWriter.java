@@ -0,0 +1,269 @@
+package SW9.utility.serialize;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Saves the files of a project to the project directory.
+ * Only files whose content changed since the last save are written. Each file is written to a temporary file first,
+ * which is then moved in place atomically, such that a crash during a save never leaves a half-written (or missing) file.
+ * A manifest (a hidden file in the project directory) remembers the hash, size and modification time of the saved files,
+ * such that unchanged files are recognized without reading them, and files changed by someone else are written again.
+ * Project files which are no longer part of the project (e.g. of a deleted or renamed component) are removed when the
+ * new files are in place. Hidden files (e.g. the verification cache) are left alone.
+ */
+public class ProjectWriter {
+
+    public static final String MANIFEST_FILE_NAME = ".save-manifest";
+    private static final String PROJECT_FILE_EXTENSION = ".json";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private final File directory;
+
+    // Metrics of the last save
+    private int writtenCount = 0;
+    private int unchangedCount = 0;
+    private int removedCount = 0;
+
+    public ProjectWriter(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Saves the files of the project
+     * @param files the content of each file of the project, by file name (e.g. "Main.json")
+     * @throws IOException if a file could not be written. Files written before the failure are complete
+     */
+    public void write(final Map<String, Content> files) throws IOException {
+        writtenCount = 0;
+        unchangedCount = 0;
+        removedCount = 0;
+
+        FileUtils.forceMkdir(directory);
+        removeTemporaryFiles();
+
+        final Map<String, ManifestEntry> manifest = readManifest();
+        final Map<String, ManifestEntry> newManifest = new HashMap<>();
+
+        for (final Map.Entry<String, Content> file : files.entrySet()) {
+            final byte[] content = toBytes(file.getValue());
+            final String hash = sha256(content);
+            final File target = new File(directory, file.getKey());
+
+            final ManifestEntry entry = manifest.get(file.getKey());
+            if (entry != null && entry.hash.equals(hash) && entry.matches(target)) {
+                newManifest.put(file.getKey(), entry);
+                unchangedCount++;
+                continue;
+            }
+
+            writeAtomically(target, content);
+            newManifest.put(file.getKey(), new ManifestEntry(hash, target.length(), target.lastModified()));
+            writtenCount++;
+        }
+
+        // Remove the files of components which are no longer part of the project
+        final File[] existingFiles = directory.listFiles();
+        if (existingFiles != null) {
+            for (final File file : existingFiles) {
+                if (!isProjectFile(file) || files.containsKey(file.getName())) continue;
+
+                FileUtils.forceDelete(file);
+                removedCount++;
+            }
+        }
+
+        if (writtenCount > 0 || removedCount > 0 || !newManifest.keySet().equals(manifest.keySet())) {
+            writeManifest(newManifest);
+        }
+    }
+
+    /**
+     * @return the number of files written by the last save
+     */
+    public int getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * @return the number of files the last save did not write, since they did not change
+     */
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    /**
+     * @return the number of files the last save removed, since they are no longer part of the project
+     */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * Serializes the content of a file without building a tree of json elements.
+     * The json is formatted exactly like gson formats trees, such that files saved before keep their hash
+     */
+    private static byte[] toBytes(final Content content) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (final JsonWriter writer = new JsonWriter(new OutputStreamWriter(bytes, Charset.defaultCharset())) {
+            @Override
+            public JsonWriter value(final double value) throws IOException {
+                // Like gson, write (and do not fail on) coordinates which are not numbers
+                return value((Number) value);
+            }
+        }) {
+            writer.setIndent("  ");
+            writer.setHtmlSafe(true);
+            writer.setSerializeNulls(false);
+            writer.setLenient(true);
+            content.write(writer);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Checks if a file in the project directory is a project file (as opposed to e.g. the hidden verification cache)
+     */
+    private static boolean isProjectFile(final File file) {
+        return file.isFile() && !file.isHidden() && !file.getName().startsWith(".") && file.getName().endsWith(PROJECT_FILE_EXTENSION);
+    }
+
+    /**
+     * Writes a file by writing a temporary file, and moving it in place when it is completely on the disk
+     * @param target the file to write
+     * @param content the content of the file
+     * @throws IOException if the file could not be written
+     */
+    static void writeAtomically(final File target, final byte[] content) throws IOException {
+        final File temporaryFile = new File(target.getParentFile(), "." + target.getName() + TEMPORARY_FILE_EXTENSION);
+
+        try (final FileOutputStream stream = new FileOutputStream(temporaryFile)) {
+            stream.write(content);
+            stream.getFD().sync();
+        }
+
+        try {
+            Files.move(temporaryFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final AtomicMoveNotSupportedException e) {
+            // Some file systems cannot replace a file atomically, a crash might leave the temporary file (but never a partial file)
+            Files.move(temporaryFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Removes temporary files left behind by a save which crashed
+     */
+    private void removeTemporaryFiles() throws IOException {
+        final File[] existingFiles = directory.listFiles();
+        if (existingFiles == null) return;
+
+        for (final File file : existingFiles) {
+            final String name = file.getName();
+            if (name.equals("." + MANIFEST_FILE_NAME + TEMPORARY_FILE_EXTENSION)
+                    || name.startsWith(".") && name.endsWith(PROJECT_FILE_EXTENSION + TEMPORARY_FILE_EXTENSION)) {
+                FileUtils.forceDelete(file);
+            }
+        }
+    }
+
+    private Map<String, ManifestEntry> readManifest() {
+        final Map<String, ManifestEntry> manifest = new HashMap<>();
+
+        final File file = new File(directory, MANIFEST_FILE_NAME);
+        if (!file.isFile()) return manifest;
+
+        try {
+            final JsonObject files = new JsonParser().parse(FileUtils.readFileToString(file, Charset.defaultCharset())).getAsJsonObject().getAsJsonObject("files");
+            files.entrySet().forEach(entry -> {
+                final JsonObject json = entry.getValue().getAsJsonObject();
+                manifest.put(entry.getKey(), new ManifestEntry(json.get("sha256").getAsString(), json.get("size").getAsLong(), json.get("modified").getAsLong()));
+            });
+        } catch (final IOException | JsonParseException | IllegalStateException | NullPointerException | ClassCastException e) {
+            // Without a (readable) manifest every file is written
+            manifest.clear();
+        }
+
+        return manifest;
+    }
+
+    private void writeManifest(final Map<String, ManifestEntry> manifest) throws IOException {
+        final JsonObject files = new JsonObject();
+        manifest.forEach((name, entry) -> {
+            final JsonObject json = new JsonObject();
+            json.addProperty("sha256", entry.hash);
+            json.addProperty("size", entry.size);
+            json.addProperty("modified", entry.modified);
+            files.add(name, json);
+        });
+
+        final JsonObject json = new JsonObject();
+        json.add("files", files);
+
+        writeAtomically(new File(directory, MANIFEST_FILE_NAME), gson.toJson(json).getBytes(Charset.defaultCharset()));
+    }
+
+    private static String sha256(final byte[] content) {
+        try {
+            final StringBuilder hash = new StringBuilder();
+            for (final byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The content of a file of the project, e.g. a component (see {@link StreamSerializable#serialize(JsonWriter)})
+     */
+    public interface Content {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * What the manifest remembers about a saved file
+     */
+    private static class ManifestEntry {
+        private final String hash;
+        private final long size;
+        private final long modified;
+
+        private ManifestEntry(final String hash, final long size, final long modified) {
+            this.hash = hash;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * @return true if the file is still the one we saved
+         */
+        private boolean matches(final File file) {
+            return file.isFile() && file.length() == size && file.lastModified() == modified;
+        }
+    }
+}
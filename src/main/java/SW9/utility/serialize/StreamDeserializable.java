@@ -0,0 +1,15 @@
+package SW9.utility.serialize;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Deserializes objects from a stream of json (see {@link StreamSerializable}), without building a tree of json elements in memory.
+ * Objects which can only be read in a context (e.g. an edge, which refers to the locations of its component) do not implement this.
+ */
+public interface StreamDeserializable {
+
+    void deserialize(JsonReader reader) throws IOException;
+
+}
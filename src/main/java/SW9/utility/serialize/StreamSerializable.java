@@ -0,0 +1,15 @@
+package SW9.utility.serialize;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Serializes objects to a stream of json, without building a tree of json elements in memory.
+ * The json is the same as the json of {@link Serializable}, and is read using {@link StreamDeserializable}.
+ */
+public interface StreamSerializable {
+
+    void serialize(JsonWriter writer) throws IOException;
+
+}